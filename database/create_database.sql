@@ -66,7 +66,11 @@ CREATE TABLE orders (
     state VARCHAR(50) NOT NULL,
     zip VARCHAR(20) NOT NULL,
     shipping_amount DECIMAL(10, 2) NOT NULL DEFAULT 0,
+    total_amount DECIMAL(10, 2) NOT NULL DEFAULT 0,
     PRIMARY KEY (order_id),
+    -- order history pages through a user's orders newest first
+    INDEX idx_orders_user_date (user_id, date, order_id),
+    INDEX idx_orders_date (date),
     FOREIGN KEY (user_id) REFERENCES users(user_id)
 );
 
@@ -92,6 +96,118 @@ CREATE TABLE shopping_cart (
     FOREIGN KEY (product_id) REFERENCES products(product_id)
 );
 
+-- one row per cart, version and last_touched updated in the same transaction as every cart change
+CREATE TABLE shopping_cart_headers (
+    user_id INT NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    last_touched DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id),
+    INDEX ix_shopping_cart_headers_last_touched (last_touched),
+    FOREIGN KEY (user_id) REFERENCES users(user_id)
+);
+
+-- HiLo order ids: each node reserves a block of ids with one update and hands them out from memory
+CREATE TABLE order_id_sequence (
+    name VARCHAR(50) NOT NULL,
+    next_value BIGINT NOT NULL,
+    PRIMARY KEY (name)
+);
+
+-- checkouts already run for an Idempotency-Key; response holds the OrderDTO as JSON
+CREATE TABLE idempotency_keys (
+    user_id INT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    response TEXT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, idempotency_key),
+    INDEX idx_idempotency_keys_created_at (created_at),
+    FOREIGN KEY (user_id) REFERENCES users(user_id)
+);
+
+-- sales rollups, added to in the same transaction as the orders; rebuilt per day from history
+CREATE TABLE sales_daily (
+    sale_date DATE NOT NULL,
+    order_count INT NOT NULL DEFAULT 0,
+    units INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    shipping DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date)
+);
+
+CREATE TABLE sales_daily_category (
+    sale_date DATE NOT NULL,
+    category_id INT NOT NULL,
+    units INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, category_id)
+);
+
+CREATE TABLE sales_daily_product (
+    sale_date DATE NOT NULL,
+    product_id INT NOT NULL,
+    category_id INT NOT NULL,
+    units INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, product_id)
+);
+
+-- views per product, added to in batches by the in-memory view counters
+CREATE TABLE product_views (
+    product_id INT NOT NULL,
+    views BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (product_id),
+    INDEX idx_product_views_views (views)
+);
+
+-- the shared catalog version; every catalog write takes its next number(s) under this row's lock
+CREATE TABLE catalog_version (
+    id TINYINT NOT NULL,
+    version BIGINT NOT NULL,
+    changes_pruned_through BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO catalog_version (id, version) VALUES (1, 0);
+
+-- one row per product write, numbered from catalog_version, read back by GET /products/changes;
+-- rows older than catalog.changes.retention-days are pruned up to changes_pruned_through
+CREATE TABLE product_changes (
+    change_version BIGINT NOT NULL,
+    product_id INT NOT NULL,
+    deleted BOOL NOT NULL DEFAULT 0,
+    changed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (change_version),
+    INDEX ix_product_changes_product (product_id),
+    INDEX ix_product_changes_changed (changed_at)
+);
+
+-- outbox of catalog writes, at the catalog version of the write, polled by version by every
+-- node to evict the affected entries of its in-process caches
+CREATE TABLE cache_invalidations (
+    invalidation_id BIGINT NOT NULL AUTO_INCREMENT,
+    entity VARCHAR(20) NOT NULL,
+    catalog_version BIGINT NOT NULL,
+    entity_id INT NOT NULL,
+    node_id VARCHAR(64) NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (invalidation_id),
+    INDEX ix_cache_invalidations_version (catalog_version),
+    INDEX ix_cache_invalidations_created (created_at)
+);
+
+-- hot-product stock each node holds in memory (taken out of products.stock), shrunk by the
+-- orders that sell it, so a crashed node's unsold units can be put back into products.stock
+CREATE TABLE stock_leases (
+    node_id VARCHAR(64) NOT NULL,
+    product_id INT NOT NULL,
+    units INT NOT NULL,
+    updated_at DATETIME NOT NULL,
+    PRIMARY KEY (node_id, product_id),
+    INDEX ix_stock_leases_updated (updated_at)
+);
+
 
 /*  INSERT Users  */
 INSERT INTO users (username, hashed_password, role) 
@@ -218,3 +334,9 @@ VALUES  ('Laptop', 999.99, 1, 'A high-performance laptop for work and entertainm
 INSERT INTO shopping_cart (user_id, product_id, quantity)
 VALUES  (3, 8, 1),
         (3, 10, 1);
+
+INSERT INTO shopping_cart_headers (user_id)
+SELECT DISTINCT user_id FROM shopping_cart;
+
+INSERT INTO order_id_sequence (name, next_value)
+SELECT 'orders', COALESCE(MAX(order_id), 0) + 1 FROM orders;
@@ -2,8 +2,10 @@ package org.yearup;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // Runs the background jobs (cache invalidation polling, etc.)
 public class EasyshopApplication
 {
 
@@ -13,18 +13,28 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import org.yearup.data.ProductDao;
+import org.yearup.data.ShoppingCartDao;
 import org.yearup.models.Profile;
 import org.yearup.data.ProfileDao;
 import org.yearup.data.UserDao;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+import org.yearup.models.ShoppingCartItem;
 import org.yearup.models.authentication.LoginDto;
 import org.yearup.models.authentication.LoginResponseDto;
 import org.yearup.models.authentication.RegisterUserDto;
 import org.yearup.models.User;
 import org.yearup.security.jwt.JWTFilter;
 import org.yearup.security.jwt.TokenProvider;
+import org.yearup.services.GuestCartTokens;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @RestController
-@CrossOrigin
+@CrossOrigin(exposedHeaders = GuestCartTokens.HEADER)
 @PreAuthorize("permitAll()")
 public class AuthenticationController {
 
@@ -32,17 +42,25 @@ public class AuthenticationController {
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
     private UserDao userDao;
     private ProfileDao profileDao;
+    private ShoppingCartDao shoppingCartDao;
+    private ProductDao productDao;
+    private GuestCartTokens guestCartTokens;
 
     public AuthenticationController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder,
-                                    UserDao userDao, ProfileDao profileDao) {
+                                    UserDao userDao, ProfileDao profileDao, ShoppingCartDao shoppingCartDao,
+                                    ProductDao productDao, GuestCartTokens guestCartTokens) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
         this.userDao = userDao;
         this.profileDao = profileDao;
+        this.shoppingCartDao = shoppingCartDao;
+        this.productDao = productDao;
+        this.guestCartTokens = guestCartTokens;
     }
 
     @RequestMapping(value = "/login", method = RequestMethod.POST)
-    public ResponseEntity<LoginResponseDto> login(@Valid @RequestBody LoginDto loginDto) {
+    public ResponseEntity<LoginResponseDto> login(@Valid @RequestBody LoginDto loginDto,
+                                                  @RequestHeader(name = GuestCartTokens.HEADER, required = false) String guestCart) {
 
         UsernamePasswordAuthenticationToken authenticationToken =
                 new UsernamePasswordAuthenticationToken(loginDto.getUsername(), loginDto.getPassword());
@@ -59,6 +77,11 @@ public class AuthenticationController {
 
             HttpHeaders httpHeaders = new HttpHeaders();
             httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
+
+            if (guestCart != null && mergeGuestCart(user.getId(), guestCart)) {
+                // An empty value tells the client the guest cart has been taken over
+                httpHeaders.add(GuestCartTokens.HEADER, "");
+            }
             return new ResponseEntity<>(new LoginResponseDto(jwt, user), httpHeaders, HttpStatus.OK);
         }
         catch(Exception ex)
@@ -67,6 +90,46 @@ public class AuthenticationController {
         }
     }
 
+    /**
+     * Merges the guest cart into the user's stored cart in one bulk update, keeping the
+     * larger quantity of each product. Taking the maximum rather than the sum makes the
+     * merge idempotent: a retried or replayed login with the same token changes nothing.
+     * A bad or expired guest cart is ignored rather than failing the login.
+     *
+     * @return true if the guest cart was merged
+     */
+    private boolean mergeGuestCart(int userId, String guestCart) {
+        Map<Integer, Integer> guestItems;
+        try {
+            guestItems = guestCartTokens.decode(guestCart);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        if (guestItems.isEmpty()) {
+            return true;
+        }
+
+        ShoppingCart cart = shoppingCartDao.getByUserId(userId);
+
+        List<ShoppingCartChange> changes = new ArrayList<>();
+        guestItems.forEach((productId, quantity) -> {
+            ShoppingCartItem existing = cart.get(productId);
+            if (existing != null) {
+                if (quantity > existing.getQuantity()) {
+                    changes.add(new ShoppingCartChange(productId, quantity));
+                }
+            } else if (productDao.getById(productId) != null) {
+                changes.add(new ShoppingCartChange(productId, quantity));
+            }
+        });
+
+        if (!changes.isEmpty()) {
+            shoppingCartDao.applyChanges(userId, changes);
+        }
+        return true;
+    }
+
     @ResponseStatus(HttpStatus.CREATED)
     @RequestMapping(value = "/register", method = RequestMethod.POST)
     public ResponseEntity<User> register(@Valid @RequestBody RegisterUserDto newUser) {
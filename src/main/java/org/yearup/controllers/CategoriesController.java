@@ -1,16 +1,16 @@
 package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.CategoryDao;
-import org.yearup.data.ProductDao;
 import org.yearup.models.Category;
-import org.yearup.models.Product;
-
-import java.util.List;
+import org.yearup.services.CatalogResponseCache;
+import org.yearup.services.CatalogVersion;
 
 @RestController // Indicates this class handles REST API requests and returns JSON responses
 @RequestMapping("categories") // Base URL for all endpoints in this controller
@@ -18,28 +18,32 @@ import java.util.List;
 public class CategoriesController
 {
     private final CategoryDao categoryDao;
-    private final ProductDao productDao;
+    private final CatalogVersion catalogVersion;
+    private final CatalogResponseCache responseCache;
 
     // Constructor-based dependency injection
     @Autowired
-    public CategoriesController(ProductDao productDao, CategoryDao categoryDao)
+    public CategoriesController(CategoryDao categoryDao, CatalogVersion catalogVersion, CatalogResponseCache responseCache)
     {
-        this.productDao = productDao;
         this.categoryDao = categoryDao;
+        this.catalogVersion = catalogVersion;
+        this.responseCache = responseCache;
     }
 
     /**
      * GET /categories
-     * Retrieves all categories.
+     * Retrieves all categories, served from the pre-serialized catalog cache.
+     * Answers 304 Not Modified when the client's ETag matches the cached version.
      *
-     * @return List of all categories
+     * @param acceptEncoding the client's Accept-Encoding header, used to pick gzip
+     * @return JSON body of all categories
      */
     @GetMapping("")
     @PreAuthorize("permitAll()") // Open to all users, authenticated or not
-    public List<Category> getAll()
+    public ResponseEntity<byte[]> getAll(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
     {
         try {
-            return categoryDao.getAllCategories();
+            return responseCache.getCategories().toResponse(acceptEncoding, catalogVersion.lastModified());
         } catch (Exception ex) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
         }
@@ -74,17 +78,20 @@ public class CategoriesController
 
     /**
      * GET /categories/{categoryId}/products
-     * Retrieves all products under a given category.
+     * Retrieves all products under a given category, served from the pre-serialized catalog cache.
+     * Answers 304 Not Modified when the client's ETag matches the cached version.
      *
      * @param categoryId the ID of the category
-     * @return List of products
+     * @param acceptEncoding the client's Accept-Encoding header, used to pick gzip
+     * @return JSON body of the category's products
      */
     @GetMapping("{categoryId}/products")
     @PreAuthorize("permitAll()") // Open to all users
-    public List<Product> getProductsById(@PathVariable int categoryId)
+    public ResponseEntity<byte[]> getProductsById(@PathVariable int categoryId,
+                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
     {
         try {
-            return productDao.listByCategoryId(categoryId);
+            return responseCache.getProductsByCategory(categoryId).toResponse(acceptEncoding, catalogVersion.lastModified());
         } catch (Exception ex) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
         }
@@ -0,0 +1,132 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+import org.yearup.models.ShoppingCartItem;
+import org.yearup.services.GuestCartTokens;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carts for shoppers who are not logged in. The cart lives in a signed token the
+ * client sends in the X-Guest-Cart header; every response carries the updated token
+ * in the same header. Nothing is written to the database; the token is merged into
+ * the user's stored cart when they log in.
+ */
+@RestController
+@RequestMapping("cart/guest")
+@PreAuthorize("permitAll()")
+@CrossOrigin(exposedHeaders = GuestCartTokens.HEADER)
+public class GuestCartController
+{
+    private GuestCartTokens guestCartTokens;
+    private ProductDao productDao;
+
+    @Autowired
+    public GuestCartController(GuestCartTokens guestCartTokens, ProductDao productDao)
+    {
+        this.guestCartTokens = guestCartTokens;
+        this.productDao = productDao;
+    }
+
+    @GetMapping
+    public ResponseEntity<ShoppingCart> getCart(@RequestHeader(name = GuestCartTokens.HEADER, required = false) String token)
+    {
+        return respond(decode(token));
+    }
+
+    @PostMapping("/products/{productId}")
+    public ResponseEntity<ShoppingCart> addProductToCart(@PathVariable int productId,
+                                                         @RequestHeader(name = GuestCartTokens.HEADER, required = false) String token)
+    {
+        Map<Integer, Integer> items = decode(token);
+
+        if (productDao.getById(productId) == null)
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+
+        int quantity = items.getOrDefault(productId, 0) + 1;
+        if (quantity > guestCartTokens.getMaxQuantity())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be <= " + guestCartTokens.getMaxQuantity());
+
+        items.put(productId, quantity);
+        if (items.size() > guestCartTokens.getMaxItems())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Log in to add more than " + guestCartTokens.getMaxItems() + " items");
+
+        return respond(items);
+    }
+
+    @PutMapping
+    public ResponseEntity<ShoppingCart> updateCart(@RequestBody List<ShoppingCartChange> changes,
+                                                   @RequestHeader(name = GuestCartTokens.HEADER, required = false) String token)
+    {
+        Map<Integer, Integer> items = decode(token);
+
+        for (ShoppingCartChange change : changes)
+        {
+            if (change == null || change.getQuantity() < 0 || change.getQuantity() > guestCartTokens.getMaxQuantity())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be between 0 and " + guestCartTokens.getMaxQuantity());
+
+            if (change.getQuantity() == 0)
+                items.remove(change.getProductId());
+            else
+                items.put(change.getProductId(), change.getQuantity());
+        }
+
+        if (items.size() > guestCartTokens.getMaxItems())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Log in to add more than " + guestCartTokens.getMaxItems() + " items");
+
+        return respond(items);
+    }
+
+    private Map<Integer, Integer> decode(String token)
+    {
+        try
+        {
+            return guestCartTokens.decode(token);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid guest cart.");
+        }
+    }
+
+    private ResponseEntity<ShoppingCart> respond(Map<Integer, Integer> items)
+    {
+        ShoppingCart cart = new ShoppingCart();
+
+        // One lookup for the whole cart
+        Map<Integer, Product> products = new HashMap<>();
+        if (!items.isEmpty())
+            productDao.getByIds(new ArrayList<>(items.keySet())).forEach(product -> products.put(product.getProductId(), product));
+
+        // Lines for products that have since been deleted are dropped from the cart and the new token
+        items.entrySet().removeIf(entry -> {
+            Product product = products.get(entry.getKey());
+            if (product == null)
+                return true;
+
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setProduct(product);
+            item.setQuantity(entry.getValue());
+            item.setDiscountPercent(BigDecimal.ZERO);
+            cart.add(item);
+            return false;
+        });
+
+        return ResponseEntity.ok()
+                .header(GuestCartTokens.HEADER, guestCartTokens.encode(items))
+                .body(cart);
+    }
+}
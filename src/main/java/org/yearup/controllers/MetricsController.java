@@ -0,0 +1,75 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.ProductViewDao;
+import org.yearup.data.mysql.MySqlWriteBehindShoppingCartDao;
+import org.yearup.services.ProductViewCounter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("metrics")
+@PreAuthorize("hasRole('ROLE_ADMIN')")
+@CrossOrigin
+public class MetricsController
+{
+    private ObjectProvider<MySqlWriteBehindShoppingCartDao> writeBehindCart;
+    private ProductViewDao productViewDao;
+    private ProductViewCounter productViewCounter;
+
+    @Autowired
+    public MetricsController(ObjectProvider<MySqlWriteBehindShoppingCartDao> writeBehindCart,
+                             ProductViewDao productViewDao, ProductViewCounter productViewCounter)
+    {
+        this.writeBehindCart = writeBehindCart;
+        this.productViewDao = productViewDao;
+        this.productViewCounter = productViewCounter;
+    }
+
+    /**
+     * GET /metrics/cart-write-behind
+     * Coalescing and flush statistics, or just enabled=false when write-behind is off.
+     */
+    @GetMapping("cart-write-behind")
+    public Map<String, Object> getCartWriteBehind()
+    {
+        MySqlWriteBehindShoppingCartDao dao = writeBehindCart.getIfAvailable();
+        if(dao == null)
+            return Map.of("enabled", false);
+
+        Map<String, Object> stats = new HashMap<>(dao.getStats());
+        stats.put("enabled", true);
+        return stats;
+    }
+
+    /**
+     * GET /metrics/product-views?limit=20
+     * The most viewed products (product id to views) as of the last flush, plus
+     * this node's views still waiting to be flushed.
+     */
+    @GetMapping("product-views")
+    public Map<String, Object> getProductViews(@RequestParam(name="limit", defaultValue = "20") int limit)
+    {
+        if(limit < 1 || limit > 1000)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and 1000.");
+
+        try
+        {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("mostViewed", productViewDao.getMostViewed(limit));
+            stats.put("pending", productViewCounter.getPending());
+            stats.put("dropped", productViewCounter.getDropped());
+            return stats;
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+}
@@ -1,77 +1,186 @@
 package org.yearup.controllers;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.yearup.data.OrderDao;
 import org.yearup.data.ProfileDao;
 import org.yearup.data.ShoppingCartDao;
 import org.yearup.data.UserDao;
 import org.yearup.models.*;
+import org.yearup.services.AsyncDataLoader;
+import org.yearup.services.BestSellers;
+import org.yearup.services.CheckoutPipeline;
+import org.yearup.services.IdempotencyKeys;
+import org.yearup.services.RelatedProducts;
+import org.yearup.services.StageTimings;
+import org.yearup.services.StockReservationService;
 
 import java.math.BigDecimal;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController // Indicates this class is a REST controller returning JSON responses
 @RequestMapping("cart") // Base URL path for all endpoints in this controller
 @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMIN')") // Only users with these roles can access the methods
-@CrossOrigin // Enables cross-origin requests (e.g. from frontend on a different port)
+@CrossOrigin(exposedHeaders = {IdempotencyKeys.REPLAYED_HEADER, StageTimings.HEADER}) // Enables cross-origin requests (e.g. from frontend on a different port)
 public class OrderController {
+    private static final Logger logger = LoggerFactory.getLogger(OrderController.class);
+
+    // Flat-rate shipping and the (currently unused) line discount, in cents
+    private static final long SHIPPING_CENTS = 599;
+    private static final BigDecimal NO_DISCOUNT = Money.fromCents(0);
+
     // DAO dependencies for cart, order, user, and profile access
     private final ShoppingCartDao shoppingCartDao;
-    private final OrderDao orderDao;
+    private final CheckoutPipeline checkoutPipeline;
     private final UserDao userDao;
     private final ProfileDao profileDao;
+    private final StockReservationService stockReservationService;
+    private final IdempotencyKeys idempotencyKeys;
+    private final AsyncDataLoader asyncDataLoader;
+    private final BestSellers bestSellers;
+    private final RelatedProducts relatedProducts;
 
     // Constructor-based dependency injection
     @Autowired
     public OrderController(ShoppingCartDao shoppingCartDao,
-                           OrderDao orderDao,
+                           CheckoutPipeline checkoutPipeline,
                            UserDao userDao,
-                           ProfileDao profileDao) {
+                           ProfileDao profileDao,
+                           StockReservationService stockReservationService,
+                           IdempotencyKeys idempotencyKeys,
+                           AsyncDataLoader asyncDataLoader,
+                           BestSellers bestSellers,
+                           RelatedProducts relatedProducts) {
         this.shoppingCartDao = shoppingCartDao;
-        this.orderDao = orderDao;
+        this.checkoutPipeline = checkoutPipeline;
         this.userDao = userDao;
         this.profileDao = profileDao;
+        this.stockReservationService = stockReservationService;
+        this.idempotencyKeys = idempotencyKeys;
+        this.asyncDataLoader = asyncDataLoader;
+        this.bestSellers = bestSellers;
+        this.relatedProducts = relatedProducts;
     }
 
     /**
      * POST /cart/checkout
      * Performs checkout for the current user: creates order, line items, and clears the cart.
+     * With an Idempotency-Key header, retries of the same checkout return the first
+     * attempt's order instead of placing another one. Time spent in each stage is
+     * returned in a Server-Timing header.
      *
      * @param principal Authenticated user's information
+     * @param idempotencyKey Optional client-chosen key identifying this checkout attempt
      * @return ResponseEntity with created OrderDTO or error status
      */
     @PostMapping("/checkout")
     @ResponseStatus(HttpStatus.CREATED) // Sets default response status to 201 Created
-    public ResponseEntity<?> checkout(Principal principal) {
+    public ResponseEntity<?> checkout(Principal principal,
+                                      @RequestHeader(name = IdempotencyKeys.HEADER, required = false) String idempotencyKey) {
         // Retrieve the authenticated user's username
         String username = principal.getName();
-        User user = userDao.getByUserName(username);
+        StageTimings timings = new StageTimings();
+        User user = timings.time("user", () -> userDao.getByUserName(username));
 
         // Return 401 if the user is not found
         if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User not found.");
         }
 
-        // Load the user's profile to get shipping address details
-        Profile profile = profileDao.getByUserId(user.getId());
+        if (idempotencyKey == null) {
+            return checkout(user, timings);
+        }
+
+        if (!IdempotencyKeys.isValid(idempotencyKey)) {
+            return ResponseEntity.badRequest().body(IdempotencyKeys.HEADER + " must be 1 to " + IdempotencyKeys.MAX_KEY_LENGTH + " characters.");
+        }
 
-        // Get the user's shopping cart
-        ShoppingCart cart = shoppingCartDao.getByUserId(user.getId());
+        return idempotencyKeys.execute(user.getId(), idempotencyKey, () -> checkout(user, timings));
+    }
+
+    /**
+     * Runs the checkout for a known user.
+     *
+     * @return ResponseEntity with created OrderDTO or error status, plus the Server-Timing header
+     */
+    private ResponseEntity<?> checkout(User user, StageTimings timings) {
+        ResponseEntity<?> response = placeCheckout(user, timings);
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .header(StageTimings.HEADER, timings.toHeader())
+                .body(response.getBody());
+    }
+
+    private ResponseEntity<?> placeCheckout(User user, StageTimings timings) {
+        // The profile (for the shipping address) and the cart don't depend on each other, so load them together
+        CompletableFuture<Profile> profileLoad = asyncDataLoader.load("profile", timings,
+                () -> profileDao.getByUserId(user.getId()));
+
+        // Push any buffered cart changes to the database, then get the user's shopping cart
+        CompletableFuture<ShoppingCart> cartLoad = asyncDataLoader.load("cart", timings, () -> {
+            shoppingCartDao.flushPendingChanges(user.getId());
+            return shoppingCartDao.getByUserId(user.getId());
+        });
+
+        ShoppingCart cart = AsyncDataLoader.join(cartLoad);
+        Profile profile = AsyncDataLoader.join(profileLoad);
 
         // Return 400 if the cart is empty or null
         if (cart == null || cart.getItems().isEmpty()) {
             return ResponseEntity.badRequest().body("Shopping cart is empty.");
         }
 
-        // Calculate the total cost of the items in the cart
-        BigDecimal total = cart.getTotal();
+        // Take the stock up front; 409 if any item has run out
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (ShoppingCartItem item : cart.getItems().values()) {
+            quantities.put(item.getProductId(), item.getQuantity());
+        }
+
+        List<Integer> unavailable = timings.time("stock", () -> stockReservationService.reserve(quantities));
+        if (!unavailable.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Not enough stock for product(s) " + unavailable);
+        }
+
+        Order order = buildOrder(user, profile, cart);
+
+        try {
+            // Save the order, its line items and the cart delete; concurrent checkouts share one commit
+            timings.time("order", () -> checkoutPipeline.submit(order).join());
+        } catch (RuntimeException e) {
+            if (e.getCause() instanceof CheckoutPipeline.OutcomeUnknownException) {
+                // The order may stand; giving its stock back could oversell, keeping it at worst undersells
+                logger.error("Order {} of user {} may not have been saved; keeping its reserved stock {}.",
+                        order.getId(), user.getId(), quantities, e);
+            } else {
+                // The order was not saved, so give the stock back
+                stockReservationService.release(quantities);
+            }
+            throw e;
+        }
+
+        // The order is committed from here on: nothing below may release the stock or fail the request
+        afterCommit(user, cart);
+        return ResponseEntity.status(HttpStatus.CREATED).body(toDto(order));
+    }
+
+    /**
+     * Builds the order and its line items from the cart.
+     *
+     * @return the unsaved Order
+     */
+    private Order buildOrder(User user, Profile profile, ShoppingCart cart) {
+        // The cart keeps a running total in cents; convert once for the order record
+        BigDecimal total = Money.fromCents(cart.getTotalCents());
 
         // Create an Order object and populate its fields
         Order order = new Order();
@@ -82,29 +191,52 @@ public class OrderController {
         order.setCity(profile.getCity());
         order.setState(profile.getState());
         order.setZip(profile.getZip());
-        order.setShippingAmount(new BigDecimal("5.99")); // Flat-rate shipping
-
-        // Save the order to the database (order ID is generated here)
-        orderDao.createOrder(order);
+        order.setShippingAmount(Money.fromCents(SHIPPING_CENTS)); // Flat-rate shipping
 
         // Create line items based on cart contents
         List<OrderLineItem> orderItems = new ArrayList<>();
 
         for (ShoppingCartItem item : cart.getItems().values()) {
             OrderLineItem lineItem = new OrderLineItem();
-            lineItem.setOrderId(order.getId());
             lineItem.setProductId(item.getProductId());
             lineItem.setQuantity(item.getQuantity());
             lineItem.setPrice(item.getProduct().getPrice()); // Per-unit price
-            lineItem.setDiscount(new BigDecimal("0.00")); // No discount applied
-            orderDao.addLineItem(lineItem);
+            lineItem.setDiscount(NO_DISCOUNT); // No discount applied
             orderItems.add(lineItem);
         }
+        order.setLineItems(orderItems);
+
+        return order;
+    }
+
+    /**
+     * Follow-up work for a committed order. Each step is logged and skipped on failure.
+     */
+    private void afterCommit(User user, ShoppingCart cart) {
+        // Let cart stores outside the database clear the cart too
+        try {
+            shoppingCartDao.afterCheckout(user.getId());
+        } catch (RuntimeException e) {
+            logger.warn("Clearing the cart of user {} after checkout failed.", user.getId(), e);
+        }
 
-        // Clear the shopping cart after the order is placed
-        shoppingCartDao.clearCart(user.getId());
+        // Count the order towards the best-seller and related-product rails
+        try {
+            List<Integer> productIds = new ArrayList<>();
+            for (ShoppingCartItem item : cart.getItems().values()) {
+                bestSellers.record(item.getProductId(), item.getProduct().getCategoryId(), item.getQuantity());
+                productIds.add(item.getProductId());
+            }
+            relatedProducts.recordOrder(productIds);
+        } catch (RuntimeException e) {
+            logger.warn("Recording the order of user {} for recommendations failed.", user.getId(), e);
+        }
+    }
 
-        // Build and return the response DTO with order and line item details
+    /**
+     * @return the response DTO with order and line item details
+     */
+    private static OrderDTO toDto(Order order) {
         OrderDTO dto = new OrderDTO();
         dto.setOrderId(order.getId());
         dto.setTotalAmount(order.getTotalAmount());
@@ -113,8 +245,8 @@ public class OrderController {
         dto.setCity(order.getCity());
         dto.setState(order.getState());
         dto.setZip(order.getZip());
-        dto.setLineItems(orderItems);
+        dto.setLineItems(order.getLineItems());
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(dto);
+        return dto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.OrderDao;
+import org.yearup.data.UserDao;
+import org.yearup.models.Order;
+import org.yearup.models.OrderCursor;
+import org.yearup.models.OrderHistoryPage;
+
+import java.util.List;
+
+/**
+ * Read side of orders. GET /orders pages through the current user's orders, newest
+ * first, using the nextCursor of the previous page; GET /orders/{id} returns one
+ * order. Every response carries the line items, read in the same query as the orders.
+ */
+@RestController
+@RequestMapping("orders")
+@PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMIN')")
+@CrossOrigin
+public class OrderHistoryController
+{
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final OrderDao orderDao;
+    private final UserDao userDao;
+
+    @Autowired
+    public OrderHistoryController(OrderDao orderDao, UserDao userDao)
+    {
+        this.orderDao = orderDao;
+        this.userDao = userDao;
+    }
+
+    @GetMapping
+    public OrderHistoryPage getOrders(@RequestParam(name = "cursor", required = false) String cursor,
+                                      @RequestParam(name = "limit", defaultValue = "20") int limit,
+                                      Authentication authentication)
+    {
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+
+        OrderCursor after = null;
+        if (cursor != null)
+        {
+            try
+            {
+                after = OrderCursor.decode(cursor);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor.");
+            }
+        }
+
+        int userId = userDao.getIdByUsername(authentication.getName());
+
+        // One extra row tells us whether there is another page without a COUNT
+        List<Order> orders = orderDao.getByUserId(userId, after, limit + 1);
+        String nextCursor = null;
+        if (orders.size() > limit)
+        {
+            orders = orders.subList(0, limit);
+            nextCursor = OrderCursor.after(orders.get(limit - 1)).encode();
+        }
+
+        return new OrderHistoryPage(orders, nextCursor);
+    }
+
+    @GetMapping("{orderId}")
+    public Order getOrder(@PathVariable int orderId, Authentication authentication)
+    {
+        Order order = orderDao.getById(orderId);
+
+        // Someone else's order looks the same as a missing one, unless you're an admin
+        if (order == null || (order.getUserId() != userDao.getIdByUsername(authentication.getName()) && !isAdmin(authentication)))
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+
+        return order;
+    }
+
+    private static boolean isAdmin(Authentication authentication)
+    {
+        for (GrantedAuthority authority : authentication.getAuthorities())
+        {
+            if ("ROLE_ADMIN".equals(authority.getAuthority()))
+                return true;
+        }
+        return false;
+    }
+}
@@ -2,13 +2,31 @@ package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import org.yearup.models.Product;
+import org.yearup.models.ProductChanges;
+import org.yearup.models.ProductImportReport;
 import org.yearup.data.ProductDao;
+import org.yearup.services.BestSellers;
+import org.yearup.services.CatalogVersion;
+import org.yearup.services.ProductImportReader;
+import org.yearup.services.ProductImporter;
+import org.yearup.services.ProductViewCounter;
+import org.yearup.services.RecentlyViewed;
+import org.yearup.services.RelatedProducts;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -17,11 +35,26 @@ import java.util.List;
 public class ProductsController
 {
     private ProductDao productDao;
+    private CatalogVersion catalogVersion;
+    private BestSellers bestSellers;
+    private RelatedProducts relatedProducts;
+    private RecentlyViewed recentlyViewed;
+    private ProductViewCounter productViewCounter;
+    private ProductImporter productImporter;
 
     @Autowired
-    public ProductsController(ProductDao productDao)
+    public ProductsController(ProductDao productDao, CatalogVersion catalogVersion,
+                              BestSellers bestSellers, RelatedProducts relatedProducts,
+                              RecentlyViewed recentlyViewed, ProductViewCounter productViewCounter,
+                              ProductImporter productImporter)
     {
         this.productDao = productDao;
+        this.catalogVersion = catalogVersion;
+        this.bestSellers = bestSellers;
+        this.relatedProducts = relatedProducts;
+        this.recentlyViewed = recentlyViewed;
+        this.productViewCounter = productViewCounter;
+        this.productImporter = productImporter;
     }
 
     @GetMapping("")
@@ -29,9 +62,14 @@ public class ProductsController
     public List<Product> search(@RequestParam(name="cat", required = false) Integer categoryId,
                                 @RequestParam(name="minPrice", required = false) BigDecimal minPrice,
                                 @RequestParam(name="maxPrice", required = false) BigDecimal maxPrice,
-                                @RequestParam(name="color", required = false) String color
+                                @RequestParam(name="color", required = false) String color,
+                                WebRequest request
                                 )
     {
+        // 304 when the client already holds the current catalog version
+        if(request.checkNotModified(catalogVersion.etag(), catalogVersion.lastModified()))
+            return null;
+
         try
         {
             return productDao.search(categoryId, minPrice, maxPrice, color);
@@ -42,10 +80,70 @@ public class ProductsController
         }
     }
 
+    /**
+     * GET /products/bestsellers?categoryId=2&window=week&limit=10
+     * Best-selling products from the in-memory sketch; without categoryId, across the whole catalog.
+     */
+    @GetMapping("bestsellers")
+    @PreAuthorize("permitAll()")
+    public List<Product> getBestSellers(@RequestParam(name="categoryId", required = false) Integer categoryId,
+                                        @RequestParam(name="window", defaultValue = "week") String window,
+                                        @RequestParam(name="limit", defaultValue = "10") int limit)
+    {
+        if(limit < 1 || limit > bestSellers.getTopK())
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + bestSellers.getTopK() + ".");
+
+        BestSellers.Window period;
+        try
+        {
+            period = BestSellers.Window.valueOf(window.toUpperCase());
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window must be day or week.");
+        }
+
+        List<Integer> productIds = bestSellers.top(categoryId == null ? BestSellers.ALL_CATEGORIES : categoryId, period, limit);
+
+        try
+        {
+            return productDao.getByIds(productIds);
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    @GetMapping("changes")
+    @PreAuthorize("permitAll()")
+    public ProductChanges getChanges(@RequestParam(name="since", defaultValue = "0") long since,
+                                     @RequestParam(name="limit", defaultValue = "500") int limit)
+    {
+        if(since < 0 || limit < 1 || limit > 5000)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must be >= 0 and limit between 1 and 5000.");
+
+        try
+        {
+            return productDao.getChangesSince(since, limit);
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
     @GetMapping("{id}")
     @PreAuthorize("permitAll()")
-    public Product getById(@PathVariable int id )
+    public Product getById(@PathVariable int id, WebRequest request, Principal principal)
     {
+        if(request.checkNotModified(catalogVersion.etag(), catalogVersion.lastModified()))
+        {
+            // Served from the browser cache, but still a view of a product the client has
+            recordView(principal, id, false);
+            return null;
+        }
+
         try
         {
             var product = productDao.getById(id);
@@ -53,6 +151,7 @@ public class ProductsController
             if(product == null)
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND);
 
+            recordView(principal, id, true);
             return product;
         }
         catch(Exception ex)
@@ -61,6 +160,48 @@ public class ProductsController
         }
     }
 
+    /**
+     * GET /products/{id}/related?limit=5
+     * Products most often bought together with this one, strongest first.
+     */
+    @GetMapping("{id}/related")
+    @PreAuthorize("permitAll()")
+    public List<Product> getRelated(@PathVariable int id,
+                                    @RequestParam(name="limit", defaultValue = "5") int limit)
+    {
+        if(limit < 1)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1.");
+
+        int[] related = relatedProducts.getRelated(id);
+        List<Integer> productIds = new ArrayList<>(Math.min(limit, related.length));
+        for(int i = 0; i < related.length && i < limit; i++)
+        {
+            productIds.add(related[i]);
+        }
+
+        try
+        {
+            return productDao.getByIds(productIds);
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
+    private void recordView(Principal principal, int productId, boolean resolved)
+    {
+        // An id that wasn't looked up may not exist, so it must not take a counter slot
+        if(resolved)
+            productViewCounter.record(productId);
+        else
+            productViewCounter.recordIfCounted(productId);
+
+        // Only logged-in users have a recently viewed rail
+        if(principal != null)
+            recentlyViewed.record(principal.getName(), productId);
+    }
+
     @PostMapping()
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public Product addProduct(@RequestBody Product product)
@@ -75,6 +216,32 @@ public class ProductsController
         }
     }
 
+    /**
+     * POST /products/import
+     * Bulk insert/update from a CSV (with a header row) or NDJSON body, read as a stream.
+     * Bad rows are reported and skipped; the rest are written in chunks.
+     */
+    @PostMapping(path = "import", consumes = { ProductImportReader.CSV, ProductImportReader.NDJSON })
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ProductImportReport importProducts(HttpServletRequest request)
+    {
+        MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+        Charset charset = mediaType.getCharset() == null ? StandardCharsets.UTF_8 : mediaType.getCharset();
+
+        try (Reader body = new InputStreamReader(request.getInputStream(), charset))
+        {
+            return productImporter.importProducts(mediaType.getType() + "/" + mediaType.getSubtype(), body);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        catch(Exception ex)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad.");
+        }
+    }
+
     @PutMapping("{id}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public void updateProduct(@PathVariable int id, @RequestBody Product product)
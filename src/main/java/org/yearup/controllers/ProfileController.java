@@ -2,49 +2,66 @@ package org.yearup.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.ProductDao;
 import org.yearup.data.ProfileDao;
 import org.yearup.data.UserDao;
+import org.yearup.models.Product;
 import org.yearup.models.Profile;
 import org.yearup.security.SecurityUtils;
+import org.yearup.services.RecentlyViewed;
+import org.yearup.services.StageTimings;
+
+import java.util.List;
 
 @RestController // Marks this class as a REST controller returning JSON responses
 @RequestMapping("profile") // Base route for all profile-related endpoints
-@CrossOrigin // Enables Cross-Origin Resource Sharing (for frontend/backend interaction)
+@CrossOrigin(exposedHeaders = StageTimings.HEADER) // Enables Cross-Origin Resource Sharing (for frontend/backend interaction)
 public class ProfileController
 {
     // Dependencies for accessing profile and user data
     private final ProfileDao profileDao;
     private final UserDao userDao;
+    private final ProductDao productDao;
+    private final RecentlyViewed recentlyViewed;
 
     // Constructor-based dependency injection
     @Autowired
-    public ProfileController(ProfileDao profileDao, UserDao userDao)
+    public ProfileController(ProfileDao profileDao, UserDao userDao, ProductDao productDao, RecentlyViewed recentlyViewed)
     {
         this.profileDao = profileDao;
         this.userDao = userDao;
+        this.productDao = productDao;
+        this.recentlyViewed = recentlyViewed;
     }
 
     /**
      * GET /profile
      * Retrieves the profile information of the currently authenticated user.
+     * Time spent in each lookup is returned in a Server-Timing header.
      *
      * @return Profile object for the logged-in user
      */
     @GetMapping
     @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMIN')") // Restricts access to users or admins
-    public Profile getProfile() {
+    public ResponseEntity<Profile> getProfile() {
         // Get the current authenticated username
         String username = SecurityUtils.getCurrentUsername()
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated"));
 
-        // Find the user ID using the username
-        int userId = userDao.getIdByUsername(username);
+        // Find the user ID using the username; the profile lookup needs it, so both run in turn here
+        StageTimings timings = new StageTimings();
+        int userId = timings.time("user", () -> userDao.getIdByUsername(username));
 
-        // Retrieve and return the profile associated with the user ID
-        return profileDao.getByUserId(userId);
+        // Retrieve the profile associated with the user ID
+        Profile profile = timings.time("profile", () -> profileDao.getByUserId(userId));
+
+        return ResponseEntity.ok()
+                .header(StageTimings.HEADER, timings.toHeader())
+                .body(profile);
     }
 
     /**
@@ -67,4 +84,22 @@ public class ProfileController
         // Update the profile data in the database
         profileDao.update(profile, userId);
     }
-}
\ No newline at end of file
+
+    /**
+     * GET /profile/recent
+     * Products the current user viewed most recently, newest first.
+     *
+     * @return the products, loaded with one batched query
+     */
+    @GetMapping("/recent")
+    @PreAuthorize("hasRole('ROLE_USER') or hasRole('ROLE_ADMIN')") // Restricts access to users or admins
+    public List<Product> getRecentlyViewed()
+    {
+        // Get the current authenticated username; views are tracked by username, so no user lookup is needed
+        String username = SecurityUtils.getCurrentUsername()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not authenticated"));
+
+        // Products deleted since they were viewed are simply left out
+        return productDao.getByIds(recentlyViewed.get(username));
+    }
+}
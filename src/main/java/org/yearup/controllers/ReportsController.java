@@ -0,0 +1,91 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.SalesReportDao;
+import org.yearup.models.SalesReport;
+import org.yearup.services.SalesRollupRebuild;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Sales reporting for admins, read from the rollup tables rather than from orders.
+ */
+@RestController
+@RequestMapping("reports")
+@PreAuthorize("hasRole('ROLE_ADMIN')")
+@CrossOrigin
+public class ReportsController
+{
+    private static final int MAX_DAYS = 366;
+    private static final int MAX_TOP = 100;
+
+    private SalesReportDao salesReportDao;
+    private SalesRollupRebuild salesRollupRebuild;
+
+    @Autowired
+    public ReportsController(SalesReportDao salesReportDao, SalesRollupRebuild salesRollupRebuild)
+    {
+        this.salesReportDao = salesReportDao;
+        this.salesRollupRebuild = salesRollupRebuild;
+    }
+
+    /**
+     * GET /reports/sales?from=2024-03-01&to=2024-03-31&top=20
+     * Revenue per day, per category and for the best-selling products over an
+     * inclusive date range; defaults to the last 30 days.
+     */
+    @GetMapping("sales")
+    public SalesReport getSales(@RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                @RequestParam(name = "top", defaultValue = "20") int top)
+    {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+
+        if (start.isAfter(end) || ChronoUnit.DAYS.between(start, end) >= MAX_DAYS)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be on or before to, at most " + MAX_DAYS + " days apart.");
+        if (top < 0 || top > MAX_TOP)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "top must be between 0 and " + MAX_TOP + ".");
+
+        SalesReport report = new SalesReport(start, end);
+        report.setDays(salesReportDao.getDaily(start, end));
+        report.setCategories(salesReportDao.getByCategory(start, end));
+        if (top > 0)
+            report.setTopProducts(salesReportDao.getTopProducts(start, end, top));
+
+        return report;
+    }
+
+    /**
+     * POST /reports/sales/rebuild?from=2024-01-01
+     * Starts recomputing the rollups from order history in the background.
+     * Without from, starts at the oldest order; without to, ends yesterday.
+     */
+    @PostMapping("sales/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild(@RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                       @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to)
+    {
+        if (!salesRollupRebuild.start(from, to))
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A rebuild is already running.");
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(salesRollupRebuild.getStatus());
+    }
+
+    /**
+     * GET /reports/sales/rebuild
+     * Progress of the current or last rebuild.
+     */
+    @GetMapping("sales/rebuild")
+    public Map<String, Object> getRebuildStatus()
+    {
+        return salesRollupRebuild.getStatus();
+    }
+}
@@ -9,18 +9,28 @@ import org.yearup.data.ProductDao;
 import org.yearup.data.ShoppingCartDao;
 import org.yearup.data.UserDao;
 import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
 import org.yearup.models.User;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController // Marks this class as a REST controller where every method returns a domain object instead of a view
 @RequestMapping("cart") // Base route for all endpoints in this controller
 @CrossOrigin // Allows cross-origin requests (important for frontend/backend communication)
 public class ShoppingCartController
 {
+    // Upper bound on the number of lines a single bulk update may touch
+    private static final int MAX_BULK_CHANGES = 200;
+
     // Dependencies required for managing the shopping cart
     private ShoppingCartDao shoppingCartDao;
     private UserDao userDao;
@@ -72,14 +82,18 @@ public class ShoppingCartController
 
     /**
      * Adds a product to the current user's cart.
+     * With ?view=delta only the changed line, the cart totals and the cart version are returned.
      *
      * @param productId ID of the product to add
+     * @param view "delta" for a ShoppingCartDelta, anything else for the full cart
      * @param principal authenticated user info
-     * @return updated ShoppingCart
+     * @return updated ShoppingCart, or a ShoppingCartDelta
      */
     @PostMapping("/products/{productId}")
     @PreAuthorize("hasRole('ROLE_USER')")
-    public ShoppingCart addProductToCart(@PathVariable int productId, Principal principal)
+    public Object addProductToCart(@PathVariable int productId,
+                                   @RequestParam(name="view", required = false) String view,
+                                   Principal principal)
     {
         String username = principal.getName();
         User user = userDao.getByUserName(username);
@@ -88,9 +102,18 @@ public class ShoppingCartController
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
         }
 
+        // Checked here: a cart store may only write the line later
+        if (productDao.getById(productId) == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+        }
+
         // Add the product to the cart
         shoppingCartDao.addProductToCart(user.getId(), productId);
 
+        if ("delta".equals(view)) {
+            return shoppingCartDao.getDelta(user.getId(), productId);
+        }
+
         // Return the updated cart
         return shoppingCartDao.getByUserId(user.getId());
     }
@@ -139,6 +162,73 @@ public class ShoppingCartController
         shoppingCartDao.updateQuantity(user.getId(), productId, newQuantity);
     }
 
+    /**
+     * Sets the quantities of several products in one request and returns the resulting cart.
+     * A quantity of 0 removes the product; products not in the cart are added.
+     * Answers 400 naming the productIds that don't exist, before anything is changed.
+     *
+     * @param changes list of {productId, quantity} pairs
+     * @param principal authenticated user info
+     * @return updated ShoppingCart
+     */
+    @PutMapping
+    @PreAuthorize("hasRole('ROLE_USER')")
+    public ShoppingCart updateCart(@RequestBody List<ShoppingCartChange> changes, Principal principal)
+    {
+        if (changes == null || changes.isEmpty() || changes.size() > MAX_BULK_CHANGES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Between 1 and " + MAX_BULK_CHANGES + " changes are required");
+        }
+
+        // Validate every line up front; a later line for the same product wins
+        Map<Integer, ShoppingCartChange> byProduct = new LinkedHashMap<>();
+        for (ShoppingCartChange change : changes) {
+            if (change == null || change.getQuantity() < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be >= 0");
+            }
+            byProduct.put(change.getProductId(), change);
+        }
+
+        User user = userDao.getByUserName(principal.getName());
+
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
+        }
+
+        // Only lines that add or keep a product need it to exist; removing an unknown id is a no-op
+        List<Integer> unknown = unknownProducts(byProduct.values());
+        if (!unknown.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown productId(s): " + unknown);
+        }
+
+        try
+        {
+            shoppingCartDao.applyChanges(user.getId(), new ArrayList<>(byProduct.values()));
+            return shoppingCartDao.getByUserId(user.getId());
+        }
+        catch(Exception e)
+        {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Oops... our bad update cart.");
+        }
+    }
+
+    private List<Integer> unknownProducts(Collection<ShoppingCartChange> changes)
+    {
+        List<Integer> requested = new ArrayList<>();
+        for (ShoppingCartChange change : changes) {
+            if (change.getQuantity() > 0) {
+                requested.add(change.getProductId());
+            }
+        }
+        if (requested.isEmpty()) {
+            return requested;
+        }
+
+        Set<Integer> found = new HashSet<>();
+        productDao.getByIds(requested).forEach(product -> found.add(product.getProductId()));
+        requested.removeIf(found::contains);
+        return requested;
+    }
+
     /**
      * Clears the entire shopping cart for the current user.
      *
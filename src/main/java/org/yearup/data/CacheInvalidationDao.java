@@ -0,0 +1,37 @@
+package org.yearup.data;
+
+import org.yearup.models.CacheInvalidation;
+
+import java.util.List;
+
+/**
+ * Interface for reading the catalog cache invalidation log.
+ * Entries are written by the catalog DAOs in the same transaction as the
+ * product or category change; every node polls them to evict its own caches.
+ */
+public interface CacheInvalidationDao
+{
+    /**
+     * Retrieves the invalidations recorded after a catalog version. Versions are
+     * taken under a lock and commit in order, so polling "version greater than the
+     * last one seen" never misses an entry that committed late.
+     *
+     * @param version the last catalog version the caller has applied
+     * @param limit the most entries to return
+     * @return the invalidations, in version order
+     */
+    List<CacheInvalidation> getSince(long version, int limit);
+
+    /**
+     * @return the shared catalog version: the number taken by the latest committed catalog write
+     */
+    long getCatalogVersion();
+
+    /**
+     * Deletes invalidations older than the retention period.
+     *
+     * @param retentionMinutes how long to keep entries
+     * @return the number of entries deleted
+     */
+    int deleteOlderThan(int retentionMinutes);
+}
@@ -0,0 +1,64 @@
+package org.yearup.data;
+
+/**
+ * Interface for the idempotency key store used by checkout.
+ * A key is claimed before the checkout runs and completed with the response
+ * afterwards, so a retry with the same key can be answered from the store.
+ * Keys are scoped per user.
+ */
+public interface IdempotencyKeyDao
+{
+    /**
+     * Claims a key for a new request. A key still pending after staleSeconds is
+     * assumed to belong to a node that died mid-request and may be claimed again.
+     *
+     * @param userId the user sending the request
+     * @param key the Idempotency-Key header value
+     * @param staleSeconds how long a pending claim is honoured
+     * @return true if the caller now owns the key and should run the request
+     */
+    boolean claim(int userId, String key, int staleSeconds);
+
+    /**
+     * Resets the age of a pending claim, so a request that is still running isn't
+     * taken for one whose node died.
+     *
+     * @param userId the user sending the request
+     * @param key the Idempotency-Key header value
+     */
+    void refresh(int userId, String key);
+
+    /**
+     * Records the response for a claimed key.
+     *
+     * @param userId the user sending the request
+     * @param key the Idempotency-Key header value
+     * @param response the response body as JSON
+     */
+    void complete(int userId, String key, String response);
+
+    /**
+     * Drops a claimed key whose request failed, so a retry runs it again.
+     *
+     * @param userId the user sending the request
+     * @param key the Idempotency-Key header value
+     */
+    void release(int userId, String key);
+
+    /**
+     * Retrieves the recorded response for a key.
+     *
+     * @param userId the user sending the request
+     * @param key the Idempotency-Key header value
+     * @return the response as JSON, or null if the key is unknown or still pending
+     */
+    String getResponse(int userId, String key);
+
+    /**
+     * Deletes keys older than the retention period.
+     *
+     * @param retentionHours how long to keep keys
+     * @return the number of keys deleted
+     */
+    int deleteOlderThan(int retentionHours);
+}
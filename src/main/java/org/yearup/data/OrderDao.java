@@ -1,12 +1,16 @@
 package org.yearup.data;
 
 import org.yearup.models.Order;
+import org.yearup.models.OrderCursor;
 import org.yearup.models.OrderLineItem;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Interface for managing orders and order line items in the database.
- * Implementations of this interface should provide logic for creating orders
- * and adding associated line items.
+ * Implementations of this interface should provide logic for creating orders,
+ * adding associated line items and reading them back.
  */
 public interface OrderDao { // create
 
@@ -15,8 +19,7 @@ public interface OrderDao { // create
      * The order object should contain user ID, shipping address,
      * order date, and shipping amount.
      *
-     * After insertion, the generated order ID should be set
-     * on the given Order object.
+     * The new order ID should be set on the given Order object.
      *
      * @param order the Order object to be created
      */
@@ -30,4 +33,42 @@ public interface OrderDao { // create
      * @param item the OrderLineItem to add
      */
     void addLineItem(OrderLineItem item);
-}
\ No newline at end of file
+
+    /**
+     * Writes several orders, each with its line items, in a single transaction,
+     * and deletes the ordering users' shopping_cart rows in the same transaction.
+     * Orders without an ID get one; IDs are set on the orders and their line items.
+     * If anything fails, none of the orders are written.
+     *
+     * @param orders the orders to create, with their line items
+     */
+    void createOrders(List<Order> orders);
+
+    /**
+     * Retrieves one page of a user's orders, newest first, each with its line items.
+     *
+     * @param userId the user whose orders to read
+     * @param after the last order of the previous page, or null for the first page
+     * @param limit the maximum number of orders to return
+     * @return the orders, ordered by date then order ID, descending
+     */
+    List<Order> getByUserId(int userId, OrderCursor after, int limit);
+
+    /**
+     * Retrieves an order with its line items.
+     *
+     * @param orderId the order ID
+     * @return the order, or null if it does not exist
+     */
+    Order getById(int orderId);
+
+    /**
+     * Retrieves the products in a run of orders, walking back from the newest,
+     * e.g. to rebuild statistics from history a chunk at a time.
+     *
+     * @param beforeOrderId only orders with a lower ID are returned; Integer.MAX_VALUE to start at the newest
+     * @param limit the maximum number of orders to return
+     * @return order ID to the product IDs on its line items, highest order ID first
+     */
+    Map<Integer, List<Integer>> getProductIdsByOrder(int beforeOrderId, int limit);
+}
@@ -1,16 +1,110 @@
 package org.yearup.data;
 
 import org.yearup.models.Product;
+import org.yearup.models.ProductChanges;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductDao
 {
     List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color);
     List<Product> listByCategoryId(int categoryId);
     Product getById(int productId);
+
+    /**
+     * Retrieves several products in one query.
+     *
+     * @param productIds the ids to look up
+     * @return the products that exist, in the order of productIds
+     */
+    List<Product> getByIds(List<Integer> productIds);
+
     Product create(Product product);
+
+    /**
+     * Writes a chunk of imported products in one transaction. Products without an id
+     * are inserted; products with one are inserted under that id or replace it.
+     *
+     * @param products the products to write
+     * @return how many of them were inserted; the rest updated existing products
+     */
+    int importBatch(List<Product> products);
+
     void update(int productId, Product product);
     void delete(int productId);
+    ProductChanges getChangesSince(long version, int limit);
+    long getLatestChangeVersion();
+
+    /**
+     * Deletes change feed entries older than the retention period. Callers whose
+     * version falls before the deleted entries are told to resync.
+     *
+     * @param retentionDays how long to keep entries
+     * @return the number of entries deleted
+     */
+    int pruneChanges(int retentionDays);
+
+    /**
+     * Takes stock for every product or for none of them.
+     *
+     * @param quantities product id to quantity wanted
+     * @return the ids of products without enough stock; empty if the stock was taken
+     */
+    List<Integer> reserveStock(Map<Integer, Integer> quantities);
+
+    /**
+     * Puts back stock taken by reserveStock, e.g. when the order could not be saved.
+     *
+     * @param quantities product id to quantity to return
+     */
+    void releaseStock(Map<Integer, Integer> quantities);
+
+    /**
+     * Takes up to max units of a product's stock in one go, for holding in memory, and
+     * records them in stock_leases against the node in the same transaction.
+     *
+     * @param nodeId the node taking the lease
+     * @param productId the product
+     * @param max the most units to take
+     * @return how many units were taken; 0 when the product is sold out
+     */
+    int leaseStock(String nodeId, int productId, int max);
+
+    /**
+     * Puts unsold leased units back into the products table and off the node's lease.
+     * Units a reclaim has already put back are skipped.
+     *
+     * @param nodeId the node holding the lease
+     * @param quantities product id to quantity to return
+     */
+    void returnLeasedStock(String nodeId, Map<Integer, Integer> quantities);
+
+    /**
+     * Puts back every unit leased to a node, for a node that is starting up and so
+     * holds nothing in memory.
+     *
+     * @param nodeId the node
+     * @return how many units were put back
+     */
+    int reclaimLeases(String nodeId);
+
+    /**
+     * Puts back the units of leases nobody has used for idleSeconds. A live node uses
+     * or returns its leases much sooner, so these belong to nodes that died.
+     *
+     * @param idleSeconds how long a lease must have gone untouched
+     * @return how many units were put back
+     */
+    int reclaimAbandonedLeases(int idleSeconds);
+
+    /**
+     * Publishes the stock changes made by the methods above since the last call as one
+     * catalog write: a change feed entry per product and an invalidation per category
+     * listing, so ETags and cached responses stop showing the old stock.
+     *
+     * @return how many products were published
+     */
+    int publishStockChanges();
 }
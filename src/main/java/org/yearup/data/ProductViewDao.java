@@ -0,0 +1,22 @@
+package org.yearup.data;
+
+import java.util.Map;
+
+/**
+ * Interface for the per-product view counters table.
+ */
+public interface ProductViewDao
+{
+    /**
+     * Adds to the stored view counts in one batch.
+     *
+     * @param views product id to the number of views to add
+     */
+    void addViews(Map<Integer, Long> views);
+
+    /**
+     * @param limit the maximum number of products to return
+     * @return product id to stored view count, most viewed first
+     */
+    Map<Integer, Long> getMostViewed(int limit);
+}
@@ -0,0 +1,53 @@
+package org.yearup.data;
+
+import org.yearup.models.CategorySales;
+import org.yearup.models.DailySales;
+import org.yearup.models.ProductSales;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Interface for reading the precomputed sales rollups.
+ * The rollups are added to as orders are written, so reports never have to
+ * aggregate orders and line items; rebuildDay recomputes one day from history.
+ * All date ranges are inclusive.
+ */
+public interface SalesReportDao
+{
+    /**
+     * @return one entry per day with sales in the range, oldest first
+     */
+    List<DailySales> getDaily(LocalDate from, LocalDate to);
+
+    /**
+     * @return sales per category over the range, highest revenue first
+     */
+    List<CategorySales> getByCategory(LocalDate from, LocalDate to);
+
+    /**
+     * @param limit the maximum number of products to return
+     * @return the best-selling products over the range, highest revenue first
+     */
+    List<ProductSales> getTopProducts(LocalDate from, LocalDate to, int limit);
+
+    /**
+     * @param categoryId the category the products were sold under
+     * @param limit the maximum number of products to return
+     * @return the category's best-selling products over the range, highest revenue first
+     */
+    List<ProductSales> getTopProducts(LocalDate from, LocalDate to, int categoryId, int limit);
+
+    /**
+     * Replaces one day's rollups with totals recomputed from orders and line items,
+     * in a single transaction.
+     *
+     * @param day the day to rebuild
+     */
+    void rebuildDay(LocalDate day);
+
+    /**
+     * @return the date of the oldest order, or null if there are none
+     */
+    LocalDate getFirstOrderDate();
+}
@@ -1,6 +1,10 @@
 package org.yearup.data;
 
 import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+import org.yearup.models.ShoppingCartDelta;
+
+import java.util.List;
 
 /**
  * Interface for handling shopping cart operations.
@@ -17,6 +21,16 @@ public interface ShoppingCartDao // change
      */
     ShoppingCart getByUserId(int userId);
 
+    /**
+     * Retrieves one line of the user's cart together with the cart's version and totals,
+     * without loading every product in the cart.
+     *
+     * @param userId the ID of the user
+     * @param productId the ID of the product
+     * @return the delta; its item is null if the product is not in the cart
+     */
+    ShoppingCartDelta getDelta(int userId, int productId);
+
     /**
      * Adds a product to the user's shopping cart.
      * If the product already exists, increment the quantity.
@@ -50,4 +64,41 @@ public interface ShoppingCartDao // change
      * @param quantity the new quantity to set
      */
     void updateQuantity(int userId, int productId, int quantity);
+
+    /**
+     * Sets the quantities of several products at once, all or nothing.
+     * Products not yet in the cart are added; a quantity of 0 removes the product.
+     *
+     * @param userId the ID of the user
+     * @param changes the products and the quantities they should end up with
+     */
+    void applyChanges(int userId, List<ShoppingCartChange> changes);
+
+    /**
+     * Deletes up to batchSize carts that have not been changed for retentionDays.
+     * Callers loop until fewer than batchSize carts come back, so each call stays short.
+     * The cutoff is taken from the same clock that stamps the carts, not the caller's.
+     *
+     * @param retentionDays carts last touched longer ago than this are deleted
+     * @param batchSize the most carts to delete in one call
+     * @return how many carts were deleted
+     */
+    int deleteAbandonedCarts(int retentionDays, int batchSize);
+
+    /**
+     * Called once an order for the user's cart has been committed. The order transaction
+     * has already deleted the user's shopping_cart rows; stores that keep carts elsewhere
+     * clear them here.
+     *
+     * @param userId the ID of the user
+     */
+    void afterCheckout(int userId);
+
+    /**
+     * Makes sure any buffered changes to the user's cart have reached the database.
+     * Called before checkout; implementations that write through can do nothing.
+     *
+     * @param userId the ID of the user
+     */
+    void flushPendingChanges(int userId);
 }
\ No newline at end of file
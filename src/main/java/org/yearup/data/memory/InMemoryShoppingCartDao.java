@@ -0,0 +1,671 @@
+package org.yearup.data.memory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+import org.yearup.models.ShoppingCartDelta;
+import org.yearup.models.ShoppingCartItem;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ShoppingCartDao that keeps every cart in memory instead of the shopping_cart table.
+ * Selected with cart.store=memory.
+ *
+ * Carts are spread over a fixed number of shards by user id, each with its own lock,
+ * so users never contend with each other. Every mutation is appended to a change log
+ * on local disk while the shard lock is held; the log records absolute quantities, so
+ * replaying a record twice is harmless. A periodic snapshot writes the full state and
+ * starts a new log. On startup the snapshot is loaded and the logs are replayed on top;
+ * a record cut short by a crash is truncated away before new records are appended.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class InMemoryShoppingCartDao implements ShoppingCartDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryShoppingCartDao.class);
+
+    private static final byte OP_SET = 1;
+    private static final byte OP_CLEAR = 2;
+    private static final int SNAPSHOT_MAGIC = 0x45534354; // "ESCT"
+    private static final int RECORD_SIZE = 13; // op, userId, productId, quantity
+
+    private final ProductDao productDao;
+    private final Shard[] shards;
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final Path rotatedLogPath;
+    private final boolean fsync;
+
+    // Cart versions are not logged. Each cart starts from the startup time in millis and
+    // goes up by one per change, so versions keep moving forward across restarts.
+    private final long startTime = System.currentTimeMillis();
+    private final long startVersion = startTime;
+
+    private final Object logLock = new Object();
+    private FileOutputStream logFile;
+    private DataOutputStream log;
+
+    public InMemoryShoppingCartDao(ProductDao productDao,
+                                   @Value("${cart.memory.shards:64}") int shardCount,
+                                   @Value("${cart.memory.directory:data/carts}") String directory,
+                                   @Value("${cart.memory.fsync:false}") boolean fsync)
+    {
+        this.productDao = productDao;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+        {
+            shards[i] = new Shard();
+        }
+
+        Path dir = Paths.get(directory);
+        this.snapshotPath = dir.resolve("carts.snapshot");
+        this.logPath = dir.resolve("carts.log");
+        this.rotatedLogPath = dir.resolve("carts.log.1");
+        this.fsync = fsync;
+    }
+
+    /**
+     * Rebuilds the carts from the last snapshot plus the change logs, then opens the log for appending.
+     */
+    @PostConstruct
+    public void recover() throws IOException
+    {
+        Files.createDirectories(logPath.getParent());
+
+        int carts = loadSnapshot();
+        // A rotated log only survives if we crashed between rotating and writing the snapshot
+        int records = replay(rotatedLogPath) + replay(logPath);
+
+        logger.info("Recovered {} cart(s) from snapshot and {} log record(s).", carts, records);
+
+        openLog();
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        snapshot();
+
+        synchronized (logLock)
+        {
+            closeLog();
+        }
+    }
+
+    /**
+     * Retrieves the shopping cart for a given user, loading product details through ProductDao.
+     *
+     * @param userId the ID of the user
+     * @return the user's ShoppingCart
+     */
+    @Override
+    public ShoppingCart getByUserId(int userId)
+    {
+        Map<Integer, Integer> quantities;
+        long version;
+
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try
+        {
+            Map<Integer, Integer> cart = shard.carts.get(userId);
+            quantities = cart == null ? Map.of() : new LinkedHashMap<>(cart);
+            version = shard.versions.getOrDefault(userId, startVersion);
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
+
+        ShoppingCart shoppingCart = new ShoppingCart();
+        shoppingCart.setVersion(version);
+        if (quantities.isEmpty())
+            return shoppingCart;
+
+        // One lookup for the whole cart; products deleted since they were added are left out
+        Map<Integer, Product> products = new HashMap<>();
+        productDao.getByIds(new ArrayList<>(quantities.keySet())).forEach(product -> products.put(product.getProductId(), product));
+
+        quantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+
+            if (product != null)
+            {
+                ShoppingCartItem item = new ShoppingCartItem();
+                item.setProduct(product);
+                item.setQuantity(quantity);
+                item.setDiscountPercent(BigDecimal.ZERO);
+                shoppingCart.add(item);
+            }
+        });
+
+        return shoppingCart;
+    }
+
+    /**
+     * Carts live in memory, so the delta is taken from the full cart.
+     *
+     * @param userId the ID of the user
+     * @param productId the ID of the product
+     * @return the delta for that product
+     */
+    @Override
+    public ShoppingCartDelta getDelta(int userId, int productId)
+    {
+        return ShoppingCartDelta.of(getByUserId(userId), productId);
+    }
+
+    /**
+     * Adds one of a product to the user's cart.
+     *
+     * @param userId the ID of the user
+     * @param productId the ID of the product to add
+     * @throws IllegalArgumentException if the product doesn't exist
+     */
+    @Override
+    public void addProductToCart(int userId, int productId)
+    {
+        // Nothing else would stop made-up ids from growing the map and the log
+        if (productDao.getById(productId) == null)
+            throw new IllegalArgumentException("Unknown product: " + productId);
+
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try
+        {
+            Map<Integer, Integer> cart = shard.carts.computeIfAbsent(userId, id -> new LinkedHashMap<>());
+            int quantity = cart.merge(productId, 1, Integer::sum);
+            append(OP_SET, userId, productId, quantity);
+            shard.touch(userId);
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every item from the user's cart.
+     *
+     * @param userId the ID of the user
+     */
+    @Override
+    public void clearCart(int userId)
+    {
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try
+        {
+            // Clearing a cart that doesn't exist changes nothing, so there is nothing to track
+            if (shard.carts.remove(userId) != null)
+            {
+                append(OP_CLEAR, userId, 0, 0);
+                shard.touch(userId);
+            }
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean existsInCart(int userId, int productId)
+    {
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try
+        {
+            Map<Integer, Integer> cart = shard.carts.get(userId);
+            return cart != null && cart.containsKey(productId);
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the quantity of a product already in the user's cart.
+     *
+     * @param userId the ID of the user
+     * @param productId the ID of the product to update
+     * @param quantity the new quantity
+     */
+    @Override
+    public void updateQuantity(int userId, int productId, int quantity)
+    {
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try
+        {
+            Map<Integer, Integer> cart = shard.carts.get(userId);
+            if (cart == null || !cart.containsKey(productId))
+                throw new RuntimeException("No cart item found to update");
+
+            cart.put(productId, quantity);
+            append(OP_SET, userId, productId, quantity);
+            shard.touch(userId);
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Applies several quantity changes under one shard lock, so readers see all of them or none.
+     *
+     * @param userId the ID of the user
+     * @param changes the products and the quantities they should end up with
+     * @throws IllegalArgumentException if a product given a quantity doesn't exist
+     */
+    @Override
+    public void applyChanges(int userId, List<ShoppingCartChange> changes)
+    {
+        // Only lines that add or keep a product need it to exist
+        List<Integer> requested = new ArrayList<>();
+        for (ShoppingCartChange change : changes)
+        {
+            if (change.getQuantity() > 0)
+                requested.add(change.getProductId());
+        }
+        if (!requested.isEmpty())
+        {
+            Set<Integer> found = new HashSet<>();
+            productDao.getByIds(requested).forEach(product -> found.add(product.getProductId()));
+            requested.removeIf(found::contains);
+            if (!requested.isEmpty())
+                throw new IllegalArgumentException("Unknown product(s): " + requested);
+        }
+
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try
+        {
+            Map<Integer, Integer> cart = shard.carts.computeIfAbsent(userId, id -> new LinkedHashMap<>());
+            for (ShoppingCartChange change : changes)
+            {
+                if (change.getQuantity() > 0)
+                    cart.put(change.getProductId(), change.getQuantity());
+                else
+                    cart.remove(change.getProductId());
+
+                append(OP_SET, userId, change.getProductId(), change.getQuantity());
+            }
+
+            if (cart.isEmpty())
+            {
+                shard.carts.remove(userId);
+            }
+            shard.touch(userId);
+        }
+        finally
+        {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops carts untouched since the cutoff, one shard lock at a time.
+     * Carts restored at startup count as touched at startup. The versions kept for
+     * carts emptied before the cutoff are dropped too, without counting toward the batch.
+     *
+     * @param retentionDays carts last touched longer ago than this are deleted
+     * @param batchSize the most carts to delete in one call
+     * @return how many carts were deleted
+     */
+    @Override
+    public int deleteAbandonedCarts(int retentionDays, int batchSize)
+    {
+        long cutoffMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        int deleted = 0;
+
+        for (Shard shard : shards)
+        {
+            if (deleted >= batchSize)
+                break;
+
+            shard.lock.lock();
+            try
+            {
+                for (Integer userId : new ArrayList<>(shard.carts.keySet()))
+                {
+                    if (deleted >= batchSize)
+                        break;
+
+                    if (shard.touched.getOrDefault(userId, startTime) < cutoffMillis)
+                    {
+                        shard.carts.remove(userId);
+                        shard.touched.remove(userId);
+                        shard.versions.remove(userId);
+                        append(OP_CLEAR, userId, 0, 0);
+                        deleted++;
+                    }
+                }
+
+                // Emptied carts leave their version behind; forget it once they are as old
+                shard.touched.entrySet().removeIf(entry -> {
+                    boolean expired = entry.getValue() < cutoffMillis && !shard.carts.containsKey(entry.getKey());
+                    if (expired)
+                        shard.versions.remove(entry.getKey());
+                    return expired;
+                });
+            }
+            finally
+            {
+                shard.lock.unlock();
+            }
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Carts are not in the database, so the order transaction couldn't clear this one.
+     *
+     * @param userId the ID of the user
+     */
+    @Override
+    public void afterCheckout(int userId)
+    {
+        clearCart(userId);
+    }
+
+    /**
+     * Every change is appended to the change log as it happens, so there is nothing to flush.
+     *
+     * @param userId the ID of the user
+     */
+    @Override
+    public void flushPendingChanges(int userId)
+    {
+    }
+
+    /**
+     * Writes a full snapshot and starts a fresh change log.
+     * Writers are paused only while the state is copied and the log is rotated.
+     */
+    @Scheduled(initialDelayString = "${cart.memory.snapshot-interval-ms:60000}",
+               fixedDelayString = "${cart.memory.snapshot-interval-ms:60000}")
+    public void snapshot()
+    {
+        Map<Integer, Map<Integer, Integer>> copy = new HashMap<>();
+
+        for (Shard shard : shards)
+        {
+            shard.lock.lock();
+        }
+        try
+        {
+            for (Shard shard : shards)
+            {
+                shard.carts.forEach((userId, cart) -> copy.put(userId, new LinkedHashMap<>(cart)));
+            }
+
+            synchronized (logLock)
+            {
+                closeLog();
+                try
+                {
+                    rotateLog();
+                }
+                finally
+                {
+                    // Writers must always find an open log, even if the rotation failed
+                    openLog();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Rotating the cart change log failed, skipping snapshot.", e);
+            return;
+        }
+        finally
+        {
+            for (int i = shards.length - 1; i >= 0; i--)
+            {
+                shards[i].lock.unlock();
+            }
+        }
+
+        try
+        {
+            writeSnapshot(copy);
+            Files.deleteIfExists(rotatedLogPath);
+        }
+        catch (IOException e)
+        {
+            // The rotated log is kept, so recovery still replays it on top of the old snapshot
+            logger.warn("Writing the cart snapshot failed.", e);
+        }
+    }
+
+    /**
+     * Moves the current log to the rotated log. If the rotated log is still there because
+     * the last snapshot failed, its records aren't in any snapshot yet, so the current log
+     * is appended to it rather than replacing it.
+     */
+    private void rotateLog() throws IOException
+    {
+        if (!Files.exists(rotatedLogPath))
+        {
+            Files.move(logPath, rotatedLogPath);
+            return;
+        }
+
+        long size = Files.size(rotatedLogPath);
+        try (OutputStream out = Files.newOutputStream(rotatedLogPath, StandardOpenOption.APPEND))
+        {
+            Files.copy(logPath, out);
+        }
+        catch (IOException e)
+        {
+            // Never leave a half-copied record in the middle of the rotated log
+            truncate(rotatedLogPath, size);
+            throw e;
+        }
+        Files.delete(logPath);
+    }
+
+    private Shard shardFor(int userId)
+    {
+        return shards[Math.floorMod(userId, shards.length)];
+    }
+
+    private void append(byte op, int userId, int productId, int quantity)
+    {
+        synchronized (logLock)
+        {
+            try
+            {
+                log.writeByte(op);
+                log.writeInt(userId);
+                log.writeInt(productId);
+                log.writeInt(quantity);
+                log.flush();
+
+                if (fsync)
+                {
+                    logFile.getFD().sync();
+                }
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException("Error writing the cart change log", e);
+            }
+        }
+    }
+
+    private void openLog() throws IOException
+    {
+        logFile = new FileOutputStream(logPath.toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile));
+    }
+
+    private void closeLog()
+    {
+        try
+        {
+            if (log != null)
+            {
+                log.close();
+            }
+        }
+        catch (IOException e)
+        {
+            logger.warn("Closing the cart change log failed.", e);
+        }
+    }
+
+    private void writeSnapshot(Map<Integer, Map<Integer, Integer>> carts) throws IOException
+    {
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+        {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(carts.size());
+
+            for (Map.Entry<Integer, Map<Integer, Integer>> cart : carts.entrySet())
+            {
+                out.writeInt(cart.getKey());
+                out.writeInt(cart.getValue().size());
+
+                for (Map.Entry<Integer, Integer> item : cart.getValue().entrySet())
+                {
+                    out.writeInt(item.getKey());
+                    out.writeInt(item.getValue());
+                }
+            }
+        }
+
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int loadSnapshot() throws IOException
+    {
+        if (!Files.exists(snapshotPath))
+            return 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath))))
+        {
+            if (in.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("Not a cart snapshot: " + snapshotPath);
+
+            int cartCount = in.readInt();
+            for (int i = 0; i < cartCount; i++)
+            {
+                int userId = in.readInt();
+                int itemCount = in.readInt();
+
+                Map<Integer, Integer> cart = new LinkedHashMap<>();
+                for (int j = 0; j < itemCount; j++)
+                {
+                    cart.put(in.readInt(), in.readInt());
+                }
+                shardFor(userId).carts.put(userId, cart);
+            }
+
+            return cartCount;
+        }
+    }
+
+    private int replay(Path path) throws IOException
+    {
+        if (!Files.exists(path))
+            return 0;
+
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+        {
+            while (true)
+            {
+                byte op;
+                int userId, productId, quantity;
+                try
+                {
+                    op = in.readByte();
+                    userId = in.readInt();
+                    productId = in.readInt();
+                    quantity = in.readInt();
+                }
+                catch (EOFException e)
+                {
+                    // End of log, or a record cut short by a crash
+                    break;
+                }
+
+                Map<Integer, Map<Integer, Integer>> carts = shardFor(userId).carts;
+                if (op == OP_CLEAR)
+                    carts.remove(userId);
+                else if (quantity > 0)
+                    carts.computeIfAbsent(userId, id -> new LinkedHashMap<>()).put(productId, quantity);
+                else if (carts.containsKey(userId))
+                    carts.get(userId).remove(productId); // a SET of 0 is a removal
+
+                records++;
+            }
+        }
+
+        // Cut off a record the crash left half-written, so new records line up after the last whole one
+        long valid = (long) records * RECORD_SIZE;
+        if (Files.size(path) > valid)
+        {
+            logger.warn("Dropping {} byte(s) of a partial record at the end of {}.", Files.size(path) - valid, path);
+            truncate(path, valid);
+        }
+
+        return records;
+    }
+
+    private static void truncate(Path path, long size) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE))
+        {
+            channel.truncate(size);
+        }
+    }
+
+    private class Shard
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Integer, Map<Integer, Integer>> carts = new HashMap<>();
+        private final Map<Integer, Long> versions = new HashMap<>();
+        private final Map<Integer, Long> touched = new HashMap<>();
+
+        private void touch(int userId)
+        {
+            versions.merge(userId, startVersion + 1, (current, one) -> current + 1);
+            touched.put(userId, System.currentTimeMillis());
+        }
+    }
+}
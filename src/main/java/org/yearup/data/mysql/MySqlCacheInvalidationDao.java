@@ -0,0 +1,93 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.CacheInvalidationDao;
+import org.yearup.models.CacheInvalidation;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component // Marks this class as a Spring-managed component for dependency injection
+public class MySqlCacheInvalidationDao extends MySqlDaoBase implements CacheInvalidationDao
+{
+    public MySqlCacheInvalidationDao(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    @Override
+    public List<CacheInvalidation> getSince(long version, int limit)
+    {
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        String sql = "SELECT invalidation_id, catalog_version, entity, entity_id, node_id FROM cache_invalidations " +
+                "WHERE catalog_version > ? " +
+                "ORDER BY catalog_version, invalidation_id " +
+                "LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setLong(1, version);
+            statement.setInt(2, limit);
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                invalidations.add(new CacheInvalidation(
+                        row.getLong("invalidation_id"),
+                        row.getLong("catalog_version"),
+                        row.getString("entity"),
+                        row.getInt("entity_id"),
+                        row.getString("node_id")));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading cache invalidations", e);
+        }
+
+        return invalidations;
+    }
+
+    @Override
+    public long getCatalogVersion()
+    {
+        String sql = "SELECT version FROM catalog_version WHERE id = 1";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            ResultSet row = statement.executeQuery();
+            return row.next() ? row.getLong("version") : 0;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading the catalog version", e);
+        }
+    }
+
+    /**
+     * Deletes invalidations older than the retention period.
+     *
+     * @param retentionMinutes how long to keep entries
+     * @return the number of entries deleted
+     */
+    @Override
+    public int deleteOlderThan(int retentionMinutes)
+    {
+        String sql = "DELETE FROM cache_invalidations WHERE created_at < NOW() - INTERVAL ? MINUTE";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, retentionMinutes);
+            return statement.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error pruning cache invalidations", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.yearup.data.mysql;
+
+import org.yearup.models.CacheInvalidation;
+import org.yearup.services.CatalogVersion;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Base class for the DAOs that write catalog data (products and categories).
+ * Every write takes a catalog version and records what it invalidates in the
+ * cache invalidation log on the same connection, so both commit or roll back
+ * with the change itself.
+ */
+public abstract class MySqlCatalogDaoBase extends MySqlDaoBase
+{
+    protected final CatalogVersion catalogVersion;
+
+    public MySqlCatalogDaoBase(DataSource dataSource, CatalogVersion catalogVersion)
+    {
+        super(dataSource);
+        this.catalogVersion = catalogVersion;
+    }
+
+    /**
+     * Takes the next count numbers of the shared catalog version on the caller's open
+     * transaction. The catalog_version row stays locked until the transaction ends,
+     * so catalog writes commit in version order and no reader ever sees a version
+     * whose predecessors are still uncommitted. Call it as the last step before
+     * recording the change, to keep the lock short.
+     *
+     * @param connection the connection of the surrounding write
+     * @param count how many numbers to take (one per change feed entry)
+     * @return the highest number taken, which is the catalog version once this write commits
+     */
+    protected long allocateVersions(Connection connection, int count) throws SQLException
+    {
+        PreparedStatement update = connection.prepareStatement(
+                "UPDATE catalog_version SET version = LAST_INSERT_ID(version + ?) WHERE id = 1");
+        update.setInt(1, count);
+        update.executeUpdate();
+
+        ResultSet row = connection.prepareStatement("SELECT LAST_INSERT_ID()").executeQuery();
+        row.next();
+        return row.getLong(1);
+    }
+
+    /**
+     * Appends a cache invalidation entry on the caller's open transaction.
+     *
+     * @param connection the connection of the surrounding write
+     * @param version the catalog version taken by the write
+     * @param entity what to evict (see CacheInvalidation)
+     * @param entityId the id of the category whose entries are evicted
+     * @return the entry, to apply locally once the write commits
+     */
+    protected CacheInvalidation recordInvalidation(Connection connection, long version, String entity, int entityId) throws SQLException
+    {
+        String sql = "INSERT INTO cache_invalidations (catalog_version, entity, entity_id, node_id) VALUES (?, ?, ?, ?)";
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setLong(1, version);
+        statement.setString(2, entity);
+        statement.setInt(3, entityId);
+        statement.setString(4, catalogVersion.getNodeId());
+        statement.executeUpdate();
+
+        return new CacheInvalidation(0, version, entity, entityId, catalogVersion.getNodeId());
+    }
+}
@@ -2,7 +2,9 @@ package org.yearup.data.mysql;
 
 import org.springframework.stereotype.Component;
 import org.yearup.data.CategoryDao;
+import org.yearup.models.CacheInvalidation;
 import org.yearup.models.Category;
+import org.yearup.services.CatalogVersion;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -13,12 +15,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Component // Marks this class as a Spring-managed component (bean) for dependency injection
-public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
+public class MySqlCategoryDao extends MySqlCatalogDaoBase implements CategoryDao
 {
     // Constructor calls parent class with the provided DataSource
-    public MySqlCategoryDao(DataSource dataSource)
+    public MySqlCategoryDao(DataSource dataSource, CatalogVersion catalogVersion)
     {
-        super(dataSource);
+        super(dataSource, catalogVersion);
     }
 
     /**
@@ -73,6 +75,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
 
     /**
      * Inserts a new category into the database.
+     * The insert and its cache invalidation are committed together.
      *
      * @param category the category to insert
      * @return the inserted category with its new ID
@@ -80,8 +83,13 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
     @Override
     public Category create(Category category) {
         String sql = "INSERT INTO categories(name, description) VALUES (?, ?)";
+        int categoryId = 0;
+        long version = 0;
+        List<CacheInvalidation> invalidations = List.of();
 
         try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+
             PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
             statement.setString(1, category.getName());
             statement.setString(2, category.getDescription());
@@ -92,19 +100,27 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
                 ResultSet generatedKeys = statement.getGeneratedKeys();
 
                 if (generatedKeys.next()) {
-                    int categoryId = generatedKeys.getInt(1);
-                    return getById(categoryId);
+                    categoryId = generatedKeys.getInt(1);
+                    version = allocateVersions(connection, 1);
+                    invalidations = List.of(recordInvalidation(connection, version, CacheInvalidation.CATEGORY, categoryId));
                 }
             }
+
+            connection.commit();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
 
-        return null;
+        if (categoryId == 0)
+            return null;
+
+        catalogVersion.advanceTo(version, invalidations);
+        return getById(categoryId);
     }
 
     /**
      * Updates an existing category's name and description.
+     * The update and its cache invalidation are committed together.
      *
      * @param categoryId ID of the category to update
      * @param category the updated category data
@@ -114,12 +130,23 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
         String sql = "UPDATE categories SET name = ?, description = ? WHERE category_id = ?";
 
         try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+
             PreparedStatement statement = connection.prepareStatement(sql);
             statement.setString(1, category.getName());
             statement.setString(2, category.getDescription());
             statement.setInt(3, categoryId);
 
-            statement.executeUpdate();
+            long version = 0;
+            List<CacheInvalidation> invalidations = List.of();
+            if (statement.executeUpdate() > 0) {
+                version = allocateVersions(connection, 1);
+                invalidations = List.of(recordInvalidation(connection, version, CacheInvalidation.CATEGORY, categoryId));
+            }
+
+            connection.commit();
+            if (version > 0)
+                catalogVersion.advanceTo(version, invalidations);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -127,6 +154,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
 
     /**
      * Deletes a category by its ID.
+     * The delete and its cache invalidation are committed together.
      *
      * @param categoryId the ID of the category to delete
      */
@@ -135,9 +163,21 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
         String sql = "DELETE FROM categories WHERE category_id = ?";
 
         try (Connection connection = getConnection()) {
+            connection.setAutoCommit(false);
+
             PreparedStatement statement = connection.prepareStatement(sql);
             statement.setInt(1, categoryId);
-            statement.executeUpdate();
+
+            long version = 0;
+            List<CacheInvalidation> invalidations = List.of();
+            if (statement.executeUpdate() > 0) {
+                version = allocateVersions(connection, 1);
+                invalidations = List.of(recordInvalidation(connection, version, CacheInvalidation.CATEGORY, categoryId));
+            }
+
+            connection.commit();
+            if (version > 0)
+                catalogVersion.advanceTo(version, invalidations);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
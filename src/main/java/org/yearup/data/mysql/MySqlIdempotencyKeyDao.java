@@ -0,0 +1,153 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.IdempotencyKeyDao;
+
+import javax.sql.DataSource;
+import java.sql.*;
+
+@Component // Marks this class as a Spring-managed component for dependency injection
+public class MySqlIdempotencyKeyDao extends MySqlDaoBase implements IdempotencyKeyDao
+{
+    private static final String PENDING = "PENDING";
+    private static final String DONE = "DONE";
+
+    public MySqlIdempotencyKeyDao(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    /**
+     * Claims a key with an insert, relying on the primary key so only one node can
+     * win; a pending row older than staleSeconds is taken over instead.
+     */
+    @Override
+    public boolean claim(int userId, String key, int staleSeconds)
+    {
+        String insertSql = "INSERT IGNORE INTO idempotency_keys (user_id, idempotency_key, status, created_at) " +
+                "VALUES (?, ?, ?, NOW())";
+        String takeOverSql = "UPDATE idempotency_keys SET created_at = NOW() " +
+                "WHERE user_id = ? AND idempotency_key = ? AND status = ? " +
+                "AND created_at < NOW() - INTERVAL ? SECOND";
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement insert = connection.prepareStatement(insertSql);
+            insert.setInt(1, userId);
+            insert.setString(2, key);
+            insert.setString(3, PENDING);
+            if (insert.executeUpdate() == 1)
+                return true;
+
+            PreparedStatement takeOver = connection.prepareStatement(takeOverSql);
+            takeOver.setInt(1, userId);
+            takeOver.setString(2, key);
+            takeOver.setString(3, PENDING);
+            takeOver.setInt(4, staleSeconds);
+            return takeOver.executeUpdate() == 1;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error claiming idempotency key", e);
+        }
+    }
+
+    @Override
+    public void refresh(int userId, String key)
+    {
+        String sql = "UPDATE idempotency_keys SET created_at = NOW() " +
+                "WHERE user_id = ? AND idempotency_key = ? AND status = ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, userId);
+            statement.setString(2, key);
+            statement.setString(3, PENDING);
+            statement.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error refreshing idempotency key", e);
+        }
+    }
+
+    @Override
+    public void complete(int userId, String key, String response)
+    {
+        String sql = "UPDATE idempotency_keys SET status = ?, response = ? " +
+                "WHERE user_id = ? AND idempotency_key = ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setString(1, DONE);
+            statement.setString(2, response);
+            statement.setInt(3, userId);
+            statement.setString(4, key);
+            statement.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error completing idempotency key", e);
+        }
+    }
+
+    @Override
+    public void release(int userId, String key)
+    {
+        // Only a pending claim is dropped; a recorded response is never thrown away
+        String sql = "DELETE FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ? AND status = ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, userId);
+            statement.setString(2, key);
+            statement.setString(3, PENDING);
+            statement.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error releasing idempotency key", e);
+        }
+    }
+
+    @Override
+    public String getResponse(int userId, String key)
+    {
+        String sql = "SELECT response FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ? AND status = ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, userId);
+            statement.setString(2, key);
+            statement.setString(3, DONE);
+
+            ResultSet row = statement.executeQuery();
+            return row.next() ? row.getString("response") : null;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading idempotency key", e);
+        }
+    }
+
+    @Override
+    public int deleteOlderThan(int retentionHours)
+    {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < NOW() - INTERVAL ? HOUR";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, retentionHours);
+            return statement.executeUpdate();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error pruning idempotency keys", e);
+        }
+    }
+}
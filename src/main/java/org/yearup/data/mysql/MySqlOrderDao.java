@@ -3,53 +3,69 @@ package org.yearup.data.mysql;
 import org.springframework.stereotype.Component;
 import org.yearup.data.OrderDao;
 import org.yearup.models.Order;
+import org.yearup.models.OrderCursor;
 import org.yearup.models.OrderLineItem;
+import org.yearup.services.CatalogVersion;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Component // Registers this class as a Spring component for dependency injection
 public class MySqlOrderDao extends MySqlDaoBase implements OrderDao
 {
+    // Order headers joined to their line items; an order without items still returns one row
+    private static final String ORDER_COLUMNS = "o.order_id, o.user_id, o.date, o.address, o.city, o.state, o.zip, " +
+            "o.shipping_amount, o.total_amount, " +
+            "li.order_line_item_id, li.product_id, li.sales_price, li.quantity, li.discount";
+
+    private final MySqlOrderIdAllocator orderIdAllocator;
+    private final CatalogVersion catalogVersion;
+
     // Constructor that passes the DataSource to the base DAO class
-    public MySqlOrderDao(DataSource dataSource) {
+    public MySqlOrderDao(DataSource dataSource, MySqlOrderIdAllocator orderIdAllocator, CatalogVersion catalogVersion) {
         super(dataSource);
+        this.orderIdAllocator = orderIdAllocator;
+        this.catalogVersion = catalogVersion;
     }
 
     /**
      * Inserts a new order into the 'orders' table.
-     * Populates the generated order ID back into the given Order object.
+     * The order ID comes from the block allocator and is set on the given Order object.
      *
      * @param order the order to be created
      */
     @Override
     public void createOrder(Order order) {
-        String sql = "INSERT INTO orders (user_id, date, address, city, state, zip, shipping_amount) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String sql = "INSERT INTO orders (order_id, user_id, date, address, city, state, zip, shipping_amount, total_amount) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        order.setId(orderIdAllocator.nextId());
 
         // Try-with-resources ensures connections and statements are closed properly
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             // Set the parameter values
-            stmt.setInt(1, order.getUserId());
-            stmt.setTimestamp(2, Timestamp.valueOf(order.getOrderDate()));
-            stmt.setString(3, order.getAddress());
-            stmt.setString(4, order.getCity());
-            stmt.setString(5, order.getState());
-            stmt.setString(6, order.getZip());
-            stmt.setBigDecimal(7, order.getShippingAmount());
+            stmt.setInt(1, order.getId());
+            stmt.setInt(2, order.getUserId());
+            stmt.setTimestamp(3, Timestamp.valueOf(order.getOrderDate()));
+            stmt.setString(4, order.getAddress());
+            stmt.setString(5, order.getCity());
+            stmt.setString(6, order.getState());
+            stmt.setString(7, order.getZip());
+            stmt.setBigDecimal(8, order.getShippingAmount());
+            stmt.setBigDecimal(9, order.getTotalAmount());
 
             // Execute the insert command
             stmt.executeUpdate();
 
-            // Retrieve and set the generated order ID
-            try (ResultSet keys = stmt.getGeneratedKeys()) {
-                if (keys.next()) {
-                    order.setId(keys.getInt(1));
-                }
-            }
-
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create order", e);
         }
@@ -82,4 +98,263 @@ public class MySqlOrderDao extends MySqlDaoBase implements OrderDao
             throw new RuntimeException("Failed to add order line item", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes a batch of orders in one transaction: one multi-row insert for the order
+     * headers, one for all their line items, one delete for the users' carts, the
+     * sales rollup upserts, and this node's hot stock leases shrunk by the units sold.
+     * Order IDs are assigned up front by the block allocator, so the line items don't
+     * wait on generated keys. The whole batch pays a single commit.
+     *
+     * @param orders the orders to create, with their line items
+     */
+    @Override
+    public void createOrders(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        String orderSql = "INSERT INTO orders (order_id, user_id, date, address, city, state, zip, shipping_amount, total_amount) VALUES " +
+                String.join(", ", Collections.nCopies(orders.size(), "(?, ?, ?, ?, ?, ?, ?, ?, ?)"));
+
+        List<OrderLineItem> lineItems = new ArrayList<>();
+        Set<Integer> userIds = new LinkedHashSet<>();
+
+        for (Order order : orders) {
+            // A retried order keeps the id it was given the first time
+            if (order.getId() == 0) {
+                order.setId(orderIdAllocator.nextId());
+            }
+
+            for (OrderLineItem item : order.getLineItems()) {
+                item.setOrderId(order.getId());
+                lineItems.add(item);
+            }
+            userIds.add(order.getUserId());
+        }
+
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement stmt = conn.prepareStatement(orderSql)) {
+                int index = 1;
+                for (Order order : orders) {
+                    stmt.setInt(index++, order.getId());
+                    stmt.setInt(index++, order.getUserId());
+                    stmt.setTimestamp(index++, Timestamp.valueOf(order.getOrderDate()));
+                    stmt.setString(index++, order.getAddress());
+                    stmt.setString(index++, order.getCity());
+                    stmt.setString(index++, order.getState());
+                    stmt.setString(index++, order.getZip());
+                    stmt.setBigDecimal(index++, order.getShippingAmount());
+                    stmt.setBigDecimal(index++, order.getTotalAmount());
+                }
+                stmt.executeUpdate();
+            }
+
+            if (!lineItems.isEmpty()) {
+                String lineSql = "INSERT INTO order_line_items (order_id, product_id, sales_price, quantity, discount) VALUES " +
+                        String.join(", ", Collections.nCopies(lineItems.size(), "(?, ?, ?, ?, ?)"));
+
+                try (PreparedStatement stmt = conn.prepareStatement(lineSql)) {
+                    int index = 1;
+                    for (OrderLineItem item : lineItems) {
+                        stmt.setInt(index++, item.getOrderId());
+                        stmt.setInt(index++, item.getProductId());
+                        stmt.setBigDecimal(index++, item.getPrice());
+                        stmt.setInt(index++, item.getQuantity());
+                        stmt.setBigDecimal(index++, item.getDiscount());
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+
+            String cartSql = "DELETE FROM shopping_cart WHERE user_id IN (" +
+                    String.join(", ", Collections.nCopies(userIds.size(), "?")) + ")";
+
+            try (PreparedStatement stmt = conn.prepareStatement(cartSql)) {
+                int index = 1;
+                for (int userId : userIds) {
+                    stmt.setInt(index++, userId);
+                }
+                stmt.executeUpdate();
+            }
+
+            for (int userId : userIds) {
+                MySqlShoppingCartDao.bumpVersion(conn, userId, 1);
+            }
+
+            // Reporting rollups move with the orders, so reports never aggregate line items
+            MySqlSalesReportDao.addOrders(conn, orders);
+
+            // Units sold from a lease are no longer the node's to give back after a crash.
+            // One statement for the batch; products without a lease match no row.
+            if (!lineItems.isEmpty()) {
+                String leaseSql = "UPDATE stock_leases l JOIN (" +
+                        "SELECT product_id, SUM(quantity) AS sold FROM order_line_items WHERE order_id IN (" +
+                        String.join(", ", Collections.nCopies(orders.size(), "?")) + ") GROUP BY product_id" +
+                        ") s ON s.product_id = l.product_id " +
+                        "SET l.units = GREATEST(l.units - s.sold, 0), l.updated_at = NOW() WHERE l.node_id = ?";
+
+                try (PreparedStatement stmt = conn.prepareStatement(leaseSql)) {
+                    int index = 1;
+                    for (Order order : orders) {
+                        stmt.setInt(index++, order.getId());
+                    }
+                    stmt.setString(index, catalogVersion.getNodeId());
+                    stmt.executeUpdate();
+                }
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to create orders", e);
+        }
+    }
+
+    /**
+     * Reads one page of a user's orders with a single query. The page of headers is
+     * picked in a derived table by seeking past the cursor on (date, order_id), which the
+     * idx_orders_user_date index serves directly, so deep pages cost the same as the
+     * first; the line items are joined on afterwards.
+     *
+     * @param userId the user whose orders to read
+     * @param after the last order of the previous page, or null for the first page
+     * @param limit the maximum number of orders to return
+     * @return the orders, newest first, with their line items
+     */
+    @Override
+    public List<Order> getByUserId(int userId, OrderCursor after, int limit) {
+        String seek = after == null ? "" : "AND (date < ? OR (date = ? AND order_id < ?)) ";
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM (" +
+                "    SELECT * FROM orders WHERE user_id = ? " + seek +
+                "    ORDER BY date DESC, order_id DESC LIMIT ?" +
+                ") o LEFT JOIN order_line_items li ON li.order_id = o.order_id " +
+                "ORDER BY o.date DESC, o.order_id DESC, li.order_line_item_id";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            stmt.setInt(index++, userId);
+            if (after != null) {
+                Timestamp date = Timestamp.valueOf(after.getDate());
+                stmt.setTimestamp(index++, date);
+                stmt.setTimestamp(index++, date);
+                stmt.setInt(index++, after.getOrderId());
+            }
+            stmt.setInt(index, limit);
+
+            return mapOrders(stmt.executeQuery());
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read orders", e);
+        }
+    }
+
+    /**
+     * Reads an order and its line items with a single joined query.
+     *
+     * @param orderId the order ID
+     * @return the order, or null if it does not exist
+     */
+    @Override
+    public Order getById(int orderId) {
+        String sql = "SELECT " + ORDER_COLUMNS + " FROM orders o " +
+                "LEFT JOIN order_line_items li ON li.order_id = o.order_id " +
+                "WHERE o.order_id = ? " +
+                "ORDER BY li.order_line_item_id";
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, orderId);
+
+            List<Order> orders = mapOrders(stmt.executeQuery());
+            return orders.isEmpty() ? null : orders.get(0);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read order", e);
+        }
+    }
+
+    /**
+     * Reads the product IDs of the next run of orders below beforeOrderId, newest first,
+     * with one query: the run of order IDs is picked from the primary key and its line
+     * items joined on.
+     *
+     * @param beforeOrderId only orders with a lower ID are returned
+     * @param limit the maximum number of orders to return
+     * @return order ID to product IDs, highest order ID first
+     */
+    @Override
+    public Map<Integer, List<Integer>> getProductIdsByOrder(int beforeOrderId, int limit) {
+        String sql = "SELECT o.order_id, li.product_id FROM (" +
+                "    SELECT order_id FROM orders WHERE order_id < ? ORDER BY order_id DESC LIMIT ?" +
+                ") o LEFT JOIN order_line_items li ON li.order_id = o.order_id " +
+                "ORDER BY o.order_id DESC";
+
+        Map<Integer, List<Integer>> orders = new LinkedHashMap<>();
+
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, beforeOrderId);
+            stmt.setInt(2, limit);
+
+            ResultSet row = stmt.executeQuery();
+            while (row.next()) {
+                List<Integer> productIds = orders.computeIfAbsent(row.getInt("order_id"), id -> new ArrayList<>());
+
+                int productId = row.getInt("product_id");
+                if (!row.wasNull()) {
+                    productIds.add(productId);
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read order products", e);
+        }
+
+        return orders;
+    }
+
+    /**
+     * Folds joined rows back into orders; rows for one order are adjacent.
+     */
+    private static List<Order> mapOrders(ResultSet row) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        Order current = null;
+
+        while (row.next()) {
+            int orderId = row.getInt("order_id");
+
+            if (current == null || current.getId() != orderId) {
+                current = new Order();
+                current.setId(orderId);
+                current.setUserId(row.getInt("user_id"));
+                current.setOrderDate(row.getTimestamp("date").toLocalDateTime());
+                current.setAddress(row.getString("address"));
+                current.setCity(row.getString("city"));
+                current.setState(row.getString("state"));
+                current.setZip(row.getString("zip"));
+                current.setShippingAmount(row.getBigDecimal("shipping_amount"));
+                current.setTotalAmount(row.getBigDecimal("total_amount"));
+                orders.add(current);
+            }
+
+            int lineItemId = row.getInt("order_line_item_id");
+            if (!row.wasNull()) {
+                current.getLineItems().add(new OrderLineItem(
+                        lineItemId,
+                        orderId,
+                        row.getInt("product_id"),
+                        row.getInt("quantity"),
+                        row.getBigDecimal("sales_price"),
+                        row.getBigDecimal("discount")));
+            }
+        }
+
+        return orders;
+    }
+}
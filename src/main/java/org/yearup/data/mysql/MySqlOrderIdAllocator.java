@@ -0,0 +1,94 @@
+package org.yearup.data.mysql;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out order ids from blocks reserved in the order_id_sequence table (HiLo).
+ *
+ * One UPDATE reserves order.id-block-size ids for this node; after that ids come
+ * from an in-memory counter with no database round trip, so an order's id is known
+ * before anything is written and the order and its line items can go in together.
+ * Ids are unique across nodes but not gap-free: the unused part of a block is lost
+ * on restart.
+ */
+@Component
+public class MySqlOrderIdAllocator extends MySqlDaoBase
+{
+    private static final String SEQUENCE = "orders";
+
+    private final int blockSize;
+
+    // Current block is [next, end); both only move forward
+    private final AtomicLong next = new AtomicLong();
+    private volatile long end = 0;
+
+    public MySqlOrderIdAllocator(DataSource dataSource,
+                                 @Value("${order.id-block-size:100}") int blockSize)
+    {
+        super(dataSource);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return an order id no other caller, on any node, will get
+     */
+    public int nextId()
+    {
+        while (true)
+        {
+            long limit = end;
+            long id = next.getAndIncrement();
+            if (id < limit)
+                return Math.toIntExact(id);
+
+            synchronized (this)
+            {
+                // Another thread may have refilled while we waited
+                if (next.get() < end)
+                    continue;
+
+                long start = reserveBlock();
+                next.set(start);
+                end = start + blockSize;
+            }
+        }
+    }
+
+    private long reserveBlock()
+    {
+        // LAST_INSERT_ID(expr) makes the new value readable on this connection without a second lock
+        String updateSql = "UPDATE order_id_sequence SET next_value = LAST_INSERT_ID(next_value + ?) WHERE name = ?";
+        String seedSql = "INSERT IGNORE INTO order_id_sequence (name, next_value) " +
+                "SELECT ?, COALESCE(MAX(order_id), 0) + 1 FROM orders";
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement update = connection.prepareStatement(updateSql);
+            update.setInt(1, blockSize);
+            update.setString(2, SEQUENCE);
+
+            if (update.executeUpdate() == 0)
+            {
+                // First use against a database created before the sequence table was seeded
+                PreparedStatement seed = connection.prepareStatement(seedSql);
+                seed.setString(1, SEQUENCE);
+                seed.executeUpdate();
+
+                update.executeUpdate();
+            }
+
+            ResultSet row = connection.createStatement().executeQuery("SELECT LAST_INSERT_ID()");
+            row.next();
+            return row.getLong(1) - blockSize;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Failed to reserve a block of order ids", e);
+        }
+    }
+}
@@ -2,21 +2,36 @@ package org.yearup.data.mysql;
 
 import org.springframework.stereotype.Component;
 import org.yearup.data.ProductDao;
+import org.yearup.models.CacheInvalidation;
 import org.yearup.models.Product;
+import org.yearup.models.ProductChanges;
+import org.yearup.services.CatalogVersion;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component // Marks this class as a Spring-managed component for dependency injection
-public class MySqlProductDao extends MySqlDaoBase implements ProductDao
+public class MySqlProductDao extends MySqlCatalogDaoBase implements ProductDao
 {
+    // Products whose stock changed since publishStockChanges last ran
+    private final Set<Integer> stockChanged = ConcurrentHashMap.newKeySet();
+
     // Constructor to inject the DataSource and pass it to the base class
-    public MySqlProductDao(DataSource dataSource)
+    public MySqlProductDao(DataSource dataSource, CatalogVersion catalogVersion)
     {
-        super(dataSource);
+        super(dataSource, catalogVersion);
     }
 
     /**
@@ -135,8 +150,56 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         return null;
     }
 
+    /**
+     * Retrieves several products with a single IN query, e.g. to fill a product rail.
+     *
+     * @param productIds the ids to look up
+     * @return the products that exist, in the order of productIds
+     */
+    @Override
+    public List<Product> getByIds(List<Integer> productIds)
+    {
+        if (productIds.isEmpty())
+            return new ArrayList<>();
+
+        String sql = "SELECT * FROM products WHERE product_id IN (" +
+                String.join(", ", Collections.nCopies(productIds.size(), "?")) + ")";
+        Map<Integer, Product> found = new HashMap<>();
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            int index = 1;
+            for (int productId : productIds)
+            {
+                statement.setInt(index++, productId);
+            }
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                Product product = mapRow(row);
+                found.put(product.getProductId(), product);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        List<Product> products = new ArrayList<>(found.size());
+        for (int productId : productIds)
+        {
+            Product product = found.get(productId);
+            if (product != null)
+                products.add(product);
+        }
+        return products;
+    }
+
     /**
      * Inserts a new product into the database.
+     * The insert, its change feed entry and its cache invalidation are committed together.
      *
      * @param product the product to insert
      * @return the inserted product with generated ID, or null if insert failed
@@ -147,8 +210,14 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         String sql = "INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
 
+        int productId = 0;
+        long version = 0;
+        List<CacheInvalidation> invalidations = List.of();
+
         try (Connection connection = getConnection())
         {
+            connection.setAutoCommit(false);
+
             PreparedStatement statement = connection.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS);
             statement.setString(1, product.getName());
             statement.setBigDecimal(2, product.getPrice());
@@ -164,21 +233,151 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
             if (rowsAffected > 0) {
                 ResultSet generatedKeys = statement.getGeneratedKeys();
                 if (generatedKeys.next()) {
-                    int productId = generatedKeys.getInt(1);
-                    return getById(productId); // Fetch full product info
+                    productId = generatedKeys.getInt(1);
+                    version = allocateVersions(connection, 1);
+                    recordChange(connection, version, productId, false);
+                    invalidations = recordListingInvalidations(connection, version, List.of(product.getCategoryId()));
                 }
             }
+
+            connection.commit();
         }
         catch (SQLException e)
         {
             throw new RuntimeException(e);
         }
 
-        return null;
+        if (productId == 0)
+            return null;
+
+        catalogVersion.advanceTo(version, invalidations);
+        return getById(productId); // Fetch full product info
+    }
+
+    /**
+     * Writes the chunk as two JDBC batches, one upsert for products that carry an id
+     * and one plain insert for those that don't, followed by a batch of change feed
+     * entries, all in one transaction. Existing ids are locked first so the
+     * inserted/updated split is exact, and in id order like reserveStock.
+     * Cache invalidations are recorded per category listing touched, not per product.
+     *
+     * @param products the products to write
+     * @return how many of them were inserted
+     */
+    @Override
+    public int importBatch(List<Product> products)
+    {
+        String upsertSql = "INSERT INTO products(product_id, name, price, category_id, description, color, image_url, stock, featured) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE name = VALUES(name), price = VALUES(price), category_id = VALUES(category_id), " +
+                "description = VALUES(description), color = VALUES(color), image_url = VALUES(image_url), " +
+                "stock = VALUES(stock), featured = VALUES(featured)";
+        String insertSql = "INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        if (products.isEmpty())
+            return 0;
+
+        List<Product> withId = new ArrayList<>();
+        List<Product> withoutId = new ArrayList<>();
+        for (Product product : products)
+        {
+            (product.getProductId() > 0 ? withId : withoutId).add(product);
+        }
+        withId.sort((a, b) -> Integer.compare(a.getProductId(), b.getProductId()));
+
+        List<Integer> changedIds = new ArrayList<>(products.size());
+        int inserted = 0;
+        long version;
+        List<CacheInvalidation> invalidations;
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                Set<Integer> categoryIds = new HashSet<>();
+                for (Product product : products)
+                {
+                    categoryIds.add(product.getCategoryId());
+                }
+
+                if (!withId.isEmpty())
+                {
+                    // Products moved out of a category invalidate its listing too
+                    Map<Integer, Integer> existingCategories = lockExisting(connection, withId);
+                    categoryIds.addAll(existingCategories.values());
+                    Set<Integer> existing = new HashSet<>(existingCategories.keySet());
+
+                    PreparedStatement statement = connection.prepareStatement(upsertSql);
+                    for (Product product : withId)
+                    {
+                        statement.setInt(1, product.getProductId());
+                        setImportColumns(statement, 2, product);
+                        statement.addBatch();
+
+                        // A repeated id in the same chunk updates the row its first occurrence inserted
+                        if (existing.add(product.getProductId()))
+                            inserted++;
+                        changedIds.add(product.getProductId());
+                    }
+                    statement.executeBatch();
+                }
+
+                if (!withoutId.isEmpty())
+                {
+                    PreparedStatement statement = connection.prepareStatement(insertSql, PreparedStatement.RETURN_GENERATED_KEYS);
+                    for (Product product : withoutId)
+                    {
+                        setImportColumns(statement, 1, product);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    ResultSet generatedKeys = statement.getGeneratedKeys();
+                    while (generatedKeys.next())
+                    {
+                        changedIds.add(generatedKeys.getInt(1));
+                    }
+                    inserted += withoutId.size();
+                }
+
+                // One change version per product; the last one is the catalog version after this chunk
+                version = allocateVersions(connection, changedIds.size());
+                long changeVersion = version - changedIds.size();
+
+                PreparedStatement changes = connection.prepareStatement("INSERT INTO product_changes (change_version, product_id, deleted) VALUES (?, ?, false)");
+                for (int productId : changedIds)
+                {
+                    changes.setLong(1, ++changeVersion);
+                    changes.setInt(2, productId);
+                    changes.addBatch();
+                }
+                changes.executeBatch();
+
+                invalidations = recordListingInvalidations(connection, version, categoryIds);
+
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error importing products", e);
+        }
+
+        catalogVersion.advanceTo(version, invalidations);
+        return inserted;
     }
 
     /**
      * Updates an existing product by ID.
+     * The update, its change feed entry and its cache invalidation are committed together.
      *
      * @param productId the product ID to update
      * @param product updated product data
@@ -193,6 +392,8 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 
         try (Connection connection = getConnection())
         {
+            connection.setAutoCommit(false);
+
             PreparedStatement statement = connection.prepareStatement(sql);
             statement.setString(1, product.getName());
             statement.setBigDecimal(2, product.getPrice());
@@ -204,7 +405,21 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
             statement.setBoolean(8, product.isFeatured());
             statement.setInt(9, productId);
 
-            statement.executeUpdate();
+            // The listing the product leaves is invalidated as well as the one it joins
+            Integer previousCategoryId = lockCategoryOf(connection, productId);
+
+            long version = 0;
+            List<CacheInvalidation> invalidations = List.of();
+            if (statement.executeUpdate() > 0)
+            {
+                version = allocateVersions(connection, 1);
+                recordChange(connection, version, productId, false);
+                invalidations = recordListingInvalidations(connection, version, List.of(previousCategoryId, product.getCategoryId()));
+            }
+
+            connection.commit();
+            if (version > 0)
+                catalogVersion.advanceTo(version, invalidations);
         }
         catch (SQLException e)
         {
@@ -214,6 +429,7 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 
     /**
      * Deletes a product by its ID.
+     * The delete, its change feed entry and its cache invalidation are committed together.
      *
      * @param productId the ID of the product to delete
      */
@@ -224,9 +440,311 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
 
         try (Connection connection = getConnection())
         {
+            connection.setAutoCommit(false);
+
             PreparedStatement statement = connection.prepareStatement(sql);
             statement.setInt(1, productId);
-            statement.executeUpdate();
+
+            Integer categoryId = lockCategoryOf(connection, productId);
+
+            long version = 0;
+            List<CacheInvalidation> invalidations = List.of();
+            if (statement.executeUpdate() > 0)
+            {
+                version = allocateVersions(connection, 1);
+                recordChange(connection, version, productId, true);
+                invalidations = recordListingInvalidations(connection, version, List.of(categoryId));
+            }
+
+            connection.commit();
+            if (version > 0)
+                catalogVersion.advanceTo(version, invalidations);
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the products changed or deleted after the given change version.
+     * Each product appears once, at its latest change, so the cost follows the
+     * amount of churn rather than the size of the catalog. Change versions are taken
+     * under the catalog_version lock, so they commit in order and an entry can never
+     * turn up below a version a caller has already moved past. Both reads run in one
+     * transaction so they share a snapshot with respect to pruning.
+     *
+     * @param version the last change version the caller has seen (0 for everything)
+     * @param limit the maximum number of products to return
+     * @return the changed products, the deleted ids and the version to resume from
+     */
+    @Override
+    public ProductChanges getChangesSince(long version, int limit)
+    {
+        String sql = "SELECT c.changed_id, c.change_version, p.* " +
+                "FROM (SELECT product_id AS changed_id, MAX(change_version) AS change_version " +
+                "      FROM product_changes " +
+                "      WHERE change_version > ? " +
+                "      GROUP BY product_id " +
+                "      ORDER BY change_version " +
+                "      LIMIT ?) c " +
+                "LEFT JOIN products p ON p.product_id = c.changed_id " +
+                "ORDER BY c.change_version";
+
+        ProductChanges changes = new ProductChanges(version);
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            PreparedStatement horizon = connection.prepareStatement(
+                    "SELECT version, changes_pruned_through FROM catalog_version WHERE id = 1");
+            ResultSet catalog = horizon.executeQuery();
+            if (catalog.next() && version < catalog.getLong("changes_pruned_through"))
+            {
+                // Entries after the caller's version have been pruned; it has to reload the catalog
+                changes.setResyncRequired(true);
+                changes.setVersion(catalog.getLong("version"));
+                connection.commit();
+                return changes;
+            }
+
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setLong(1, version);
+            statement.setInt(2, limit + 1); // one extra row tells us whether there is more
+
+            ResultSet row = statement.executeQuery();
+            int count = 0;
+            while (row.next())
+            {
+                if (++count > limit)
+                {
+                    changes.setHasMore(true);
+                    break;
+                }
+
+                changes.setVersion(row.getLong("change_version"));
+
+                row.getInt("product_id");
+                if (row.wasNull())
+                    changes.getDeleted().add(row.getInt("changed_id"));
+                else
+                    changes.getChanged().add(mapRow(row));
+            }
+
+            connection.commit();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return changes;
+    }
+
+    /**
+     * Moves the feed's horizon up to the newest entry older than the retention period,
+     * then deletes entries up to it in small autocommit chunks. The horizon is committed
+     * first, so a reader either gets the entries or is told to resync, never a silent gap.
+     *
+     * @param retentionDays how long to keep entries
+     * @return the number of entries deleted
+     */
+    @Override
+    public int pruneChanges(int retentionDays)
+    {
+        String horizonSql = "SELECT COALESCE(MAX(change_version), 0) FROM product_changes WHERE changed_at < NOW() - INTERVAL ? DAY";
+        String markSql = "UPDATE catalog_version SET changes_pruned_through = GREATEST(changes_pruned_through, ?) WHERE id = 1";
+        String deleteSql = "DELETE FROM product_changes WHERE change_version <= ? ORDER BY change_version LIMIT 1000";
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(horizonSql);
+            statement.setInt(1, retentionDays);
+            ResultSet row = statement.executeQuery();
+            long horizon = row.next() ? row.getLong(1) : 0;
+            if (horizon == 0)
+                return 0;
+
+            PreparedStatement mark = connection.prepareStatement(markSql);
+            mark.setLong(1, horizon);
+            mark.executeUpdate();
+
+            PreparedStatement delete = connection.prepareStatement(deleteSql);
+            delete.setLong(1, horizon);
+
+            int total = 0;
+            int deleted;
+            do
+            {
+                deleted = delete.executeUpdate();
+                total += deleted;
+            }
+            while (deleted == 1000);
+
+            return total;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error pruning product changes", e);
+        }
+    }
+
+    /**
+     * Retrieves the newest change version in the change feed.
+     *
+     * @return the latest change version, or 0 if nothing has changed yet
+     */
+    @Override
+    public long getLatestChangeVersion()
+    {
+        String sql = "SELECT COALESCE(MAX(change_version), 0) FROM product_changes";
+
+        try (Connection connection = getConnection())
+        {
+            PreparedStatement statement = connection.prepareStatement(sql);
+
+            ResultSet row = statement.executeQuery();
+            if (row.next())
+            {
+                return row.getLong(1);
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Decrements stock with a conditional update per product, in one transaction.
+     * Rows are updated in product id order so concurrent checkouts lock them in the
+     * same order and cannot deadlock. Like every stock write here, it doesn't take a
+     * catalog version itself; the products are noted and publishStockChanges advances
+     * the version for them, so ETags and cached listings trail the stock by at most
+     * stock.publish-interval-ms plus the invalidation poll.
+     *
+     * @param quantities product id to quantity wanted
+     * @return the ids of products without enough stock; empty if the stock was taken
+     */
+    @Override
+    public List<Integer> reserveStock(Map<Integer, Integer> quantities)
+    {
+        String sql = "UPDATE products SET stock = stock - ? WHERE product_id = ? AND stock >= ?";
+
+        List<Integer> unavailable = new ArrayList<>();
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            PreparedStatement statement = connection.prepareStatement(sql);
+            for (Map.Entry<Integer, Integer> entry : new TreeMap<>(quantities).entrySet())
+            {
+                statement.setInt(1, entry.getValue());
+                statement.setInt(2, entry.getKey());
+                statement.setInt(3, entry.getValue());
+
+                if (statement.executeUpdate() == 0)
+                    unavailable.add(entry.getKey());
+            }
+
+            if (unavailable.isEmpty())
+                connection.commit();
+            else
+                connection.rollback();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        if (unavailable.isEmpty())
+            stockChanged.addAll(quantities.keySet());
+        return unavailable;
+    }
+
+    /**
+     * Adds stock back, in product id order, in one transaction.
+     *
+     * @param quantities product id to quantity to return
+     */
+    @Override
+    public void releaseStock(Map<Integer, Integer> quantities)
+    {
+        String sql = "UPDATE products SET stock = stock + ? WHERE product_id = ?";
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            PreparedStatement statement = connection.prepareStatement(sql);
+            for (Map.Entry<Integer, Integer> entry : new TreeMap<>(quantities).entrySet())
+            {
+                statement.setInt(1, entry.getValue());
+                statement.setInt(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+
+            connection.commit();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        stockChanged.addAll(quantities.keySet());
+    }
+
+    /**
+     * Takes up to max units of stock. The row is locked just long enough to read and
+     * decrement it, once per lease rather than once per checkout. The units are added
+     * to the node's stock_leases row in the same transaction.
+     *
+     * @param nodeId the node taking the lease
+     * @param productId the product
+     * @param max the most units to take
+     * @return how many units were taken
+     */
+    @Override
+    public int leaseStock(String nodeId, int productId, int max)
+    {
+        String selectSql = "SELECT stock FROM products WHERE product_id = ? FOR UPDATE";
+        String updateSql = "UPDATE products SET stock = stock - ? WHERE product_id = ?";
+        String leaseSql = "INSERT INTO stock_leases (node_id, product_id, units, updated_at) VALUES (?, ?, ?, NOW()) " +
+                "ON DUPLICATE KEY UPDATE units = units + VALUES(units), updated_at = NOW()";
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            PreparedStatement select = connection.prepareStatement(selectSql);
+            select.setInt(1, productId);
+
+            ResultSet row = select.executeQuery();
+            int taken = row.next() ? Math.max(0, Math.min(row.getInt("stock"), max)) : 0;
+
+            if (taken > 0)
+            {
+                PreparedStatement update = connection.prepareStatement(updateSql);
+                update.setInt(1, taken);
+                update.setInt(2, productId);
+                update.executeUpdate();
+
+                PreparedStatement lease = connection.prepareStatement(leaseSql);
+                lease.setString(1, nodeId);
+                lease.setInt(2, productId);
+                lease.setInt(3, taken);
+                lease.executeUpdate();
+            }
+
+            connection.commit();
+            if (taken > 0)
+                stockChanged.add(productId);
+            return taken;
         }
         catch (SQLException e)
         {
@@ -234,6 +752,281 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao
         }
     }
 
+    /**
+     * Takes the units off the node's lease row first, and only puts back into products
+     * what the row still held, so units a reclaim already returned aren't added twice.
+     *
+     * @param nodeId the node holding the lease
+     * @param quantities product id to quantity to return
+     */
+    @Override
+    public void returnLeasedStock(String nodeId, Map<Integer, Integer> quantities)
+    {
+        String leaseSql = "UPDATE stock_leases SET units = units - ?, updated_at = NOW() " +
+                "WHERE node_id = ? AND product_id = ? AND units >= ?";
+        String stockSql = "UPDATE products SET stock = stock + ? WHERE product_id = ?";
+
+        List<Integer> returned = new ArrayList<>();
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            PreparedStatement lease = connection.prepareStatement(leaseSql);
+            PreparedStatement stock = connection.prepareStatement(stockSql);
+            for (Map.Entry<Integer, Integer> entry : new TreeMap<>(quantities).entrySet())
+            {
+                lease.setInt(1, entry.getValue());
+                lease.setString(2, nodeId);
+                lease.setInt(3, entry.getKey());
+                lease.setInt(4, entry.getValue());
+                if (lease.executeUpdate() == 0)
+                    continue;
+
+                stock.setInt(1, entry.getValue());
+                stock.setInt(2, entry.getKey());
+                stock.executeUpdate();
+                returned.add(entry.getKey());
+            }
+
+            connection.commit();
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        stockChanged.addAll(returned);
+    }
+
+    @Override
+    public int reclaimLeases(String nodeId)
+    {
+        return reclaim("node_id = ?", nodeId);
+    }
+
+    @Override
+    public int reclaimAbandonedLeases(int idleSeconds)
+    {
+        return reclaim("updated_at < NOW() - INTERVAL ? SECOND", idleSeconds);
+    }
+
+    /**
+     * Moves the units of the matching lease rows back into products and deletes the rows,
+     * in one transaction with the rows locked.
+     */
+    private int reclaim(String where, Object parameter)
+    {
+        String selectSql = "SELECT node_id, product_id, units FROM stock_leases WHERE " + where + " FOR UPDATE";
+        String stockSql = "UPDATE products SET stock = stock + ? WHERE product_id = ?";
+        String deleteSql = "DELETE FROM stock_leases WHERE node_id = ? AND product_id = ?";
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            PreparedStatement select = connection.prepareStatement(selectSql);
+            select.setObject(1, parameter);
+            ResultSet rows = select.executeQuery();
+
+            PreparedStatement stock = connection.prepareStatement(stockSql);
+            PreparedStatement delete = connection.prepareStatement(deleteSql);
+            List<Integer> productIds = new ArrayList<>();
+            int units = 0;
+            while (rows.next())
+            {
+                if (rows.getInt("units") > 0)
+                {
+                    stock.setInt(1, rows.getInt("units"));
+                    stock.setInt(2, rows.getInt("product_id"));
+                    stock.addBatch();
+                    units += rows.getInt("units");
+                    productIds.add(rows.getInt("product_id"));
+                }
+
+                delete.setString(1, rows.getString("node_id"));
+                delete.setInt(2, rows.getInt("product_id"));
+                delete.addBatch();
+            }
+            stock.executeBatch();
+            delete.executeBatch();
+
+            connection.commit();
+            stockChanged.addAll(productIds);
+            return units;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Takes one catalog version per product and records the change feed entries and
+     * listing invalidations in one transaction. Products deleted since their stock
+     * changed are skipped. If the write fails the products are kept for the next call.
+     */
+    @Override
+    public int publishStockChanges()
+    {
+        List<Integer> productIds = new ArrayList<>(stockChanged);
+        if (productIds.isEmpty())
+            return 0;
+        // Noted again after this point means changed again; it is published next time
+        stockChanged.removeAll(productIds);
+        Collections.sort(productIds);
+
+        String categorySql = "SELECT product_id, category_id FROM products WHERE product_id IN (" +
+                String.join(", ", Collections.nCopies(productIds.size(), "?")) + ")";
+
+        List<Integer> published = new ArrayList<>();
+        long version = 0;
+        List<CacheInvalidation> invalidations = List.of();
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                PreparedStatement categories = connection.prepareStatement(categorySql);
+                int index = 1;
+                for (int productId : productIds)
+                {
+                    categories.setInt(index++, productId);
+                }
+
+                Set<Integer> categoryIds = new HashSet<>();
+                ResultSet row = categories.executeQuery();
+                while (row.next())
+                {
+                    published.add(row.getInt("product_id"));
+                    categoryIds.add(row.getInt("category_id"));
+                }
+
+                if (!published.isEmpty())
+                {
+                    version = allocateVersions(connection, published.size());
+                    long changeVersion = version - published.size();
+
+                    PreparedStatement changes = connection.prepareStatement("INSERT INTO product_changes (change_version, product_id, deleted) VALUES (?, ?, false)");
+                    for (int productId : published)
+                    {
+                        changes.setLong(1, ++changeVersion);
+                        changes.setInt(2, productId);
+                        changes.addBatch();
+                    }
+                    changes.executeBatch();
+
+                    invalidations = recordListingInvalidations(connection, version, categoryIds);
+                }
+
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException e)
+        {
+            stockChanged.addAll(productIds);
+            throw new RuntimeException("Error publishing stock changes", e);
+        }
+
+        if (!published.isEmpty())
+            catalogVersion.advanceTo(version, invalidations);
+        return published.size();
+    }
+
+    /**
+     * Appends a change feed entry on the caller's connection so it commits with the write.
+     *
+     * @param connection the open connection of the surrounding write
+     * @param version the change version, taken with allocateVersions on the same transaction
+     * @param productId the product that changed
+     * @param deleted whether the product was deleted
+     */
+    private void recordChange(Connection connection, long version, int productId, boolean deleted) throws SQLException
+    {
+        String sql = "INSERT INTO product_changes (change_version, product_id, deleted) VALUES (?, ?, ?)";
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setLong(1, version);
+        statement.setInt(2, productId);
+        statement.setBoolean(3, deleted);
+        statement.executeUpdate();
+    }
+
+    /**
+     * Locks the rows of the products that already exist.
+     *
+     * @param products products with an id, sorted by id
+     * @return the ids that already exist, with their current category
+     */
+    private Map<Integer, Integer> lockExisting(Connection connection, List<Product> products) throws SQLException
+    {
+        String sql = "SELECT product_id, category_id FROM products WHERE product_id IN (" +
+                String.join(", ", Collections.nCopies(products.size(), "?")) + ") ORDER BY product_id FOR UPDATE";
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+        int index = 1;
+        for (Product product : products)
+        {
+            statement.setInt(index++, product.getProductId());
+        }
+
+        Map<Integer, Integer> existing = new HashMap<>();
+        ResultSet row = statement.executeQuery();
+        while (row.next())
+        {
+            existing.put(row.getInt("product_id"), row.getInt("category_id"));
+        }
+        return existing;
+    }
+
+    /**
+     * Locks a product's row and reads its category before it is changed.
+     *
+     * @return the category, or null if the product doesn't exist
+     */
+    private Integer lockCategoryOf(Connection connection, int productId) throws SQLException
+    {
+        PreparedStatement statement = connection.prepareStatement("SELECT category_id FROM products WHERE product_id = ? FOR UPDATE");
+        statement.setInt(1, productId);
+
+        ResultSet row = statement.executeQuery();
+        return row.next() ? row.getInt("category_id") : null;
+    }
+
+    /**
+     * Records that the product listings of the given categories changed.
+     *
+     * @return the recorded entries, to apply locally after commit
+     */
+    private List<CacheInvalidation> recordListingInvalidations(Connection connection, long version, Collection<Integer> categoryIds) throws SQLException
+    {
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        for (Integer categoryId : new TreeSet<>(categoryIds))
+        {
+            invalidations.add(recordInvalidation(connection, version, CacheInvalidation.CATEGORY_PRODUCTS, categoryId));
+        }
+        return invalidations;
+    }
+
+    private static void setImportColumns(PreparedStatement statement, int index, Product product) throws SQLException
+    {
+        statement.setString(index++, product.getName());
+        statement.setBigDecimal(index++, product.getPrice());
+        statement.setInt(index++, product.getCategoryId());
+        statement.setString(index++, product.getDescription());
+        statement.setString(index++, product.getColor());
+        statement.setString(index++, product.getImageUrl());
+        statement.setInt(index++, product.getStock());
+        statement.setBoolean(index, product.isFeatured());
+    }
+
     /**
      * Maps a row from the ResultSet to a Product object.
      *
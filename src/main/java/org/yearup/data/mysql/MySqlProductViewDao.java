@@ -0,0 +1,99 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductViewDao;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component // Marks this class as a Spring-managed component for dependency injection
+public class MySqlProductViewDao extends MySqlDaoBase implements ProductViewDao
+{
+    // Keeps each statement well under max_allowed_packet
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    public MySqlProductViewDao(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    /**
+     * Adds the counts with multi-row upserts in one transaction, in product id order
+     * so two nodes flushing at once lock the rows in the same order.
+     */
+    @Override
+    public void addViews(Map<Integer, Long> views)
+    {
+        if (views.isEmpty())
+            return;
+
+        List<Map.Entry<Integer, Long>> rows = new ArrayList<>(new TreeMap<>(views).entrySet());
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                for (int start = 0; start < rows.size(); start += ROWS_PER_STATEMENT)
+                {
+                    int count = Math.min(ROWS_PER_STATEMENT, rows.size() - start);
+                    String sql = "INSERT INTO product_views (product_id, views, updated_at) VALUES " +
+                            String.join(", ", Collections.nCopies(count, "(?, ?, NOW())")) +
+                            " ON DUPLICATE KEY UPDATE views = views + VALUES(views), updated_at = NOW()";
+
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    int index = 1;
+                    for (Map.Entry<Integer, Long> row : rows.subList(start, start + count))
+                    {
+                        statement.setInt(index++, row.getKey());
+                        statement.setLong(index++, row.getValue());
+                    }
+                    statement.executeUpdate();
+                }
+
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error adding product views", e);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> getMostViewed(int limit)
+    {
+        Map<Integer, Long> views = new LinkedHashMap<>();
+        String sql = "SELECT product_id, views FROM product_views ORDER BY views DESC, product_id LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setInt(1, limit);
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                views.put(row.getInt("product_id"), row.getLong("views"));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading product views", e);
+        }
+
+        return views;
+    }
+}
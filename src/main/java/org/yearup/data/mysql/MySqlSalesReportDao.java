@@ -0,0 +1,373 @@
+package org.yearup.data.mysql;
+
+import org.springframework.stereotype.Component;
+import org.yearup.data.SalesReportDao;
+import org.yearup.models.*;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+@Component // Marks this class as a Spring-managed component for dependency injection
+public class MySqlSalesReportDao extends MySqlDaoBase implements SalesReportDao
+{
+    // Revenue of a line: unit price times quantity, less the line discount
+    private static final String LINE_REVENUE = "li.sales_price * li.quantity - li.discount";
+
+    public MySqlSalesReportDao(DataSource dataSource)
+    {
+        super(dataSource);
+    }
+
+    /**
+     * Adds a batch of new orders to the rollups on the caller's connection, so the
+     * rollups commit or roll back with the orders themselves. Called by MySqlOrderDao.
+     * Rows are upserted in key order, so two batches never lock them in opposite orders.
+     *
+     * @param conn the connection holding the order transaction
+     * @param orders the orders being written, with their line items
+     */
+    protected static void addOrders(Connection conn, List<Order> orders) throws SQLException
+    {
+        Map<LocalDate, DailySales> days = new TreeMap<>();
+        Map<LocalDate, Map<Integer, ProductSales>> products = new TreeMap<>();
+        Set<Integer> productIds = new TreeSet<>();
+
+        for (Order order : orders)
+        {
+            LocalDate day = order.getOrderDate().toLocalDate();
+            DailySales daily = days.computeIfAbsent(day, d -> new DailySales(d, 0, 0, BigDecimal.ZERO, BigDecimal.ZERO));
+            daily.setOrderCount(daily.getOrderCount() + 1);
+            daily.setShipping(daily.getShipping().add(order.getShippingAmount()));
+
+            for (OrderLineItem item : order.getLineItems())
+            {
+                BigDecimal revenue = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())).subtract(item.getDiscount());
+
+                daily.setUnits(daily.getUnits() + item.getQuantity());
+                daily.setRevenue(daily.getRevenue().add(revenue));
+
+                ProductSales sales = products.computeIfAbsent(day, d -> new TreeMap<>())
+                        .computeIfAbsent(item.getProductId(), id -> new ProductSales(id, null, 0, 0, BigDecimal.ZERO));
+                sales.setUnits(sales.getUnits() + item.getQuantity());
+                sales.setRevenue(sales.getRevenue().add(revenue));
+                productIds.add(item.getProductId());
+            }
+        }
+
+        Map<Integer, Integer> categoryIds = getCategoryIds(conn, productIds);
+
+        String dailySql = "INSERT INTO sales_daily (sale_date, order_count, units, revenue, shipping) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), units = units + VALUES(units), " +
+                "revenue = revenue + VALUES(revenue), shipping = shipping + VALUES(shipping)";
+
+        try (PreparedStatement stmt = conn.prepareStatement(dailySql))
+        {
+            for (DailySales daily : days.values())
+            {
+                stmt.setDate(1, Date.valueOf(daily.getDate()));
+                stmt.setInt(2, daily.getOrderCount());
+                stmt.setInt(3, daily.getUnits());
+                stmt.setBigDecimal(4, daily.getRevenue());
+                stmt.setBigDecimal(5, daily.getShipping());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+
+        if (productIds.isEmpty())
+            return;
+
+        String productSql = "INSERT INTO sales_daily_product (sale_date, product_id, category_id, units, revenue) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE units = units + VALUES(units), revenue = revenue + VALUES(revenue)";
+        String categorySql = "INSERT INTO sales_daily_category (sale_date, category_id, units, revenue) VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE units = units + VALUES(units), revenue = revenue + VALUES(revenue)";
+
+        try (PreparedStatement productStmt = conn.prepareStatement(productSql);
+             PreparedStatement categoryStmt = conn.prepareStatement(categorySql))
+        {
+            for (Map.Entry<LocalDate, Map<Integer, ProductSales>> day : products.entrySet())
+            {
+                Date saleDate = Date.valueOf(day.getKey());
+                Map<Integer, CategorySales> categories = new TreeMap<>();
+
+                for (ProductSales sales : day.getValue().values())
+                {
+                    int categoryId = categoryIds.getOrDefault(sales.getProductId(), 0);
+
+                    productStmt.setDate(1, saleDate);
+                    productStmt.setInt(2, sales.getProductId());
+                    productStmt.setInt(3, categoryId);
+                    productStmt.setInt(4, sales.getUnits());
+                    productStmt.setBigDecimal(5, sales.getRevenue());
+                    productStmt.addBatch();
+
+                    CategorySales category = categories.computeIfAbsent(categoryId, id -> new CategorySales(id, null, 0, BigDecimal.ZERO));
+                    category.setUnits(category.getUnits() + sales.getUnits());
+                    category.setRevenue(category.getRevenue().add(sales.getRevenue()));
+                }
+
+                for (CategorySales category : categories.values())
+                {
+                    categoryStmt.setDate(1, saleDate);
+                    categoryStmt.setInt(2, category.getCategoryId());
+                    categoryStmt.setInt(3, category.getUnits());
+                    categoryStmt.setBigDecimal(4, category.getRevenue());
+                    categoryStmt.addBatch();
+                }
+            }
+
+            productStmt.executeBatch();
+            categoryStmt.executeBatch();
+        }
+    }
+
+    private static Map<Integer, Integer> getCategoryIds(Connection conn, Set<Integer> productIds) throws SQLException
+    {
+        Map<Integer, Integer> categoryIds = new HashMap<>();
+        if (productIds.isEmpty())
+            return categoryIds;
+
+        String sql = "SELECT product_id, category_id FROM products WHERE product_id IN (" +
+                String.join(", ", Collections.nCopies(productIds.size(), "?")) + ")";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql))
+        {
+            int index = 1;
+            for (int productId : productIds)
+            {
+                stmt.setInt(index++, productId);
+            }
+
+            ResultSet row = stmt.executeQuery();
+            while (row.next())
+            {
+                categoryIds.put(row.getInt("product_id"), row.getInt("category_id"));
+            }
+        }
+
+        return categoryIds;
+    }
+
+    @Override
+    public List<DailySales> getDaily(LocalDate from, LocalDate to)
+    {
+        List<DailySales> days = new ArrayList<>();
+        String sql = "SELECT sale_date, order_count, units, revenue, shipping FROM sales_daily " +
+                "WHERE sale_date BETWEEN ? AND ? ORDER BY sale_date";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setDate(1, Date.valueOf(from));
+            statement.setDate(2, Date.valueOf(to));
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                days.add(new DailySales(
+                        row.getDate("sale_date").toLocalDate(),
+                        row.getInt("order_count"),
+                        row.getInt("units"),
+                        row.getBigDecimal("revenue"),
+                        row.getBigDecimal("shipping")));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading daily sales", e);
+        }
+
+        return days;
+    }
+
+    @Override
+    public List<CategorySales> getByCategory(LocalDate from, LocalDate to)
+    {
+        List<CategorySales> categories = new ArrayList<>();
+        String sql = "SELECT s.category_id, c.name, SUM(s.units) AS units, SUM(s.revenue) AS revenue " +
+                "FROM sales_daily_category s LEFT JOIN categories c ON c.category_id = s.category_id " +
+                "WHERE s.sale_date BETWEEN ? AND ? " +
+                "GROUP BY s.category_id, c.name " +
+                "ORDER BY revenue DESC";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            statement.setDate(1, Date.valueOf(from));
+            statement.setDate(2, Date.valueOf(to));
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                categories.add(new CategorySales(
+                        row.getInt("category_id"),
+                        row.getString("name"),
+                        row.getInt("units"),
+                        row.getBigDecimal("revenue")));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading category sales", e);
+        }
+
+        return categories;
+    }
+
+    @Override
+    public List<ProductSales> getTopProducts(LocalDate from, LocalDate to, int limit)
+    {
+        return getTopProducts(from, to, null, limit);
+    }
+
+    @Override
+    public List<ProductSales> getTopProducts(LocalDate from, LocalDate to, int categoryId, int limit)
+    {
+        return getTopProducts(from, to, (Integer) categoryId, limit);
+    }
+
+    private List<ProductSales> getTopProducts(LocalDate from, LocalDate to, Integer categoryId, int limit)
+    {
+        List<ProductSales> products = new ArrayList<>();
+        String sql = "SELECT s.product_id, p.name, MAX(s.category_id) AS category_id, " +
+                "SUM(s.units) AS units, SUM(s.revenue) AS revenue " +
+                "FROM sales_daily_product s LEFT JOIN products p ON p.product_id = s.product_id " +
+                "WHERE s.sale_date BETWEEN ? AND ? " +
+                (categoryId != null ? "AND s.category_id = ? " : "") +
+                "GROUP BY s.product_id, p.name " +
+                "ORDER BY revenue DESC LIMIT ?";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            int parameter = 1;
+            statement.setDate(parameter++, Date.valueOf(from));
+            statement.setDate(parameter++, Date.valueOf(to));
+            if (categoryId != null)
+                statement.setInt(parameter++, categoryId);
+            statement.setInt(parameter, limit);
+
+            ResultSet row = statement.executeQuery();
+            while (row.next())
+            {
+                products.add(new ProductSales(
+                        row.getInt("product_id"),
+                        row.getString("name"),
+                        row.getInt("category_id"),
+                        row.getInt("units"),
+                        row.getBigDecimal("revenue")));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading product sales", e);
+        }
+
+        return products;
+    }
+
+    /**
+     * Deletes one day's rollups and recomputes them from orders and line items in a
+     * single transaction. The scan is bounded to the day by idx_orders_date. Lines
+     * whose product is gone count under category 0, as addOrders files them.
+     */
+    @Override
+    public void rebuildDay(LocalDate day)
+    {
+        String[] deleteSql = {
+                "DELETE FROM sales_daily WHERE sale_date = ?",
+                "DELETE FROM sales_daily_category WHERE sale_date = ?",
+                "DELETE FROM sales_daily_product WHERE sale_date = ?"
+        };
+        String dailySql = "INSERT INTO sales_daily (sale_date, order_count, units, revenue, shipping) " +
+                "SELECT ?, COUNT(*), COALESCE(SUM(units), 0), COALESCE(SUM(revenue), 0), COALESCE(SUM(shipping_amount), 0) FROM (" +
+                "    SELECT o.order_id, o.shipping_amount, SUM(li.quantity) AS units, SUM(" + LINE_REVENUE + ") AS revenue " +
+                "    FROM orders o LEFT JOIN order_line_items li ON li.order_id = o.order_id " +
+                "    WHERE o.date >= ? AND o.date < ? " +
+                "    GROUP BY o.order_id, o.shipping_amount" +
+                ") day_orders HAVING COUNT(*) > 0";
+        String productSql = "INSERT INTO sales_daily_product (sale_date, product_id, category_id, units, revenue) " +
+                "SELECT ?, li.product_id, COALESCE(p.category_id, 0), SUM(li.quantity), SUM(" + LINE_REVENUE + ") " +
+                "FROM orders o " +
+                "JOIN order_line_items li ON li.order_id = o.order_id " +
+                "LEFT JOIN products p ON p.product_id = li.product_id " +
+                "WHERE o.date >= ? AND o.date < ? " +
+                "GROUP BY li.product_id, COALESCE(p.category_id, 0)";
+        String categorySql = "INSERT INTO sales_daily_category (sale_date, category_id, units, revenue) " +
+                "SELECT sale_date, category_id, SUM(units), SUM(revenue) FROM sales_daily_product " +
+                "WHERE sale_date = ? GROUP BY sale_date, category_id";
+
+        Date saleDate = Date.valueOf(day);
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        try (Connection connection = getConnection())
+        {
+            connection.setAutoCommit(false);
+
+            try
+            {
+                for (String sql : deleteSql)
+                {
+                    PreparedStatement delete = connection.prepareStatement(sql);
+                    delete.setDate(1, saleDate);
+                    delete.executeUpdate();
+                }
+
+                for (String sql : new String[] { dailySql, productSql })
+                {
+                    PreparedStatement insert = connection.prepareStatement(sql);
+                    insert.setDate(1, saleDate);
+                    insert.setTimestamp(2, start);
+                    insert.setTimestamp(3, end);
+                    insert.executeUpdate();
+                }
+
+                PreparedStatement categories = connection.prepareStatement(categorySql);
+                categories.setDate(1, saleDate);
+                categories.executeUpdate();
+
+                connection.commit();
+            }
+            catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error rebuilding sales rollups for " + day, e);
+        }
+    }
+
+    @Override
+    public LocalDate getFirstOrderDate()
+    {
+        String sql = "SELECT MIN(date) AS first_date FROM orders";
+
+        try (Connection connection = getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql))
+        {
+            ResultSet row = statement.executeQuery();
+            if (row.next() && row.getTimestamp("first_date") != null)
+                return row.getTimestamp("first_date").toLocalDateTime().toLocalDate();
+
+            return null;
+        }
+        catch (SQLException e)
+        {
+            throw new RuntimeException("Error reading the first order date", e);
+        }
+    }
+}
@@ -1,30 +1,38 @@
 package org.yearup.data.mysql;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import org.yearup.data.ProductDao;
 import org.yearup.data.ShoppingCartDao;
-import org.yearup.models.Product;
+import org.yearup.models.Money;
 import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+import org.yearup.models.ShoppingCartDelta;
 import org.yearup.models.ShoppingCartItem;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @Component // Marks this class as a Spring component for DI
+@ConditionalOnProperty(name = "cart.store", havingValue = "mysql", matchIfMissing = true) // Default cart store
 public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDao {
 
-    private final ProductDao productDao;
+    // Cart lines joined to their products, so a cart loads in one query
+    private static final String CART_ITEMS_SQL = "SELECT p.*, sc.quantity FROM shopping_cart sc " +
+            "JOIN products p ON p.product_id = sc.product_id WHERE sc.user_id = ?";
 
-    // Constructor injecting DataSource and ProductDao dependencies
-    public MySqlShoppingCartDao(DataSource dataSource, ProductDao productDao) {
+    // Constructor injecting the DataSource dependency
+    public MySqlShoppingCartDao(DataSource dataSource) {
         super(dataSource);
-        this.productDao = productDao;
     }
 
     /**
-     * Retrieves the shopping cart for a specific user by userId.
-     * Loads product details for each item using ProductDao.
+     * Retrieves the shopping cart for a specific user by userId,
+     * with product details loaded by the same query. The version and the items are
+     * read in one transaction, so they always describe the same state of the cart.
      *
      * @param userId the ID of the user
      * @return ShoppingCart object containing items and quantities
@@ -33,31 +41,22 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
     public ShoppingCart getByUserId(int userId) {
         ShoppingCart cart = new ShoppingCart();
 
-        String sql = "SELECT * FROM shopping_cart WHERE user_id = ?";
-
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(CART_ITEMS_SQL)) {
+            conn.setAutoCommit(false);
+
+            // The first read fixes the transaction's snapshot; the items below come from the same one
+            cart.setVersion(getVersion(conn, userId));
 
             stmt.setInt(1, userId);
             ResultSet rs = stmt.executeQuery();
 
             // Iterate through all rows for the user's cart items
             while (rs.next()) {
-                int productId = rs.getInt("product_id");
-                int quantity = rs.getInt("quantity");
-
-                // Fetch full product info from ProductDao
-                Product product = productDao.getById(productId);
-
-                if (product != null) {
-                    ShoppingCartItem item = new ShoppingCartItem();
-                    item.setProduct(product);
-                    item.setQuantity(quantity);
-                    item.setDiscountPercent(BigDecimal.ZERO); // Default discount to zero
-
-                    cart.add(item);
-                }
+                cart.add(mapItem(rs));
             }
+
+            conn.commit();
         } catch (SQLException e) {
             throw new RuntimeException("Error loading shopping cart for user ID: " + userId, e);
         }
@@ -66,80 +65,100 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
     }
 
     /**
-     * Adds a product to the user's shopping cart.
-     * If the product already exists in the cart, increments quantity by 1.
-     * Otherwise, inserts a new cart record with quantity 1.
+     * Retrieves one cart line with the cart version and totals, using aggregate queries
+     * instead of loading every product in the cart. All three are read in one transaction,
+     * version first, so a change committed in between can't show in some and not others.
      *
      * @param userId the ID of the user
-     * @param productId the ID of the product to add
+     * @param productId the ID of the product
+     * @return the delta for that product
      */
     @Override
-    public void addProductToCart(int userId, int productId) {
-        if (existsInCart(userId, productId)) {
-            incrementQuantity(userId, productId);
-        } else {
-            insertNewProduct(userId, productId);
-        }
-    }
+    public ShoppingCartDelta getDelta(int userId, int productId) {
+        String itemSql = CART_ITEMS_SQL + " AND sc.product_id = ?";
+        String totalsSql = "SELECT COUNT(*) AS item_count, COALESCE(SUM(p.price * sc.quantity), 0) AS total " +
+                "FROM shopping_cart sc JOIN products p ON p.product_id = sc.product_id WHERE sc.user_id = ?";
 
-    /**
-     * Checks if a product already exists in a user's cart.
-     *
-     * @param userId the user ID
-     * @param productId the product ID
-     * @return true if product exists in cart, false otherwise
-     */
-    @Override
-    public boolean existsInCart(int userId, int productId) {
-        String sql = "SELECT COUNT(*) FROM shopping_cart WHERE user_id = ? AND product_id = ?";
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setInt(1, userId);
-            stmt.setInt(2, productId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1) > 0;
+             PreparedStatement itemStmt = conn.prepareStatement(itemSql);
+             PreparedStatement totalsStmt = conn.prepareStatement(totalsSql)) {
+
+            conn.setAutoCommit(false);
+
+            ShoppingCartDelta delta = new ShoppingCartDelta();
+            delta.setVersion(getVersion(conn, userId));
+
+            itemStmt.setInt(1, userId);
+            itemStmt.setInt(2, productId);
+            ResultSet itemRs = itemStmt.executeQuery();
+            if (itemRs.next()) {
+                delta.setItem(mapItem(itemRs));
+            }
+
+            totalsStmt.setInt(1, userId);
+            ResultSet totalsRs = totalsStmt.executeQuery();
+            if (totalsRs.next()) {
+                delta.setItemCount(totalsRs.getInt("item_count"));
+                delta.setTotalCents(Money.toCents(totalsRs.getBigDecimal("total")));
             }
+
+            conn.commit();
+            return delta;
         } catch (SQLException e) {
-            throw new RuntimeException("Error checking if product exists in cart", e);
+            throw new RuntimeException("Error loading shopping cart for user ID: " + userId, e);
         }
-        return false;
     }
 
     /**
-     * Helper method to increment the quantity of an existing product in the cart.
+     * Adds a product to the user's shopping cart.
+     * If the product already exists in the cart, increments quantity by 1,
+     * otherwise inserts a new cart record with quantity 1 (a single upsert).
      *
-     * @param userId the user ID
-     * @param productId the product ID
+     * @param userId the ID of the user
+     * @param productId the ID of the product to add
      */
-    private void incrementQuantity(int userId, int productId) {
-        String sql = "UPDATE shopping_cart SET quantity = quantity + 1 WHERE user_id = ? AND product_id = ?";
+    @Override
+    public void addProductToCart(int userId, int productId) {
+        String sql = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, 1) " +
+                "ON DUPLICATE KEY UPDATE quantity = quantity + 1";
+
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+
             stmt.setInt(1, userId);
             stmt.setInt(2, productId);
             stmt.executeUpdate();
+            bumpVersion(conn, userId, 1);
+
+            conn.commit();
         } catch (SQLException e) {
-            throw new RuntimeException("Error incrementing product quantity", e);
+            throw new RuntimeException("Error adding product to cart", e);
         }
     }
 
     /**
-     * Helper method to insert a new product into the cart with quantity 1.
+     * Checks if a product already exists in a user's cart.
      *
      * @param userId the user ID
      * @param productId the product ID
+     * @return true if product exists in cart, false otherwise
      */
-    private void insertNewProduct(int userId, int productId) {
-        String sql = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, 1)";
+    @Override
+    public boolean existsInCart(int userId, int productId) {
+        String sql = "SELECT COUNT(*) FROM shopping_cart WHERE user_id = ? AND product_id = ?";
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, userId);
             stmt.setInt(2, productId);
-            stmt.executeUpdate();
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt(1) > 0;
+            }
         } catch (SQLException e) {
-            throw new RuntimeException("Error inserting new product to cart", e);
+            throw new RuntimeException("Error checking if product exists in cart", e);
         }
+        return false;
     }
 
     /**
@@ -153,8 +172,13 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
 
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)){
+            conn.setAutoCommit(false);
+
             stmt.setInt(1, userId);
             stmt.executeUpdate();
+            bumpVersion(conn, userId, 1);
+
+            conn.commit();
         }
         catch (SQLException e){
             throw new RuntimeException("Error clearing shopping cart for user ID: " + userId, e);
@@ -173,17 +197,176 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
         String sql = "UPDATE shopping_cart SET quantity = ? WHERE user_id = ? AND product_id = ?";
         try (Connection conn = getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+
             stmt.setInt(1, quantity);
             stmt.setInt(2, userId);
             stmt.setInt(3, productId);
             int rowsAffected = stmt.executeUpdate();
 
             if (rowsAffected == 0) {
+                conn.rollback();
                 throw new RuntimeException("No cart item found to update");
             }
+
+            bumpVersion(conn, userId, 1);
+            conn.commit();
         } catch (SQLException e) {
             throw new RuntimeException("Error updating quantity", e);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Applies a set of quantity changes as two JDBC batches (upserts and deletes) in one transaction.
+     *
+     * @param userId the user ID
+     * @param changes the products and the quantities they should end up with
+     */
+    @Override
+    public void applyChanges(int userId, List<ShoppingCartChange> changes) {
+        String upsertSql = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+        String deleteSql = "DELETE FROM shopping_cart WHERE user_id = ? AND product_id = ?";
+
+        try (Connection conn = getConnection();
+             PreparedStatement upsert = conn.prepareStatement(upsertSql);
+             PreparedStatement delete = conn.prepareStatement(deleteSql)) {
+            conn.setAutoCommit(false);
+
+            for (ShoppingCartChange change : changes) {
+                if (change.getQuantity() > 0) {
+                    upsert.setInt(1, userId);
+                    upsert.setInt(2, change.getProductId());
+                    upsert.setInt(3, change.getQuantity());
+                    upsert.addBatch();
+                } else {
+                    delete.setInt(1, userId);
+                    delete.setInt(2, change.getProductId());
+                    delete.addBatch();
+                }
+            }
+
+            upsert.executeBatch();
+            delete.executeBatch();
+            bumpVersion(conn, userId, 1);
+
+            conn.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating shopping cart for user ID: " + userId, e);
+        }
+    }
+
+    /**
+     * Deletes one chunk of abandoned carts. The candidates are picked by the last_touched
+     * index, and the cutoff is checked again in the delete so a cart touched in between survives.
+     * The cutoff is computed by the database, whose clock also stamps last_touched.
+     *
+     * @param retentionDays carts last touched longer ago than this are deleted
+     * @param batchSize the most carts to delete in one call
+     * @return how many carts were deleted
+     */
+    @Override
+    public int deleteAbandonedCarts(int retentionDays, int batchSize) {
+        String selectSql = "SELECT user_id FROM shopping_cart_headers WHERE last_touched < NOW() - INTERVAL ? DAY " +
+                "ORDER BY last_touched LIMIT ?";
+
+        List<Integer> userIds = new ArrayList<>();
+
+        try (Connection conn = getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+                stmt.setInt(1, retentionDays);
+                stmt.setInt(2, batchSize);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    userIds.add(rs.getInt("user_id"));
+                }
+            }
+
+            if (userIds.isEmpty()) {
+                return 0;
+            }
+
+            String in = String.join(",", Collections.nCopies(userIds.size(), "?"));
+            String stale = "SELECT user_id FROM shopping_cart_headers WHERE user_id IN (" + in + ") AND last_touched < NOW() - INTERVAL ? DAY";
+            String deleteItemsSql = "DELETE FROM shopping_cart WHERE user_id IN (" + stale + ")";
+            String deleteHeadersSql = "DELETE FROM shopping_cart_headers WHERE user_id IN (" + in + ") AND last_touched < NOW() - INTERVAL ? DAY";
+
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement deleteItems = conn.prepareStatement(deleteItemsSql);
+                 PreparedStatement deleteHeaders = conn.prepareStatement(deleteHeadersSql)) {
+                bindIdsAndCutoff(deleteItems, userIds, retentionDays);
+                deleteItems.executeUpdate();
+
+                bindIdsAndCutoff(deleteHeaders, userIds, retentionDays);
+                int deleted = deleteHeaders.executeUpdate();
+
+                conn.commit();
+                return deleted;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting abandoned carts", e);
+        }
+    }
+
+    /**
+     * The order transaction already deleted the cart rows and bumped the version.
+     *
+     * @param userId the user ID
+     */
+    @Override
+    public void afterCheckout(int userId) {
+    }
+
+    /**
+     * Every change is written straight to the database, so there is nothing to flush.
+     *
+     * @param userId the user ID
+     */
+    @Override
+    public void flushPendingChanges(int userId) {
+    }
+
+    /**
+     * Advances the user's cart version and last-touched time inside the caller's transaction.
+     *
+     * @param conn connection with the open transaction
+     * @param userId the user ID
+     * @param by how many changes are being committed
+     */
+    protected static void bumpVersion(Connection conn, int userId, int by) throws SQLException {
+        String sql = "INSERT INTO shopping_cart_headers (user_id, version, last_touched) VALUES (?, ?, NOW()) " +
+                "ON DUPLICATE KEY UPDATE version = version + VALUES(version), last_touched = NOW()";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, by);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static long getVersion(Connection conn, int userId) throws SQLException {
+        String sql = "SELECT version FROM shopping_cart_headers WHERE user_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getLong("version") : 0;
+        }
+    }
+
+    private static void bindIdsAndCutoff(PreparedStatement stmt, List<Integer> userIds, int retentionDays) throws SQLException {
+        int index = 1;
+        for (int userId : userIds) {
+            stmt.setInt(index++, userId);
+        }
+        stmt.setInt(index, retentionDays);
+    }
+
+    private static ShoppingCartItem mapItem(ResultSet rs) throws SQLException {
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(MySqlProductDao.mapRow(rs));
+        item.setQuantity(rs.getInt("quantity"));
+        item.setDiscountPercent(BigDecimal.ZERO); // Default discount to zero
+        return item;
+    }
+
+}
@@ -0,0 +1,652 @@
+package org.yearup.data.mysql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+import org.yearup.data.ShoppingCartDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+import org.yearup.models.ShoppingCartDelta;
+import org.yearup.models.ShoppingCartItem;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind front for MySqlShoppingCartDao, enabled with cart.write-behind.enabled=true.
+ *
+ * Cart mutations are recorded in an in-memory buffer and coalesced per (user, product):
+ * five "+1" clicks become one "+5", and a quantity change after them becomes a single
+ * absolute value. The buffer is flushed in JDBC batches inside one transaction every
+ * cart.write-behind.flush-interval-ms, or sooner once cart.write-behind.max-pending
+ * mutations are waiting.
+ *
+ * Reads go to the database and then apply the user's pending changes on top, so a user
+ * always sees their own writes. Reads wait while a flush is being written, so they never
+ * see a change both in the database and in the buffer. Checkout calls flushPendingChanges
+ * before loading the cart.
+ *
+ * A batch that fails is written again one user at a time, so a row one user's changes
+ * can't write (a product deleted since it was added) doesn't hold back everyone else's.
+ * Lines for products that no longer exist are dropped; changes that fail for any other
+ * reason go back into the buffer for the next flush.
+ */
+@Component
+@Primary // Takes over from MySqlShoppingCartDao when enabled
+@ConditionalOnExpression("'${cart.store:mysql}' == 'mysql' and ${cart.write-behind.enabled:false}")
+public class MySqlWriteBehindShoppingCartDao extends MySqlDaoBase implements ShoppingCartDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(MySqlWriteBehindShoppingCartDao.class);
+
+    private final MySqlShoppingCartDao delegate;
+    private final ProductDao productDao;
+    private final long flushIntervalMs;
+    private final int maxPending;
+
+    private final Object bufferLock = new Object();
+    private Map<Integer, PendingCart> buffer = new HashMap<>();
+    private int pendingMutations = 0;
+
+    // Readers share it; a flush takes it exclusively while its batch is written
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cart-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+
+    private final LongAdder mutationsReceived = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public MySqlWriteBehindShoppingCartDao(DataSource dataSource,
+                                           MySqlShoppingCartDao delegate,
+                                           ProductDao productDao,
+                                           @Value("${cart.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                           @Value("${cart.write-behind.max-pending:500}") int maxPending)
+    {
+        super(dataSource);
+        this.delegate = delegate;
+        this.productDao = productDao;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPending = maxPending;
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * Retrieves the user's cart from the database with their pending changes applied.
+     *
+     * @param userId the ID of the user
+     * @return the user's ShoppingCart
+     */
+    @Override
+    public ShoppingCart getByUserId(int userId)
+    {
+        flushLock.readLock().lock();
+        try
+        {
+            ShoppingCart stored = delegate.getByUserId(userId);
+
+            PendingCart pending = pendingFor(userId);
+            if (pending == null)
+                return stored;
+
+            ShoppingCart cart = new ShoppingCart();
+            // Each buffered mutation will bump the stored version by one when it is flushed
+            cart.setVersion(stored.getVersion() + pending.mutations);
+            if (!pending.cleared)
+            {
+                stored.getItems().values().forEach(cart::add);
+            }
+
+            pending.items.forEach((productId, change) -> {
+                ShoppingCartItem item = cart.get(productId);
+                int current = item == null ? 0 : item.getQuantity();
+                int quantity = change.absolute ? change.quantity : current + change.quantity;
+
+                if (quantity <= 0)
+                {
+                    cart.getItems().remove(productId);
+                    cart.setItems(cart.getItems()); // recompute the running total
+                }
+                else if (item != null)
+                {
+                    cart.setQuantity(productId, quantity);
+                }
+                else
+                {
+                    Product product = productDao.getById(productId);
+                    if (product != null)
+                    {
+                        ShoppingCartItem added = new ShoppingCartItem();
+                        added.setProduct(product);
+                        added.setQuantity(quantity);
+                        added.setDiscountPercent(BigDecimal.ZERO);
+                        cart.add(added);
+                    }
+                }
+            });
+
+            return cart;
+        }
+        finally
+        {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ShoppingCartDelta getDelta(int userId, int productId)
+    {
+        return ShoppingCartDelta.of(getByUserId(userId), productId);
+    }
+
+    @Override
+    public void addProductToCart(int userId, int productId)
+    {
+        record(userId, productId, false, 1);
+    }
+
+    @Override
+    public void clearCart(int userId)
+    {
+        synchronized (bufferLock)
+        {
+            PendingCart previous = buffer.get(userId);
+            PendingCart pending = new PendingCart();
+            pending.cleared = true;
+            pending.mutations = (previous == null ? 0 : previous.mutations) + 1;
+            buffer.put(userId, pending);
+            pendingMutations++;
+        }
+        mutationsReceived.increment();
+        flushIfFull();
+    }
+
+    @Override
+    public boolean existsInCart(int userId, int productId)
+    {
+        flushLock.readLock().lock();
+        try
+        {
+            PendingCart pending = pendingFor(userId);
+            if (pending != null)
+            {
+                PendingItem change = pending.items.get(productId);
+                if (change != null)
+                    return !change.absolute || change.quantity > 0;
+                if (pending.cleared)
+                    return false;
+            }
+
+            return delegate.existsInCart(userId, productId);
+        }
+        finally
+        {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateQuantity(int userId, int productId, int quantity)
+    {
+        if (!existsInCart(userId, productId))
+            throw new RuntimeException("No cart item found to update");
+
+        record(userId, productId, true, quantity);
+    }
+
+    /**
+     * Buffers every change as an absolute quantity; the flush writes them in the same transaction.
+     */
+    @Override
+    public void applyChanges(int userId, List<ShoppingCartChange> changes)
+    {
+        synchronized (bufferLock)
+        {
+            PendingCart pending = buffer.computeIfAbsent(userId, id -> new PendingCart());
+            for (ShoppingCartChange change : changes)
+            {
+                pending.items.put(change.getProductId(), new PendingItem(true, Math.max(0, change.getQuantity())));
+            }
+            pending.mutations++;
+            pendingMutations += changes.size();
+        }
+        mutationsReceived.add(changes.size());
+        flushIfFull();
+    }
+
+    /**
+     * Carts with buffered changes were touched recently, so only the database needs checking;
+     * a flush that lands afterwards refreshes last_touched.
+     */
+    @Override
+    public int deleteAbandonedCarts(int retentionDays, int batchSize)
+    {
+        return delegate.deleteAbandonedCarts(retentionDays, batchSize);
+    }
+
+    /**
+     * The order transaction deleted the stored cart. Changes buffered since checkout began
+     * are kept; they were made after the cart was read for the order.
+     */
+    @Override
+    public void afterCheckout(int userId)
+    {
+    }
+
+    @Override
+    public void flushPendingChanges(int userId)
+    {
+        boolean hasPending;
+        synchronized (bufferLock)
+        {
+            hasPending = buffer.containsKey(userId);
+        }
+
+        if (hasPending)
+        {
+            try
+            {
+                flush();
+            }
+            catch (RuntimeException e)
+            {
+                // The changes that failed may all be other users'
+                synchronized (bufferLock)
+                {
+                    if (buffer.containsKey(userId))
+                        throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return counters describing how well mutations are being coalesced
+     */
+    public Map<String, Object> getStats()
+    {
+        long mutations = mutationsReceived.sum();
+        long rows = rowsWritten.sum();
+        long flushCount = flushes.sum();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mutationsReceived", mutations);
+        stats.put("rowsWritten", rows);
+        stats.put("coalescingRatio", rows == 0 ? 0.0 : (double) mutations / rows);
+        stats.put("flushes", flushCount);
+        stats.put("averageFlushMs", flushCount == 0 ? 0.0 : flushNanos.sum() / 1_000_000.0 / flushCount);
+        stats.put("maxFlushMs", maxFlushNanos.get() / 1_000_000.0);
+        synchronized (bufferLock)
+        {
+            stats.put("pendingMutations", pendingMutations);
+        }
+        return stats;
+    }
+
+    /**
+     * Writes every buffered change to the database in one transaction. If that fails,
+     * each user's changes are written on their own; those that still fail go back into
+     * the buffer, in front of anything recorded since.
+     */
+    public void flush()
+    {
+        flushLock.writeLock().lock();
+        try
+        {
+            Map<Integer, PendingCart> batch;
+            synchronized (bufferLock)
+            {
+                if (buffer.isEmpty())
+                    return;
+
+                batch = buffer;
+                buffer = new HashMap<>();
+                pendingMutations = 0;
+            }
+
+            long start = System.nanoTime();
+            try
+            {
+                int rows = write(batch);
+                rowsWritten.add(rows);
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                logger.warn("Writing {} buffered cart(s) together failed; writing them one user at a time.", batch.size(), e);
+                Map<Integer, PendingCart> failed = writeEach(batch);
+                if (!failed.isEmpty())
+                {
+                    requeue(failed);
+                    throw new RuntimeException("Error flushing buffered cart changes", e);
+                }
+            }
+
+            long elapsed = System.nanoTime() - start;
+            flushes.increment();
+            flushNanos.add(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        finally
+        {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void flushQuietly()
+    {
+        flushQueued.set(false);
+        try
+        {
+            flush();
+        }
+        catch (Exception e)
+        {
+            logger.warn("Cart write-behind flush failed, will retry.", e);
+        }
+    }
+
+    private void flushIfFull()
+    {
+        boolean full;
+        synchronized (bufferLock)
+        {
+            full = pendingMutations >= maxPending;
+        }
+
+        if (full && flushQueued.compareAndSet(false, true))
+        {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void record(int userId, int productId, boolean absolute, int quantity)
+    {
+        synchronized (bufferLock)
+        {
+            PendingCart pending = buffer.computeIfAbsent(userId, id -> new PendingCart());
+            PendingItem change = pending.items.get(productId);
+
+            if (change == null)
+                pending.items.put(productId, new PendingItem(absolute, quantity));
+            else if (absolute)
+                pending.items.put(productId, new PendingItem(true, quantity));
+            else
+                change.quantity += quantity; // a delta on top of a delta or an absolute keeps its kind
+
+            pending.mutations++;
+            pendingMutations++;
+        }
+        mutationsReceived.increment();
+        flushIfFull();
+    }
+
+    private PendingCart pendingFor(int userId)
+    {
+        synchronized (bufferLock)
+        {
+            PendingCart pending = buffer.get(userId);
+            return pending == null ? null : pending.copy();
+        }
+    }
+
+    private void requeue(Map<Integer, PendingCart> batch)
+    {
+        synchronized (bufferLock)
+        {
+            Map<Integer, PendingCart> newer = buffer;
+            buffer = batch;
+
+            newer.forEach((userId, later) -> {
+                PendingCart earlier = buffer.get(userId);
+                if (earlier == null || later.cleared)
+                {
+                    if (earlier != null)
+                        later.mutations += earlier.mutations;
+                    buffer.put(userId, later);
+                    return;
+                }
+
+                earlier.mutations += later.mutations;
+
+                later.items.forEach((productId, change) -> {
+                    PendingItem before = earlier.items.get(productId);
+                    if (before == null || change.absolute)
+                        earlier.items.put(productId, change);
+                    else
+                        before.quantity += change.quantity;
+                });
+            });
+
+            for (PendingCart pending : buffer.values())
+            {
+                pendingMutations += Math.max(1, pending.items.size());
+            }
+        }
+    }
+
+    /**
+     * Writes each user's changes in a transaction of its own.
+     *
+     * @return the changes that could not be written and should be retried
+     */
+    private Map<Integer, PendingCart> writeEach(Map<Integer, PendingCart> batch)
+    {
+        Map<Integer, PendingCart> failed = new HashMap<>();
+        boolean unavailable = false;
+
+        for (Map.Entry<Integer, PendingCart> entry : batch.entrySet())
+        {
+            int userId = entry.getKey();
+            PendingCart pending = entry.getValue();
+
+            // Once the database itself is failing, keep the rest for the next flush
+            if (unavailable)
+            {
+                failed.put(userId, pending);
+                continue;
+            }
+
+            try
+            {
+                try
+                {
+                    rowsWritten.add(write(Map.of(userId, pending)));
+                }
+                catch (SQLException e)
+                {
+                    if (!isConstraintViolation(e))
+                        throw e;
+                    // These changes will never be written as they are
+                    if (!writeWithoutUnknownProducts(userId, pending))
+                        logger.error("Dropping buffered cart changes for user {} that can't be written.", userId, e);
+                }
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                unavailable = true;
+                failed.put(userId, pending);
+            }
+        }
+
+        return failed;
+    }
+
+    /**
+     * Writes a user's changes again after removing the lines for products that no
+     * longer exist.
+     *
+     * @return false if there were no such lines or the write still failed
+     * @throws RuntimeException if the products can't be looked up
+     */
+    private boolean writeWithoutUnknownProducts(int userId, PendingCart pending)
+    {
+        List<Integer> productIds = new ArrayList<>(pending.items.keySet());
+        Set<Integer> found = new HashSet<>();
+        productDao.getByIds(productIds).forEach(product -> found.add(product.getProductId()));
+        productIds.removeIf(found::contains);
+
+        if (productIds.isEmpty())
+            return false;
+
+        logger.warn("Dropping buffered cart lines for unknown product(s) {} of user {}.", productIds, userId);
+        productIds.forEach(pending.items::remove);
+
+        try
+        {
+            rowsWritten.add(write(Map.of(userId, pending)));
+            return true;
+        }
+        catch (SQLException e)
+        {
+            return false;
+        }
+    }
+
+    private static boolean isConstraintViolation(SQLException e)
+    {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    private int write(Map<Integer, PendingCart> batch) throws SQLException
+    {
+        String clearSql = "DELETE FROM shopping_cart WHERE user_id = ?";
+        String removeSql = "DELETE FROM shopping_cart WHERE user_id = ? AND product_id = ?";
+        String setSql = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+        String addSql = "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity)";
+        String versionSql = "INSERT INTO shopping_cart_headers (user_id, version, last_touched) VALUES (?, ?, NOW()) " +
+                "ON DUPLICATE KEY UPDATE version = version + VALUES(version), last_touched = NOW()";
+
+        int rows = 0;
+
+        try (Connection connection = getConnection();
+             PreparedStatement clear = connection.prepareStatement(clearSql);
+             PreparedStatement remove = connection.prepareStatement(removeSql);
+             PreparedStatement set = connection.prepareStatement(setSql);
+             PreparedStatement add = connection.prepareStatement(addSql);
+             PreparedStatement version = connection.prepareStatement(versionSql))
+        {
+            connection.setAutoCommit(false);
+
+            for (Map.Entry<Integer, PendingCart> entry : batch.entrySet())
+            {
+                int userId = entry.getKey();
+                PendingCart pending = entry.getValue();
+
+                version.setInt(1, userId);
+                version.setInt(2, pending.mutations);
+                version.addBatch();
+
+                if (pending.cleared)
+                {
+                    clear.setInt(1, userId);
+                    clear.addBatch();
+                    rows++;
+                }
+
+                for (Map.Entry<Integer, PendingItem> item : pending.items.entrySet())
+                {
+                    PendingItem change = item.getValue();
+                    PreparedStatement statement;
+
+                    if (change.absolute && change.quantity <= 0)
+                    {
+                        remove.setInt(1, userId);
+                        remove.setInt(2, item.getKey());
+                        remove.addBatch();
+                        rows++;
+                        continue;
+                    }
+
+                    statement = change.absolute ? set : add;
+                    statement.setInt(1, userId);
+                    statement.setInt(2, item.getKey());
+                    statement.setInt(3, change.quantity);
+                    statement.addBatch();
+                    rows++;
+                }
+            }
+
+            // Clears first so items added after a clear in the same window survive it
+            clear.executeBatch();
+            remove.executeBatch();
+            set.executeBatch();
+            add.executeBatch();
+            version.executeBatch();
+
+            connection.commit();
+        }
+
+        return rows;
+    }
+
+    private static class PendingCart
+    {
+        private boolean cleared;
+        private int mutations;
+        private final Map<Integer, PendingItem> items = new HashMap<>();
+
+        private PendingCart copy()
+        {
+            PendingCart copy = new PendingCart();
+            copy.cleared = cleared;
+            copy.mutations = mutations;
+            items.forEach((productId, change) -> copy.items.put(productId, new PendingItem(change.absolute, change.quantity)));
+            return copy;
+        }
+    }
+
+    private static class PendingItem
+    {
+        private final boolean absolute;
+        private int quantity;
+
+        private PendingItem(boolean absolute, int quantity)
+        {
+            this.absolute = absolute;
+            this.quantity = quantity;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.models;
+
+public class CacheInvalidation
+{
+    // GET /categories and the category's product listing
+    public static final String CATEGORY = "category";
+    // The category's product listing only, after a product in it was written
+    public static final String CATEGORY_PRODUCTS = "category-products";
+    // Everything, when a node can't tell what changed (startup, or a gap in the log)
+    public static final String CATALOG = "catalog";
+
+    private long invalidationId;
+    private long version;
+    private String entity;
+    private int entityId;
+    private String nodeId;
+
+    public CacheInvalidation()
+    {
+    }
+
+    /**
+     * @return an entry that evicts everything cached up to the given version
+     */
+    public static CacheInvalidation catalog(long version)
+    {
+        return new CacheInvalidation(0, version, CATALOG, 0, null);
+    }
+
+    public CacheInvalidation(long invalidationId, long version, String entity, int entityId, String nodeId)
+    {
+        this.invalidationId = invalidationId;
+        this.version = version;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.nodeId = nodeId;
+    }
+
+    public long getInvalidationId()
+    {
+        return invalidationId;
+    }
+
+    public void setInvalidationId(long invalidationId)
+    {
+        this.invalidationId = invalidationId;
+    }
+
+    /**
+     * @return the catalog version of the write that recorded this entry
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
+    public String getEntity()
+    {
+        return entity;
+    }
+
+    public void setEntity(String entity)
+    {
+        this.entity = entity;
+    }
+
+    public int getEntityId()
+    {
+        return entityId;
+    }
+
+    public void setEntityId(int entityId)
+    {
+        this.entityId = entityId;
+    }
+
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId)
+    {
+        this.nodeId = nodeId;
+    }
+}
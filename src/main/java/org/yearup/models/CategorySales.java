@@ -0,0 +1,63 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+
+public class CategorySales
+{
+    private int categoryId;
+    private String name;
+    private int units;
+    private BigDecimal revenue;
+
+    public CategorySales()
+    {
+    }
+
+    public CategorySales(int categoryId, String name, int units, BigDecimal revenue)
+    {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.units = units;
+        this.revenue = revenue;
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(int categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public int getUnits()
+    {
+        return units;
+    }
+
+    public void setUnits(int units)
+    {
+        this.units = units;
+    }
+
+    public BigDecimal getRevenue()
+    {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue)
+    {
+        this.revenue = revenue;
+    }
+}
@@ -0,0 +1,76 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public class DailySales
+{
+    private LocalDate date;
+    private int orderCount;
+    private int units;
+    private BigDecimal revenue;
+    private BigDecimal shipping;
+
+    public DailySales()
+    {
+    }
+
+    public DailySales(LocalDate date, int orderCount, int units, BigDecimal revenue, BigDecimal shipping)
+    {
+        this.date = date;
+        this.orderCount = orderCount;
+        this.units = units;
+        this.revenue = revenue;
+        this.shipping = shipping;
+    }
+
+    public LocalDate getDate()
+    {
+        return date;
+    }
+
+    public void setDate(LocalDate date)
+    {
+        this.date = date;
+    }
+
+    public int getOrderCount()
+    {
+        return orderCount;
+    }
+
+    public void setOrderCount(int orderCount)
+    {
+        this.orderCount = orderCount;
+    }
+
+    public int getUnits()
+    {
+        return units;
+    }
+
+    public void setUnits(int units)
+    {
+        this.units = units;
+    }
+
+    public BigDecimal getRevenue()
+    {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue)
+    {
+        this.revenue = revenue;
+    }
+
+    public BigDecimal getShipping()
+    {
+        return shipping;
+    }
+
+    public void setShipping(BigDecimal shipping)
+    {
+        this.shipping = shipping;
+    }
+}
@@ -0,0 +1,64 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Helpers for money held as a long number of cents.
+ * The cart and checkout work in cents; BigDecimal is only created when
+ * reading from or writing to the database and JSON.
+ */
+public final class Money
+{
+    private Money()
+    {
+    }
+
+    /**
+     * @param amount a money amount, may be null
+     * @return the amount in cents, rounded half-up, or 0 for null
+     */
+    public static long toCents(BigDecimal amount)
+    {
+        if (amount == null)
+            return 0;
+
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * @param cents an amount in cents
+     * @return the amount as a BigDecimal with two decimal places
+     */
+    public static BigDecimal fromCents(long cents)
+    {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * @param fraction a discount as a fraction (0.10 for 10%), may be null
+     * @return the discount in basis points (1/100 of a percent)
+     */
+    public static int toBasisPoints(BigDecimal fraction)
+    {
+        if (fraction == null)
+            return 0;
+
+        return fraction.movePointRight(4).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    /**
+     * Applies a discount to an amount, rounding the discount half-up to the cent.
+     *
+     * @param cents the amount in cents (not negative)
+     * @param basisPoints the discount in basis points
+     * @return the discounted amount in cents
+     */
+    public static long discount(long cents, int basisPoints)
+    {
+        if (basisPoints == 0)
+            return cents;
+
+        return cents - (cents * basisPoints + 5_000) / 10_000;
+    }
+}
@@ -2,6 +2,8 @@ package org.yearup.models;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Order { //create
     private int id;
@@ -13,6 +15,7 @@ public class Order { //create
     private String zip;
     private BigDecimal shippingAmount;
     private BigDecimal totalAmount;
+    private List<OrderLineItem> lineItems = new ArrayList<>();
 
     public Order() {
     }
@@ -95,6 +98,14 @@ public class Order { //create
         this.zip = zip;
     }
 
+    public List<OrderLineItem> getLineItems() {
+        return lineItems;
+    }
+
+    public void setLineItems(List<OrderLineItem> lineItems) {
+        this.lineItems = lineItems;
+    }
+
     public BigDecimal getShippingAmount() {
         return shippingAmount;
     }
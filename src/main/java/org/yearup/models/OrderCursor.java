@@ -0,0 +1,64 @@
+package org.yearup.models;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a user's order history: the (date, order id) of the last order on
+ * the previous page. Clients get it as an opaque string and send it back unchanged.
+ */
+public class OrderCursor
+{
+    private final LocalDateTime date;
+    private final int orderId;
+
+    public OrderCursor(LocalDateTime date, int orderId)
+    {
+        this.date = date;
+        this.orderId = orderId;
+    }
+
+    public static OrderCursor after(Order order)
+    {
+        return new OrderCursor(order.getOrderDate(), order.getId());
+    }
+
+    public LocalDateTime getDate()
+    {
+        return date;
+    }
+
+    public int getOrderId()
+    {
+        return orderId;
+    }
+
+    public String encode()
+    {
+        String raw = date + "|" + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by encode
+     */
+    public static OrderCursor decode(String cursor)
+    {
+        try
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0)
+                throw new IllegalArgumentException("Invalid cursor");
+
+            return new OrderCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                                   Integer.parseInt(raw.substring(separator + 1)));
+        }
+        catch (DateTimeParseException e)
+        {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
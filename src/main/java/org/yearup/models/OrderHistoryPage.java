@@ -0,0 +1,43 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class OrderHistoryPage
+{
+    private List<Order> orders = new ArrayList<>();
+    private String nextCursor;
+
+    public OrderHistoryPage()
+    {
+    }
+
+    public OrderHistoryPage(List<Order> orders, String nextCursor)
+    {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Order> getOrders()
+    {
+        return orders;
+    }
+
+    public void setOrders(List<Order> orders)
+    {
+        this.orders = orders;
+    }
+
+    /**
+     * @return the cursor for the next page, or null if this is the last one
+     */
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor)
+    {
+        this.nextCursor = nextCursor;
+    }
+}
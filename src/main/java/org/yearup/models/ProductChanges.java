@@ -0,0 +1,76 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductChanges
+{
+    private long version;
+    private boolean hasMore;
+    private boolean resyncRequired;
+    private List<Product> changed = new ArrayList<>();
+    private List<Integer> deleted = new ArrayList<>();
+
+    public ProductChanges()
+    {
+    }
+
+    public ProductChanges(long version)
+    {
+        this.version = version;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
+    public boolean isHasMore()
+    {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore)
+    {
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * @return true if entries after the requested version were pruned; the caller must
+     * reload the catalog and continue from version
+     */
+    public boolean isResyncRequired()
+    {
+        return resyncRequired;
+    }
+
+    public void setResyncRequired(boolean resyncRequired)
+    {
+        this.resyncRequired = resyncRequired;
+    }
+
+    public List<Product> getChanged()
+    {
+        return changed;
+    }
+
+    public void setChanged(List<Product> changed)
+    {
+        this.changed = changed;
+    }
+
+    public List<Integer> getDeleted()
+    {
+        return deleted;
+    }
+
+    public void setDeleted(List<Integer> deleted)
+    {
+        this.deleted = deleted;
+    }
+}
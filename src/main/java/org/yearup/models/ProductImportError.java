@@ -0,0 +1,40 @@
+package org.yearup.models;
+
+public class ProductImportError
+{
+    private long line;
+    private String message;
+
+    public ProductImportError()
+    {
+    }
+
+    public ProductImportError(long line, String message)
+    {
+        this.line = line;
+        this.message = message;
+    }
+
+    /**
+     * @return the line of the input the row starts on, counting the CSV header as line 1
+     */
+    public long getLine()
+    {
+        return line;
+    }
+
+    public void setLine(long line)
+    {
+        this.line = line;
+    }
+
+    public String getMessage()
+    {
+        return message;
+    }
+
+    public void setMessage(String message)
+    {
+        this.message = message;
+    }
+}
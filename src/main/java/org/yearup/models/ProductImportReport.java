@@ -0,0 +1,106 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductImportReport
+{
+    private long rowsRead;
+    private long inserted;
+    private long updated;
+    private long failed;
+    private List<ProductImportError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+
+    public ProductImportReport()
+    {
+    }
+
+    public long getRowsRead()
+    {
+        return rowsRead;
+    }
+
+    public void setRowsRead(long rowsRead)
+    {
+        this.rowsRead = rowsRead;
+    }
+
+    public long getInserted()
+    {
+        return inserted;
+    }
+
+    public void setInserted(long inserted)
+    {
+        this.inserted = inserted;
+    }
+
+    public long getUpdated()
+    {
+        return updated;
+    }
+
+    public void setUpdated(long updated)
+    {
+        this.updated = updated;
+    }
+
+    public long getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed(long failed)
+    {
+        this.failed = failed;
+    }
+
+    /**
+     * @return the first failures, in input order; see isErrorsTruncated
+     */
+    public List<ProductImportError> getErrors()
+    {
+        return errors;
+    }
+
+    public void setErrors(List<ProductImportError> errors)
+    {
+        this.errors = errors;
+    }
+
+    /**
+     * @return true if more rows failed than are listed in errors
+     */
+    public boolean isErrorsTruncated()
+    {
+        return errorsTruncated;
+    }
+
+    public void setErrorsTruncated(boolean errorsTruncated)
+    {
+        this.errorsTruncated = errorsTruncated;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis)
+    {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRowsPerSecond()
+    {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond)
+    {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+}
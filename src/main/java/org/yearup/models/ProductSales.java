@@ -0,0 +1,75 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+
+public class ProductSales
+{
+    private int productId;
+    private String name;
+    private int categoryId;
+    private int units;
+    private BigDecimal revenue;
+
+    public ProductSales()
+    {
+    }
+
+    public ProductSales(int productId, String name, int categoryId, int units, BigDecimal revenue)
+    {
+        this.productId = productId;
+        this.name = name;
+        this.categoryId = categoryId;
+        this.units = units;
+        this.revenue = revenue;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(int categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public int getUnits()
+    {
+        return units;
+    }
+
+    public void setUnits(int units)
+    {
+        this.units = units;
+    }
+
+    public BigDecimal getRevenue()
+    {
+        return revenue;
+    }
+
+    public void setRevenue(BigDecimal revenue)
+    {
+        this.revenue = revenue;
+    }
+}
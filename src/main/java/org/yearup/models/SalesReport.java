@@ -0,0 +1,74 @@
+package org.yearup.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SalesReport
+{
+    private LocalDate from;
+    private LocalDate to;
+    private List<DailySales> days = new ArrayList<>();
+    private List<CategorySales> categories = new ArrayList<>();
+    private List<ProductSales> topProducts = new ArrayList<>();
+
+    public SalesReport()
+    {
+    }
+
+    public SalesReport(LocalDate from, LocalDate to)
+    {
+        this.from = from;
+        this.to = to;
+    }
+
+    public LocalDate getFrom()
+    {
+        return from;
+    }
+
+    public void setFrom(LocalDate from)
+    {
+        this.from = from;
+    }
+
+    public LocalDate getTo()
+    {
+        return to;
+    }
+
+    public void setTo(LocalDate to)
+    {
+        this.to = to;
+    }
+
+    public List<DailySales> getDays()
+    {
+        return days;
+    }
+
+    public void setDays(List<DailySales> days)
+    {
+        this.days = days;
+    }
+
+    public List<CategorySales> getCategories()
+    {
+        return categories;
+    }
+
+    public void setCategories(List<CategorySales> categories)
+    {
+        this.categories = categories;
+    }
+
+    public List<ProductSales> getTopProducts()
+    {
+        return topProducts;
+    }
+
+    public void setTopProducts(List<ProductSales> topProducts)
+    {
+        this.topProducts = topProducts;
+    }
+}
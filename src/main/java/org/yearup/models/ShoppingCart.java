@@ -1,5 +1,7 @@
 package org.yearup.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
@@ -8,6 +10,12 @@ public class ShoppingCart
 {
     private Map<Integer, ShoppingCartItem> items = new HashMap<>();
 
+    // Bumped on every change to the stored cart; lets clients spot missed updates
+    private long version = 0;
+
+    // Running total in cents, kept up to date by add/setQuantity so reading it is free
+    private long totalCents = 0;
+
     public Map<Integer, ShoppingCartItem> getItems()
     {
         return items;
@@ -16,6 +24,22 @@ public class ShoppingCart
     public void setItems(Map<Integer, ShoppingCartItem> items)
     {
         this.items = items;
+
+        totalCents = 0;
+        for (ShoppingCartItem item : items.values())
+        {
+            totalCents += item.getLineTotalCents();
+        }
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
     }
 
     public boolean contains(int productId)
@@ -23,9 +47,18 @@ public class ShoppingCart
         return items.containsKey(productId);
     }
 
+    /**
+     * Adds (or replaces) an item. The item should be fully populated first;
+     * use setQuantity to change the quantity of an item already in the cart.
+     */
     public void add(ShoppingCartItem item)
     {
-        items.put(item.getProductId(), item);
+        ShoppingCartItem previous = items.put(item.getProductId(), item);
+        if (previous != null)
+        {
+            totalCents -= previous.getLineTotalCents();
+        }
+        totalCents += item.getLineTotalCents();
     }
 
     public ShoppingCartItem get(int productId)
@@ -33,14 +66,32 @@ public class ShoppingCart
         return items.get(productId);
     }
 
-    public BigDecimal getTotal()
+    /**
+     * Changes the quantity of an item in the cart and keeps the total in step.
+     *
+     * @param productId the product to change
+     * @param quantity the new quantity
+     */
+    public void setQuantity(int productId, int quantity)
     {
-        BigDecimal total = items.values()
-                                .stream()
-                                .map(i -> i.getLineTotal())
-                                .reduce( BigDecimal.ZERO, (lineTotal, subTotal) -> subTotal.add(lineTotal));
+        ShoppingCartItem item = items.get(productId);
+        if (item == null)
+            return;
 
-        return total;
+        totalCents -= item.getLineTotalCents();
+        item.setQuantity(quantity);
+        totalCents += item.getLineTotalCents();
+    }
+
+    @JsonIgnore
+    public long getTotalCents()
+    {
+        return totalCents;
+    }
+
+    public BigDecimal getTotal()
+    {
+        return Money.fromCents(totalCents);
     }
 
 }
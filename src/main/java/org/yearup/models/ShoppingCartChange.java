@@ -0,0 +1,41 @@
+package org.yearup.models;
+
+/**
+ * One line of a bulk cart update: the quantity a product should end up with.
+ * A quantity of 0 removes the product from the cart.
+ */
+public class ShoppingCartChange
+{
+    private int productId;
+    private int quantity;
+
+    public ShoppingCartChange()
+    {
+    }
+
+    public ShoppingCartChange(int productId, int quantity)
+    {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity)
+    {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,91 @@
+package org.yearup.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+
+/**
+ * The result of a single cart mutation: the one line that changed plus the new cart totals.
+ * If the client's last known version + 1 doesn't match the version here, it missed
+ * a change (another tab, another device) and should fetch the full cart.
+ */
+public class ShoppingCartDelta
+{
+    private long version;
+    private ShoppingCartItem item;
+    private int itemCount;
+    private long totalCents;
+
+    public ShoppingCartDelta()
+    {
+    }
+
+    public ShoppingCartDelta(long version, ShoppingCartItem item, int itemCount, long totalCents)
+    {
+        this.version = version;
+        this.item = item;
+        this.itemCount = itemCount;
+        this.totalCents = totalCents;
+    }
+
+    /**
+     * Builds a delta from a fully loaded cart.
+     *
+     * @param cart the cart after the mutation
+     * @param productId the product that changed
+     * @return the delta for that product
+     */
+    public static ShoppingCartDelta of(ShoppingCart cart, int productId)
+    {
+        return new ShoppingCartDelta(cart.getVersion(), cart.get(productId), cart.getItems().size(), cart.getTotalCents());
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion(long version)
+    {
+        this.version = version;
+    }
+
+    /**
+     * @return the changed line, or null if the product is no longer in the cart
+     */
+    public ShoppingCartItem getItem()
+    {
+        return item;
+    }
+
+    public void setItem(ShoppingCartItem item)
+    {
+        this.item = item;
+    }
+
+    public int getItemCount()
+    {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount)
+    {
+        this.itemCount = itemCount;
+    }
+
+    @JsonIgnore
+    public long getTotalCents()
+    {
+        return totalCents;
+    }
+
+    public void setTotalCents(long totalCents)
+    {
+        this.totalCents = totalCents;
+    }
+
+    public BigDecimal getTotal()
+    {
+        return Money.fromCents(totalCents);
+    }
+}
@@ -10,6 +10,11 @@ public class ShoppingCartItem
     private int quantity = 1;
     private BigDecimal discountPercent = BigDecimal.ZERO;
 
+    // Money is kept in cents so totals never allocate; BigDecimal only leaves through the getters
+    private long unitPriceCents = 0;
+    private int discountBasisPoints = 0;
+    private long lineTotalCents = 0;
+
 
     public Product getProduct()
     {
@@ -19,6 +24,8 @@ public class ShoppingCartItem
     public void setProduct(Product product)
     {
         this.product = product;
+        this.unitPriceCents = product == null ? 0 : Money.toCents(product.getPrice());
+        recalculate();
     }
 
     public int getQuantity()
@@ -29,6 +36,7 @@ public class ShoppingCartItem
     public void setQuantity(int quantity)
     {
         this.quantity = quantity;
+        recalculate();
     }
 
     public BigDecimal getDiscountPercent()
@@ -39,6 +47,8 @@ public class ShoppingCartItem
     public void setDiscountPercent(BigDecimal discountPercent)
     {
         this.discountPercent = discountPercent;
+        this.discountBasisPoints = Money.toBasisPoints(discountPercent);
+        recalculate();
     }
 
     @JsonIgnore
@@ -47,14 +57,25 @@ public class ShoppingCartItem
         return this.product.getProductId();
     }
 
-    public BigDecimal getLineTotal()
+    @JsonIgnore
+    public long getUnitPriceCents()
+    {
+        return unitPriceCents;
+    }
+
+    @JsonIgnore
+    public long getLineTotalCents()
     {
-        BigDecimal basePrice = product.getPrice();
-        BigDecimal quantity = new BigDecimal(this.quantity);
+        return lineTotalCents;
+    }
 
-        BigDecimal subTotal = basePrice.multiply(quantity);
-        BigDecimal discountAmount = subTotal.multiply(discountPercent);
+    public BigDecimal getLineTotal()
+    {
+        return Money.fromCents(lineTotalCents);
+    }
 
-        return subTotal.subtract(discountAmount);
+    private void recalculate()
+    {
+        lineTotalCents = Money.discount(unitPriceCents * quantity, discountBasisPoints);
     }
 }
@@ -16,6 +16,10 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.util.Arrays;
 import java.util.Collection;
@@ -86,6 +90,28 @@ public class TokenProvider implements InitializingBean
         return new UsernamePasswordAuthenticationToken(principal, token, authorities);
     }
 
+    /**
+     * Derives a separate HMAC key from the JWT secret for another kind of signed token,
+     * so a token of one kind can never be passed off as another.
+     *
+     * @param purpose a fixed label for the token kind, e.g. "guest-cart"
+     * @return a 256-bit key
+     */
+    public Key deriveKey(String purpose)
+    {
+        try
+        {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            byte[] derived = mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+            return new SecretKeySpec(derived, "HmacSHA256");
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Unable to derive key for " + purpose, e);
+        }
+    }
+
     public boolean validateToken(String authToken)
     {
         try
@@ -0,0 +1,124 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ShoppingCartDao;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Deletes carts nobody has touched for cart.eviction.retention-days.
+ *
+ * Work is done in chunks of cart.eviction.batch-size carts, each its own short
+ * transaction, with a pause between chunks so the job never holds locks for long
+ * or starves regular traffic. A run stops after cart.eviction.max-batches chunks
+ * and picks up where it left off next time.
+ *
+ * The schedule only hands a run to the job's own thread, so the pauses never hold
+ * up the shared scheduler thread the other background jobs run on.
+ */
+@Component
+public class AbandonedCartEvictionJob
+{
+    private static final Logger logger = LoggerFactory.getLogger(AbandonedCartEvictionJob.class);
+
+    private final ShoppingCartDao shoppingCartDao;
+    private final boolean enabled;
+    private final int retentionDays;
+    private final int batchSize;
+    private final long pauseMs;
+    private final int maxBatches;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "abandoned-cart-eviction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public AbandonedCartEvictionJob(ShoppingCartDao shoppingCartDao,
+                                    @Value("${cart.eviction.enabled:true}") boolean enabled,
+                                    @Value("${cart.eviction.retention-days:30}") int retentionDays,
+                                    @Value("${cart.eviction.batch-size:500}") int batchSize,
+                                    @Value("${cart.eviction.pause-ms:200}") long pauseMs,
+                                    @Value("${cart.eviction.max-batches:1000}") int maxBatches)
+    {
+        this.shoppingCartDao = shoppingCartDao;
+        this.enabled = enabled;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.maxBatches = maxBatches;
+    }
+
+    @Scheduled(initialDelayString = "${cart.eviction.interval-ms:3600000}",
+               fixedDelayString = "${cart.eviction.interval-ms:3600000}")
+    public void run()
+    {
+        // A run still going from last time just carries on
+        if (enabled && running.compareAndSet(false, true))
+        {
+            worker.execute(this::evictQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        worker.shutdownNow();
+    }
+
+    private void evictQuietly()
+    {
+        try
+        {
+            int deleted = evict(retentionDays);
+            if (deleted > 0)
+            {
+                logger.info("Deleted {} abandoned cart(s).", deleted);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e)
+        {
+            logger.warn("Abandoned cart eviction failed.", e);
+        }
+        finally
+        {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Deletes carts untouched for the given number of days, chunk by chunk.
+     *
+     * @param retentionDays carts last touched longer ago than this are deleted
+     * @return how many carts were deleted
+     */
+    public int evict(int retentionDays) throws InterruptedException
+    {
+        int total = 0;
+
+        for (int batch = 0; batch < maxBatches; batch++)
+        {
+            int deleted = shoppingCartDao.deleteAbandonedCarts(retentionDays, batchSize);
+            total += deleted;
+
+            if (deleted < batchSize)
+                break;
+
+            Thread.sleep(pauseMs);
+        }
+
+        return total;
+    }
+}
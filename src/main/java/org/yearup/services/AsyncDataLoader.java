@@ -0,0 +1,82 @@
+package org.yearup.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent DAO reads concurrently so a request waits for the slowest one
+ * instead of the sum of all of them.
+ *
+ * Loads go to a fixed pool of async.dao.threads threads with a queue of
+ * async.dao.queue-capacity. When both are full the request thread runs the load
+ * itself, so under overload requests fall back to loading sequentially rather than
+ * piling work onto the connection pool. Each load records its duration in the
+ * request's StageTimings.
+ */
+@Component
+public class AsyncDataLoader
+{
+    private final ThreadPoolExecutor executor;
+
+    public AsyncDataLoader(@Value("${async.dao.threads:16}") int threads,
+                           @Value("${async.dao.queue-capacity:256}") int queueCapacity)
+    {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "dao-async-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts a load on the pool.
+     *
+     * @param stage the name reported in the Server-Timing header
+     * @param timings the request's timings
+     * @param loader the DAO call
+     * @return completes with the loader's result
+     */
+    public <T> CompletableFuture<T> load(String stage, StageTimings timings, Supplier<T> loader)
+    {
+        return CompletableFuture.supplyAsync(() -> timings.time(stage, loader), executor);
+    }
+
+    /**
+     * Waits for a load, rethrowing its exception as-is rather than wrapped.
+     */
+    public static <T> T join(CompletableFuture<T> future)
+    {
+        try
+        {
+            return future.join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,295 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.SalesReportDao;
+import org.yearup.models.CategorySales;
+import org.yearup.models.ProductSales;
+import org.yearup.util.CountMinSketch;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Best-selling products per category, kept in memory from the checkouts themselves.
+ *
+ * Units sold are counted in one count-min sketch per day for the last seven days,
+ * so memory does not grow with the number of products. Each category (and the
+ * whole catalog, under ALL_CATEGORIES) keeps a min-heap of its bestsellers.top-k
+ * leading products for today and for the week; a sale updates the sketch and the
+ * two heaps, and a read just copies a heap. When the day rolls over, the oldest
+ * day's sketch is cleared and the week heaps are re-scored without it.
+ *
+ * Counts are estimates: a product can rank slightly high when it shares sketch
+ * counters with others, never low. On startup the week is seeded from the sales
+ * rollups so a restart doesn't empty the rails.
+ */
+@Component
+public class BestSellers
+{
+    public static final int ALL_CATEGORIES = 0;
+    private static final int DAYS = 7;
+
+    private static final Logger logger = LoggerFactory.getLogger(BestSellers.class);
+
+    public enum Window { DAY, WEEK }
+
+    private final SalesReportDao salesReportDao;
+    private final Clock clock;
+    private final int topK;
+
+    // Slot for a day is its epoch day modulo 7; slots older than a week are cleared on rollover
+    private final CountMinSketch[] days = new CountMinSketch[DAYS];
+    private final Map<Integer, Leaders> categories = new HashMap<>();
+    private LocalDate today;
+
+    public BestSellers(SalesReportDao salesReportDao,
+                       @Value("${bestsellers.top-k:50}") int topK,
+                       @Value("${bestsellers.sketch-depth:4}") int sketchDepth,
+                       @Value("${bestsellers.sketch-width:2048}") int sketchWidth)
+    {
+        this(salesReportDao, Clock.systemDefaultZone(), topK, sketchDepth, sketchWidth);
+    }
+
+    BestSellers(SalesReportDao salesReportDao, Clock clock, int topK, int sketchDepth, int sketchWidth)
+    {
+        this.salesReportDao = salesReportDao;
+        this.clock = clock;
+        this.topK = topK;
+        for (int i = 0; i < DAYS; i++)
+        {
+            days[i] = new CountMinSketch(sketchDepth, sketchWidth);
+        }
+        this.today = LocalDate.now(clock);
+    }
+
+    /**
+     * Seeds the last seven days from the sales rollups: each day's catalog-wide
+     * leaders plus each category's own, so a category whose products never make the
+     * catalog-wide top still gets its rail back. A failure only leaves the rails
+     * empty until new orders come in.
+     */
+    @PostConstruct
+    public void warmUp()
+    {
+        try
+        {
+            LocalDate day = LocalDate.now(clock);
+            for (int i = DAYS - 1; i >= 0; i--)
+            {
+                LocalDate date = day.minusDays(i);
+
+                // A product can lead both lists; count its units once
+                Map<Integer, ProductSales> leaders = new HashMap<>();
+                for (ProductSales sales : salesReportDao.getTopProducts(date, date, topK * 4))
+                {
+                    leaders.put(sales.getProductId(), sales);
+                }
+                for (CategorySales category : salesReportDao.getByCategory(date, date))
+                {
+                    for (ProductSales sales : salesReportDao.getTopProducts(date, date, category.getCategoryId(), topK * 4))
+                    {
+                        leaders.put(sales.getProductId(), sales);
+                    }
+                }
+
+                for (ProductSales sales : leaders.values())
+                {
+                    record(date, sales.getProductId(), sales.getCategoryId(), sales.getUnits());
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Seeding best sellers from the sales rollups failed.", e);
+        }
+    }
+
+    /**
+     * Counts units sold in a committed order.
+     */
+    public void record(int productId, int categoryId, int quantity)
+    {
+        record(LocalDate.now(clock), productId, categoryId, quantity);
+    }
+
+    /**
+     * @param categoryId the category, or ALL_CATEGORIES
+     * @param limit the most products to return; at most bestsellers.top-k are tracked
+     * @return product ids, best-selling first
+     */
+    public synchronized List<Integer> top(int categoryId, Window window, int limit)
+    {
+        rollover(LocalDate.now(clock));
+
+        Leaders leaders = categories.get(categoryId);
+        if (leaders == null)
+            return List.of();
+
+        return (window == Window.DAY ? leaders.day : leaders.week).top(limit);
+    }
+
+    public int getTopK()
+    {
+        return topK;
+    }
+
+    private synchronized void record(LocalDate date, int productId, int categoryId, int quantity)
+    {
+        rollover(LocalDate.now(clock));
+
+        long age = ChronoUnit.DAYS.between(date, today);
+        if (age < 0 || age >= DAYS || quantity <= 0)
+            return;
+
+        int dayCount = slot(date).add(productId, quantity);
+        int weekCount = weekEstimate(productId);
+
+        for (int category : new int[] { ALL_CATEGORIES, categoryId })
+        {
+            Leaders leaders = categories.computeIfAbsent(category, c -> new Leaders(topK));
+            if (age == 0)
+                leaders.day.offer(productId, dayCount);
+            leaders.week.offer(productId, weekCount);
+        }
+    }
+
+    private void rollover(LocalDate now)
+    {
+        if (!now.isAfter(today))
+            return;
+
+        long elapsed = Math.min(DAYS, ChronoUnit.DAYS.between(today, now));
+        for (long i = 1; i <= elapsed; i++)
+        {
+            slot(today.plusDays(i)).clear();
+        }
+        today = now;
+
+        for (Leaders leaders : categories.values())
+        {
+            leaders.day.clear();
+            leaders.week.rescore(this::weekEstimate);
+        }
+    }
+
+    private CountMinSketch slot(LocalDate date)
+    {
+        return days[(int) Math.floorMod(date.toEpochDay(), DAYS)];
+    }
+
+    private int weekEstimate(int productId)
+    {
+        int total = 0;
+        for (CountMinSketch day : days)
+        {
+            total += day.estimate(productId);
+        }
+        return total;
+    }
+
+    private static class Leaders
+    {
+        private final TopK day;
+        private final TopK week;
+
+        private Leaders(int capacity)
+        {
+            this.day = new TopK(capacity);
+            this.week = new TopK(capacity);
+        }
+    }
+
+    /**
+     * The capacity highest-counted products, in a min-heap so the weakest one is
+     * the one compared against (and replaced by) a rising product.
+     */
+    private static class TopK
+    {
+        private final int capacity;
+        private final Map<Integer, Entry> entries = new HashMap<>();
+        private final PriorityQueue<Entry> heap = new PriorityQueue<>(Comparator.comparingInt((Entry e) -> e.count));
+
+        private TopK(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        private void offer(int productId, int count)
+        {
+            Entry entry = entries.get(productId);
+            if (entry != null)
+            {
+                heap.remove(entry);
+                entry.count = count;
+                heap.add(entry);
+                return;
+            }
+
+            if (entries.size() >= capacity)
+            {
+                if (heap.peek().count >= count)
+                    return;
+                entries.remove(heap.poll().productId);
+            }
+
+            entry = new Entry(productId, count);
+            entries.put(productId, entry);
+            heap.add(entry);
+        }
+
+        private void rescore(IntUnaryOperator estimate)
+        {
+            List<Entry> current = new ArrayList<>(entries.values());
+            clear();
+            for (Entry entry : current)
+            {
+                int count = estimate.applyAsInt(entry.productId);
+                if (count > 0)
+                    offer(entry.productId, count);
+            }
+        }
+
+        private void clear()
+        {
+            entries.clear();
+            heap.clear();
+        }
+
+        private List<Integer> top(int limit)
+        {
+            List<Entry> sorted = new ArrayList<>(entries.values());
+            sorted.sort(Comparator.comparingInt((Entry e) -> e.count).reversed().thenComparingInt(e -> e.productId));
+
+            List<Integer> productIds = new ArrayList<>(Math.min(limit, sorted.size()));
+            for (int i = 0; i < sorted.size() && i < limit; i++)
+            {
+                productIds.add(sorted.get(i).productId);
+            }
+            return productIds;
+        }
+    }
+
+    private static class Entry
+    {
+        private final int productId;
+        private int count;
+
+        private Entry(int productId, int count)
+        {
+            this.productId = productId;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CacheInvalidationDao;
+import org.yearup.models.CacheInvalidation;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps this node's catalog caches coherent with writes made on other nodes.
+ *
+ * Every poll reads the shared catalog version and then the cache_invalidations rows
+ * recorded above the last version this node applied, in version order. Versions are
+ * allocated under a row lock and commit in order, so once the shared version has been
+ * read every row at or below it is visible: nothing committed late can slip behind
+ * the poll. Only the entries named by other nodes' rows are evicted; this node's own
+ * writes were applied when they committed.
+ *
+ * If the rows don't reach the shared version (pruned before this node saw them, or
+ * more than one poll's worth), the whole catalog cache is treated as stale instead.
+ * The version is read once at startup too, so a fresh node starts with the same ETags
+ * as the rest of the cluster. Staleness is bounded by
+ * catalog.invalidation.poll-interval-ms plus the cache rebuild time.
+ */
+@Component
+public class CacheInvalidationPoller
+{
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationPoller.class);
+
+    static final int BATCH_SIZE = 1000;
+
+    private final CacheInvalidationDao cacheInvalidationDao;
+    private final CatalogVersion catalogVersion;
+    private final int retentionMinutes;
+
+    // Highest version whose invalidations this node has applied
+    private long applied = 0;
+    private long lastPrune = 0;
+
+    public CacheInvalidationPoller(CacheInvalidationDao cacheInvalidationDao,
+                                   CatalogVersion catalogVersion,
+                                   @Value("${catalog.invalidation.retention-minutes:60}") int retentionMinutes)
+    {
+        this.cacheInvalidationDao = cacheInvalidationDao;
+        this.catalogVersion = catalogVersion;
+        this.retentionMinutes = retentionMinutes;
+    }
+
+    @PostConstruct
+    public synchronized void seed()
+    {
+        try
+        {
+            long version = cacheInvalidationDao.getCatalogVersion();
+            catalogVersion.advanceTo(version);
+            applied = version;
+        }
+        catch (Exception e)
+        {
+            logger.warn("Reading the catalog version failed; it will be read on the next poll.", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.invalidation.poll-interval-ms:1000}")
+    public synchronized void poll()
+    {
+        try
+        {
+            apply();
+            prune();
+        }
+        catch (Exception e)
+        {
+            logger.warn("Polling cache invalidations failed.", e);
+        }
+    }
+
+    private void apply()
+    {
+        // Read first: every invalidation at or below this version has committed
+        long latest = cacheInvalidationDao.getCatalogVersion();
+        if (latest <= applied)
+            return;
+
+        List<CacheInvalidation> rows = cacheInvalidationDao.getSince(applied, BATCH_SIZE);
+        long reached = rows.isEmpty() ? applied : rows.get(rows.size() - 1).getVersion();
+
+        if (rows.size() == BATCH_SIZE || reached < latest)
+        {
+            logger.info("Missed invalidations between catalog versions {} and {}; dropping the whole catalog cache.", applied, latest);
+            catalogVersion.advanceTo(latest);
+            applied = latest;
+            return;
+        }
+
+        List<CacheInvalidation> foreign = new ArrayList<>();
+        for (CacheInvalidation row : rows)
+        {
+            if (!catalogVersion.getNodeId().equals(row.getNodeId()))
+                foreign.add(row);
+        }
+
+        catalogVersion.advanceTo(reached, foreign);
+        applied = reached;
+        logger.debug("Applied {} invalidation(s) from other nodes up to catalog version {}.", foreign.size(), reached);
+    }
+
+    private void prune()
+    {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < 60_000)
+            return;
+
+        lastPrune = now;
+        cacheInvalidationDao.deleteOlderThan(retentionMinutes);
+    }
+}
@@ -0,0 +1,361 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.models.CacheInvalidation;
+import org.yearup.models.Product;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds ready-to-send JSON bodies for the hottest catalog reads
+ * (GET /categories and GET /categories/{id}/products), both as plain bytes
+ * and gzip-compressed, so serving a cached page is a buffer copy.
+ *
+ * Each catalog write says which entries it affects (see CacheInvalidation). The
+ * affected keys get a floor at the write's version, any entry built below its
+ * floor counts as a miss, and stale entries are rebuilt in the background.
+ * Entries a write didn't touch keep their bytes and their ETag.
+ */
+@Component
+public class CatalogResponseCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(CatalogResponseCache.class);
+
+    private final CategoryDao categoryDao;
+    private final ProductDao productDao;
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    private final int maxCategories;
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-cache-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean(false);
+
+    private volatile Entry categories;
+    private final Map<Integer, Entry> productsByCategory = new ConcurrentHashMap<>();
+
+    // Lowest version an entry may have been built at to still be served
+    private volatile long catalogFloor;
+    private volatile long categoriesFloor;
+    private final Map<Integer, Long> productFloors = new ConcurrentHashMap<>();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean(false);
+
+    public CatalogResponseCache(CategoryDao categoryDao,
+                                ProductDao productDao,
+                                CatalogVersion catalogVersion,
+                                ObjectMapper objectMapper,
+                                @Value("${catalog.cache.max-categories:500}") int maxCategories)
+    {
+        this.categoryDao = categoryDao;
+        this.productDao = productDao;
+        this.catalogVersion = catalogVersion;
+        this.objectMapper = objectMapper;
+        this.maxCategories = maxCategories;
+
+        catalogVersion.addInvalidationListener(this::invalidate);
+    }
+
+    /**
+     * @return the cached body for GET /categories, built on first use
+     */
+    public Entry getCategories()
+    {
+        Entry entry = categories;
+        if (isStale(entry, categoriesFloor))
+        {
+            entry = buildCategories();
+            storeCategories(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * @param categoryId the category whose products are requested
+     * @return the cached body for GET /categories/{id}/products, built on first use
+     */
+    public Entry getProductsByCategory(int categoryId)
+    {
+        Entry entry = productsByCategory.get(categoryId);
+        if (isStale(entry, productFloor(categoryId)))
+        {
+            entry = buildProducts(categoryId);
+
+            // Empty lists are cheap to serialize and would let unknown ids fill the cache
+            if (!entry.isEmpty() && productsByCategory.size() < maxCategories)
+            {
+                storeProducts(categoryId, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Replaces the cached entries with pre-loaded data, e.g. from a catalog snapshot,
+     * so a freshly started node can serve without going to the database. Listings
+     * beyond catalog.cache.max-categories are left to be built on demand.
+     *
+     * @param categoriesEntry the body for GET /categories
+     * @param productEntries the bodies for GET /categories/{id}/products, keyed by category
+     */
+    public synchronized void prime(Entry categoriesEntry, Map<Integer, Entry> productEntries)
+    {
+        categories = categoriesEntry;
+        productEntries.forEach((categoryId, entry) -> {
+            if (productsByCategory.containsKey(categoryId) || productsByCategory.size() < maxCategories)
+                storeProducts(categoryId, entry);
+        });
+    }
+
+    /**
+     * Serializes and compresses a value into a cache entry for the given catalog version.
+     *
+     * @param version the catalog version the value was read at
+     * @param value the object to serialize
+     * @return the new entry
+     */
+    public Entry createEntry(long version, Object value)
+    {
+        try
+        {
+            byte[] identity = objectMapper.writeValueAsBytes(value);
+            boolean empty = value instanceof List<?> list && list.isEmpty();
+            return new Entry(version, identity, gzip(identity), empty);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new RuntimeException("Error serializing catalog response", e);
+        }
+    }
+
+    /**
+     * An entry built before the latest change that affects it is a miss, even if it
+     * was stored after the background rebuild for that change had finished.
+     */
+    private boolean isStale(Entry entry, long floor)
+    {
+        return entry == null || entry.getVersion() < Math.max(floor, catalogFloor);
+    }
+
+    private long productFloor(int categoryId)
+    {
+        return productFloors.getOrDefault(categoryId, 0L);
+    }
+
+    private void invalidate(List<CacheInvalidation> invalidations)
+    {
+        for (CacheInvalidation invalidation : invalidations)
+        {
+            long version = invalidation.getVersion();
+            switch (invalidation.getEntity())
+            {
+                case CacheInvalidation.CATEGORY:
+                    synchronized (this)
+                    {
+                        categoriesFloor = Math.max(categoriesFloor, version);
+                    }
+                    productFloors.merge(invalidation.getEntityId(), version, Math::max);
+                    break;
+                case CacheInvalidation.CATEGORY_PRODUCTS:
+                    productFloors.merge(invalidation.getEntityId(), version, Math::max);
+                    break;
+                default:
+                    synchronized (this)
+                    {
+                        catalogFloor = Math.max(catalogFloor, version);
+                    }
+                    break;
+            }
+        }
+
+        scheduleRebuild();
+    }
+
+    private Entry buildCategories()
+    {
+        long version = catalogVersion.current();
+        return createEntry(version, categoryDao.getAllCategories());
+    }
+
+    private Entry buildProducts(int categoryId)
+    {
+        long version = catalogVersion.current();
+        List<Product> products = productDao.listByCategoryId(categoryId);
+        return createEntry(version, products);
+    }
+
+    // A slow on-demand build must never overwrite a newer entry from the rebuilder
+    private synchronized void storeCategories(Entry entry)
+    {
+        if (categories == null || entry.getVersion() >= categories.getVersion())
+        {
+            categories = entry;
+        }
+    }
+
+    private void storeProducts(int categoryId, Entry entry)
+    {
+        productsByCategory.merge(categoryId, entry,
+                (current, built) -> built.getVersion() >= current.getVersion() ? built : current);
+    }
+
+    /**
+     * Rebuilds every cached entry in the background, for when the cache may be
+     * stale without the catalog version having moved.
+     */
+    public void refresh()
+    {
+        refreshQueued.set(true);
+        scheduleRebuild();
+    }
+
+    private void scheduleRebuild()
+    {
+        // Coalesce bursts of writes into a single rebuild
+        if (rebuildQueued.compareAndSet(false, true))
+        {
+            rebuilder.submit(this::rebuild);
+        }
+    }
+
+    private void rebuild()
+    {
+        rebuildQueued.set(false);
+        boolean everything = refreshQueued.getAndSet(false);
+
+        try
+        {
+            if (everything || isStale(categories, categoriesFloor))
+                storeCategories(buildCategories());
+
+            for (Integer categoryId : productsByCategory.keySet())
+            {
+                if (!everything && !isStale(productsByCategory.get(categoryId), productFloor(categoryId)))
+                    continue;
+
+                Entry entry = buildProducts(categoryId);
+                if (entry.isEmpty())
+                    productsByCategory.remove(categoryId);
+                else
+                    storeProducts(categoryId, entry);
+            }
+        }
+        catch (Exception e)
+        {
+            // Drop everything so the next request rebuilds on demand instead of serving stale data
+            logger.warn("Catalog cache rebuild failed, clearing cache.", e);
+            synchronized (this)
+            {
+                categories = null;
+            }
+            productsByCategory.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        rebuilder.shutdownNow();
+    }
+
+    private static byte[] gzip(byte[] bytes)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+        {
+            gzip.write(bytes);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Error compressing catalog response", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A pre-serialized response body in every encoding we serve.
+     */
+    public static class Entry
+    {
+        private final long version;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final boolean empty;
+
+        public Entry(long version, byte[] identity, byte[] gzip, boolean empty)
+        {
+            this.version = version;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.empty = empty;
+        }
+
+        public long getVersion()
+        {
+            return version;
+        }
+
+        public byte[] getIdentity()
+        {
+            return identity;
+        }
+
+        public byte[] getGzip()
+        {
+            return gzip;
+        }
+
+        public boolean isEmpty()
+        {
+            return empty;
+        }
+
+        /**
+         * Builds the response for this entry, picking gzip when the client accepts it.
+         * The ETag is tied to the entry's own version so it always matches the bytes sent,
+         * and Spring answers 304 for us when If-None-Match matches.
+         *
+         * @param acceptEncoding the request's Accept-Encoding header, may be null
+         * @param lastModified the catalog's last modified time in epoch milliseconds
+         * @return the response entity
+         */
+        public ResponseEntity<byte[]> toResponse(String acceptEncoding, long lastModified)
+        {
+            boolean useGzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            String etag = "\"catalog-" + version + (useGzip ? "-gzip" : "") + "\"";
+
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(etag)
+                    .lastModified(lastModified)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+            if (useGzip)
+            {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+            }
+            return builder.body(identity);
+        }
+    }
+}
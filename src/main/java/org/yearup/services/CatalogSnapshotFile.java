@@ -0,0 +1,203 @@
+package org.yearup.services;
+
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the compact binary catalog snapshot.
+ *
+ * Layout (big-endian):
+ * magic int, format short, catalog version long,
+ * category count int, then per category: id int, name str, description str,
+ * product count int, then per product: id int, name str, price str, category id int,
+ * description str, color str, stock int, featured byte, image url str.
+ * A str is a length int (-1 for null) followed by UTF-8 bytes.
+ */
+public class CatalogSnapshotFile
+{
+    private static final int MAGIC = 0x45534353; // "ESCS"
+    private static final short FORMAT = 2;
+
+    private final long catalogVersion;
+    private final List<Category> categories;
+    private final List<Product> products;
+
+    public CatalogSnapshotFile(long catalogVersion, List<Category> categories, List<Product> products)
+    {
+        this.catalogVersion = catalogVersion;
+        this.categories = categories;
+        this.products = products;
+    }
+
+    /**
+     * @return the shared catalog version the snapshot was taken at
+     */
+    public long getCatalogVersion()
+    {
+        return catalogVersion;
+    }
+
+    public List<Category> getCategories()
+    {
+        return categories;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    /**
+     * Writes the snapshot to a temporary file and moves it into place, so a crash
+     * mid-write never leaves a truncated snapshot behind.
+     *
+     * @param path the snapshot file
+     */
+    public void write(Path path) throws IOException
+    {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024)))
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT);
+            out.writeLong(catalogVersion);
+
+            out.writeInt(categories.size());
+            for (Category category : categories)
+            {
+                out.writeInt(category.getCategoryId());
+                writeString(out, category.getName());
+                writeString(out, category.getDescription());
+            }
+
+            out.writeInt(products.size());
+            for (Product product : products)
+            {
+                out.writeInt(product.getProductId());
+                writeString(out, product.getName());
+                writeString(out, product.getPrice() == null ? null : product.getPrice().toPlainString());
+                out.writeInt(product.getCategoryId());
+                writeString(out, product.getDescription());
+                writeString(out, product.getColor());
+                out.writeInt(product.getStock());
+                out.writeBoolean(product.isFeatured());
+                writeString(out, product.getImageUrl());
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Memory-maps a snapshot file and decodes it.
+     *
+     * @param path the snapshot file
+     * @return the decoded snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static CatalogSnapshotFile read(Path path) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            try
+            {
+                if (buffer.getInt() != MAGIC || buffer.getShort() != FORMAT)
+                    throw new IOException("Not a catalog snapshot: " + path);
+
+                long catalogVersion = buffer.getLong();
+
+                int categoryCount = readCount(buffer);
+                List<Category> categories = new ArrayList<>(categoryCount);
+                for (int i = 0; i < categoryCount; i++)
+                {
+                    int id = buffer.getInt();
+                    String name = readString(buffer);
+                    String description = readString(buffer);
+                    categories.add(new Category(id, name, description));
+                }
+
+                int productCount = readCount(buffer);
+                List<Product> products = new ArrayList<>(productCount);
+                for (int i = 0; i < productCount; i++)
+                {
+                    int id = buffer.getInt();
+                    String name = readString(buffer);
+                    String price = readString(buffer);
+                    int categoryId = buffer.getInt();
+                    String description = readString(buffer);
+                    String color = readString(buffer);
+                    int stock = buffer.getInt();
+                    boolean featured = buffer.get() != 0;
+                    String imageUrl = readString(buffer);
+
+                    products.add(new Product(id, name, price == null ? null : new BigDecimal(price),
+                            categoryId, description, color, stock, featured, imageUrl));
+                }
+
+                return new CatalogSnapshotFile(catalogVersion, categories, products);
+            }
+            catch (RuntimeException e)
+            {
+                // BufferUnderflowException and friends mean a truncated or corrupt file
+                throw new IOException("Corrupt catalog snapshot: " + path, e);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Sizes are checked against what is left in the file so a corrupt count can't trigger a huge allocation
+    private static int readCount(MappedByteBuffer buffer)
+    {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining())
+            throw new BufferUnderflowException();
+        return count;
+    }
+
+    private static String readString(MappedByteBuffer buffer)
+    {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,217 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CacheInvalidationDao;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lets a node come up warm after a restart.
+ *
+ * The catalog (all categories and products) is written periodically, and on
+ * graceful shutdown, to a binary snapshot file. On startup the file is
+ * memory-mapped and used to prime the CatalogResponseCache before the first
+ * request arrives. A background thread then compares the snapshot against the
+ * database and rebuilds the cache from the DB if anything moved on: the catalog
+ * version, the category list, or product stock. Stock changes at checkout don't
+ * move the catalog version, so they have to be compared row by row.
+ */
+@Component
+public class CatalogSnapshotService
+{
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    private final ProductDao productDao;
+    private final CategoryDao categoryDao;
+    private final CacheInvalidationDao cacheInvalidationDao;
+    private final CatalogResponseCache responseCache;
+    private final CatalogVersion catalogVersion;
+    private final boolean enabled;
+    private final Path snapshotPath;
+
+    public CatalogSnapshotService(ProductDao productDao,
+                                  CategoryDao categoryDao,
+                                  CacheInvalidationDao cacheInvalidationDao,
+                                  CatalogResponseCache responseCache,
+                                  CatalogVersion catalogVersion,
+                                  @Value("${catalog.snapshot.enabled:true}") boolean enabled,
+                                  @Value("${catalog.snapshot.path:data/catalog.snapshot}") String snapshotPath)
+    {
+        this.productDao = productDao;
+        this.categoryDao = categoryDao;
+        this.cacheInvalidationDao = cacheInvalidationDao;
+        this.responseCache = responseCache;
+        this.catalogVersion = catalogVersion;
+        this.enabled = enabled;
+        this.snapshotPath = Paths.get(snapshotPath);
+    }
+
+    /**
+     * Primes the response cache from the snapshot file, if there is one,
+     * and starts the background reconciliation against the database.
+     */
+    @PostConstruct
+    public void loadSnapshot()
+    {
+        if (!enabled || !Files.exists(snapshotPath))
+            return;
+
+        try
+        {
+            long start = System.nanoTime();
+            CatalogSnapshotFile snapshot = CatalogSnapshotFile.read(snapshotPath);
+            prime(snapshot);
+
+            logger.info("Loaded catalog snapshot ({} categories, {} products) in {} ms.",
+                    snapshot.getCategories().size(), snapshot.getProducts().size(),
+                    (System.nanoTime() - start) / 1_000_000);
+
+            Thread reconciler = new Thread(() -> reconcile(snapshot), "catalog-snapshot-reconcile");
+            reconciler.setDaemon(true);
+            reconciler.start();
+        }
+        catch (IOException e)
+        {
+            logger.warn("Ignoring unreadable catalog snapshot {}.", snapshotPath, e);
+        }
+    }
+
+    /**
+     * Writes the current catalog to the snapshot file.
+     */
+    @Scheduled(initialDelayString = "${catalog.snapshot.interval-ms:300000}",
+               fixedDelayString = "${catalog.snapshot.interval-ms:300000}")
+    public void writeSnapshot()
+    {
+        if (!enabled)
+            return;
+
+        try
+        {
+            // Read the version first so the data below is at least as new as the version recorded
+            long version = cacheInvalidationDao.getCatalogVersion();
+            List<Category> categories = categoryDao.getAllCategories();
+            List<Product> products = productDao.search(null, null, null, null);
+
+            new CatalogSnapshotFile(version, categories, products).write(snapshotPath);
+        }
+        catch (Exception e)
+        {
+            logger.warn("Writing catalog snapshot {} failed.", snapshotPath, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        writeSnapshot();
+    }
+
+    private void prime(CatalogSnapshotFile snapshot)
+    {
+        // Entries carry the version the snapshot was taken at, so their ETags match other nodes'
+        long version = snapshot.getCatalogVersion();
+
+        Map<Integer, List<Product>> productsByCategory = new HashMap<>();
+        for (Product product : snapshot.getProducts())
+        {
+            productsByCategory.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+        }
+
+        Map<Integer, CatalogResponseCache.Entry> entries = new HashMap<>();
+        productsByCategory.forEach((categoryId, products) ->
+                entries.put(categoryId, responseCache.createEntry(version, products)));
+
+        responseCache.prime(responseCache.createEntry(version, snapshot.getCategories()), entries);
+    }
+
+    private void reconcile(CatalogSnapshotFile snapshot)
+    {
+        try
+        {
+            long version = cacheInvalidationDao.getCatalogVersion();
+            boolean catalogChanged = version != snapshot.getCatalogVersion();
+            boolean categoriesChanged = !sameCategories(categoryDao.getAllCategories(), snapshot.getCategories());
+
+            if (catalogChanged || categoriesChanged)
+            {
+                logger.info("Catalog snapshot is behind the database, rebuilding caches.");
+                catalogVersion.advanceTo(version);
+                responseCache.refresh();
+            }
+            else if (!sameStock(productDao.search(null, null, null, null), snapshot.getProducts()))
+            {
+                // Same version, so the rebuilt entries keep their ETags
+                logger.info("Stock moved since the catalog snapshot, rebuilding caches.");
+                responseCache.refresh();
+            }
+        }
+        catch (Exception e)
+        {
+            logger.warn("Reconciling catalog snapshot failed, rebuilding caches.", e);
+            responseCache.refresh();
+        }
+    }
+
+    static boolean sameStock(List<Product> current, List<Product> snapshot)
+    {
+        if (current.size() != snapshot.size())
+            return false;
+
+        Map<Integer, Integer> stockById = new HashMap<>();
+        for (Product product : snapshot)
+        {
+            stockById.put(product.getProductId(), product.getStock());
+        }
+
+        for (Product product : current)
+        {
+            Integer stock = stockById.get(product.getProductId());
+            if (stock == null || stock != product.getStock())
+                return false;
+        }
+
+        return true;
+    }
+
+    private static boolean sameCategories(List<Category> current, List<Category> snapshot)
+    {
+        if (current.size() != snapshot.size())
+            return false;
+
+        Map<Integer, Category> byId = new HashMap<>();
+        for (Category category : snapshot)
+        {
+            byId.put(category.getCategoryId(), category);
+        }
+
+        for (Category category : current)
+        {
+            Category other = byId.get(category.getCategoryId());
+            if (other == null
+                    || !Objects.equals(category.getName(), other.getName())
+                    || !Objects.equals(category.getDescription(), other.getDescription()))
+                return false;
+        }
+
+        return true;
+    }
+}
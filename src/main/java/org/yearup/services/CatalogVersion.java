@@ -0,0 +1,146 @@
+package org.yearup.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.models.CacheInvalidation;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * This node's view of the shared catalog version (products and categories).
+ *
+ * The version itself lives in the catalog_version table: every ProductDao and
+ * CategoryDao write takes the next number in its own transaction and advances
+ * this copy once it commits, and CacheInvalidationPoller catches up with writes
+ * made on other nodes. Because the number comes from the database, every node
+ * that has caught up issues the same ETag for the same catalog.
+ */
+@Component // Single shared instance so every DAO and controller sees the same version
+public class CatalogVersion
+{
+    // 0 until the poller has read the shared version at startup
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastModified = System.currentTimeMillis();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<List<CacheInvalidation>>> invalidationListeners = new CopyOnWriteArrayList<>();
+    private final String nodeId;
+
+    public CatalogVersion()
+    {
+        this("");
+    }
+
+    @Autowired
+    public CatalogVersion(@Value("${catalog.node-id:}") String nodeId)
+    {
+        // Each app instance needs its own id so it can skip its own invalidation log entries
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    /**
+     * @return the id of this app instance, recorded with every catalog write
+     */
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    /**
+     * @return the current catalog version
+     */
+    public long current()
+    {
+        return version.get();
+    }
+
+    /**
+     * @return the time of the last catalog change, in epoch milliseconds
+     */
+    public long lastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Builds the strong ETag value for the current catalog version.
+     *
+     * @return the ETag (without quotes, Spring adds them)
+     */
+    public String etag()
+    {
+        return "catalog-" + version.get();
+    }
+
+    /**
+     * Registers a callback that runs after every catalog change.
+     * Listeners run on the writing thread, so they should only schedule work.
+     *
+     * @param listener the callback to run
+     */
+    public void addListener(Runnable listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers a callback that receives what each catalog change invalidated,
+     * for caches that evict only the affected entries. Same threading rules as addListener.
+     *
+     * @param listener the callback to run
+     */
+    public void addInvalidationListener(Consumer<List<CacheInvalidation>> listener)
+    {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * Moves to a newer shared version without knowing what changed, e.g. at startup;
+     * everything cached before it is invalidated.
+     *
+     * @param newVersion the shared catalog version now known to be committed
+     * @return true if this node was behind
+     */
+    public boolean advanceTo(long newVersion)
+    {
+        return advanceTo(newVersion, List.of(CacheInvalidation.catalog(newVersion)));
+    }
+
+    /**
+     * Applies a committed catalog write, made here or on another node.
+     * Invalidations are passed on even when the version has already moved past them,
+     * so a write whose entries the poller saw first still evicts what it should.
+     *
+     * @param newVersion the shared catalog version now known to be committed
+     * @param invalidations what the write invalidated
+     * @return true if this node was behind
+     */
+    public boolean advanceTo(long newVersion, List<CacheInvalidation> invalidations)
+    {
+        long previous = version.getAndAccumulate(newVersion, Math::max);
+        boolean advanced = previous < newVersion;
+
+        if (advanced)
+        {
+            lastModified = System.currentTimeMillis();
+            for (Runnable listener : listeners)
+            {
+                listener.run();
+            }
+        }
+
+        if (!invalidations.isEmpty())
+        {
+            for (Consumer<List<CacheInvalidation>> listener : invalidationListeners)
+            {
+                listener.accept(invalidations);
+            }
+        }
+
+        return advanced;
+    }
+}
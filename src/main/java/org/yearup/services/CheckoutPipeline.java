@@ -0,0 +1,265 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+import org.yearup.models.Order;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for checkouts.
+ *
+ * Request threads hand their order to submit() and wait on the returned future.
+ * A single writer thread takes the first waiting order, collects whatever else
+ * arrives within checkout.pipeline.max-wait-ms (up to checkout.pipeline.max-batch
+ * orders) and writes them with one OrderDao.createOrders call, so concurrent
+ * checkouts share one transaction and one commit. Orders that arrive while a batch
+ * is committing form the next batch on their own; the wait window only applies
+ * after a batch of more than one order, so a lone checkout is never delayed.
+ *
+ * If a batch fails, its orders are retried one at a time so one bad order only
+ * fails its own request. A failure can be ambiguous (the connection dropped during
+ * the commit), so before an order is retried or failed it is looked up by the id it
+ * was given, and reported as placed if it is already there. If the lookup fails as
+ * well the order fails with OutcomeUnknownException, so the caller can tell it from
+ * an order that certainly wasn't saved.
+ */
+@Component
+public class CheckoutPipeline
+{
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutPipeline.class);
+
+    private final OrderDao orderDao;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final BlockingQueue<PendingOrder> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public CheckoutPipeline(OrderDao orderDao,
+                            @Value("${checkout.pipeline.max-batch:64}") int maxBatch,
+                            @Value("${checkout.pipeline.max-wait-ms:2}") long maxWaitMs,
+                            @Value("${checkout.pipeline.queue-capacity:10000}") int queueCapacity)
+    {
+        this.orderDao = orderDao;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::drain, "checkout-pipeline");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        writer.start();
+    }
+
+    /**
+     * Stops taking new orders and waits for the queued ones to be written.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException
+    {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queues an order for the next batch.
+     *
+     * @param order the order, with its line items
+     * @return completes with the order (its id set) once committed, or exceptionally if it failed
+     */
+    public CompletableFuture<Order> submit(Order order)
+    {
+        PendingOrder pending = new PendingOrder(order);
+
+        if (!running || !queue.offer(pending))
+            pending.result.completeExceptionally(new IllegalStateException("Checkout is not accepting orders right now"));
+
+        return pending.result;
+    }
+
+    private void drain()
+    {
+        List<PendingOrder> batch = new ArrayList<>(maxBatch);
+        int lastBatchSize = 0;
+
+        while (running || !queue.isEmpty())
+        {
+            try
+            {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                batch.add(first);
+                long deadline = System.nanoTime() + (lastBatchSize > 1 ? maxWaitNanos : 0);
+
+                while (batch.size() < maxBatch)
+                {
+                    // Take whatever is already queued, then wait out the rest of the window
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0)
+                        continue;
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+
+                    PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+
+                lastBatchSize = batch.size();
+                write(batch);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Checkout pipeline batch failed unexpectedly.", e);
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            }
+            finally
+            {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingOrder> batch)
+    {
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch)
+        {
+            orders.add(pending.order);
+        }
+
+        RuntimeException batchFailure;
+        try
+        {
+            orderDao.createOrders(orders);
+            batch.forEach(pending -> pending.result.complete(pending.order));
+            return;
+        }
+        catch (RuntimeException e)
+        {
+            if (batch.size() == 1)
+            {
+                settle(batch.get(0), e);
+                return;
+            }
+            logger.warn("Checkout batch of {} failed, retrying orders one by one.", batch.size(), e);
+            batchFailure = e;
+        }
+
+        for (PendingOrder pending : batch)
+        {
+            // The batch may have committed after all; a retry would then fail on the duplicate id
+            Boolean committed = isCommitted(pending.order);
+            if (committed == null)
+            {
+                pending.result.completeExceptionally(new OutcomeUnknownException(pending.order.getId(), batchFailure));
+                continue;
+            }
+            if (committed)
+            {
+                pending.result.complete(pending.order);
+                continue;
+            }
+
+            try
+            {
+                orderDao.createOrders(List.of(pending.order));
+                pending.result.complete(pending.order);
+            }
+            catch (RuntimeException e)
+            {
+                settle(pending, e);
+            }
+        }
+    }
+
+    /**
+     * Completes an order whose write reported a failure, by whether it was committed after all.
+     */
+    private void settle(PendingOrder pending, RuntimeException failure)
+    {
+        Boolean committed = isCommitted(pending.order);
+        if (committed == null)
+            pending.result.completeExceptionally(new OutcomeUnknownException(pending.order.getId(), failure));
+        else if (committed)
+            pending.result.complete(pending.order);
+        else
+            pending.result.completeExceptionally(failure);
+    }
+
+    /**
+     * @return whether the order was written by an attempt that reported a failure,
+     *         or null if that can't be told because the lookup failed too
+     */
+    private Boolean isCommitted(Order order)
+    {
+        // Ids are assigned before the write, so an order without one never reached the database
+        if (order.getId() == 0)
+            return false;
+
+        try
+        {
+            return orderDao.getById(order.getId()) != null;
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Checking whether order {} was committed failed.", order.getId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * The write of an order failed and looking it up failed too, so the order may or
+     * may not have been committed. Callers must not undo anything the order relies on
+     * (its reserved stock) since it may stand.
+     */
+    public static class OutcomeUnknownException extends RuntimeException
+    {
+        private final int orderId;
+
+        public OutcomeUnknownException(int orderId, Throwable cause)
+        {
+            super("Order " + orderId + " may or may not have been saved", cause);
+            this.orderId = orderId;
+        }
+
+        public int getOrderId()
+        {
+            return orderId;
+        }
+    }
+
+    private static class PendingOrder
+    {
+        private final Order order;
+        private final CompletableFuture<Order> result = new CompletableFuture<>();
+
+        private PendingOrder(Order order)
+        {
+            this.order = order;
+        }
+    }
+}
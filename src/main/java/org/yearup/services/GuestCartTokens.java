@@ -0,0 +1,203 @@
+package org.yearup.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.security.jwt.TokenProvider;
+
+import javax.crypto.Mac;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes anonymous shoppers' carts into signed tokens the client holds, so guest
+ * browsing never writes to the database.
+ *
+ * A token is base64url(payload) "." base64url(HMAC-SHA256(payload)). The payload is
+ * a format byte, the issue time in epoch seconds, the item count, then a
+ * (product id, quantity) pair per item, all as unsigned varints. The HMAC key is
+ * derived from the JWT secret. Item count, quantity and token length are bounded,
+ * and tokens older than cart.guest.ttl-days are rejected.
+ */
+@Component
+public class GuestCartTokens
+{
+    public static final String HEADER = "X-Guest-Cart";
+
+    private static final int FORMAT = 1;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final Key key;
+    private final Clock clock;
+    private final int maxItems;
+    private final int maxQuantity;
+    private final long ttlSeconds;
+    private final int maxTokenLength;
+
+    public GuestCartTokens(TokenProvider tokenProvider,
+                           @Value("${cart.guest.max-items:50}") int maxItems,
+                           @Value("${cart.guest.max-quantity:99}") int maxQuantity,
+                           @Value("${cart.guest.ttl-days:30}") int ttlDays)
+    {
+        this(tokenProvider.deriveKey("guest-cart"), Clock.systemUTC(), maxItems, maxQuantity, ttlDays);
+    }
+
+    GuestCartTokens(Key key, Clock clock, int maxItems, int maxQuantity, int ttlDays)
+    {
+        this.key = key;
+        this.clock = clock;
+        this.maxItems = maxItems;
+        this.maxQuantity = maxQuantity;
+        this.ttlSeconds = ttlDays * 86_400L;
+        // Worst case payload: format + issued + count + max items of two 5-byte varints, plus the MAC
+        int maxPayload = 1 + 10 + 5 + maxItems * 10;
+        this.maxTokenLength = base64Length(maxPayload) + 1 + base64Length(32);
+    }
+
+    public int getMaxItems()
+    {
+        return maxItems;
+    }
+
+    public int getMaxQuantity()
+    {
+        return maxQuantity;
+    }
+
+    /**
+     * Signs a guest cart.
+     *
+     * @param items product id to quantity, in display order; quantities must already be within bounds
+     * @return the token
+     */
+    public String encode(Map<Integer, Integer> items)
+    {
+        if (items.size() > maxItems)
+            throw new IllegalArgumentException("A guest cart holds at most " + maxItems + " items");
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + items.size() * 4);
+        payload.write(FORMAT);
+        writeVarLong(payload, clock.instant().getEpochSecond());
+        writeVarLong(payload, items.size());
+        items.forEach((productId, quantity) -> {
+            if (productId < 0 || quantity < 1 || quantity > maxQuantity)
+                throw new IllegalArgumentException("Invalid guest cart line " + productId + " x " + quantity);
+
+            writeVarLong(payload, productId);
+            writeVarLong(payload, quantity);
+        });
+
+        byte[] bytes = payload.toByteArray();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(bytes) + "." + encoder.encodeToString(sign(bytes));
+    }
+
+    /**
+     * Verifies and decodes a guest cart token.
+     *
+     * @param token the token, may be null or blank
+     * @return product id to quantity; empty for a missing token
+     * @throws IllegalArgumentException if the token is malformed, tampered with, out of bounds or expired
+     */
+    public Map<Integer, Integer> decode(String token)
+    {
+        Map<Integer, Integer> items = new LinkedHashMap<>();
+        if (token == null || token.isBlank())
+            return items;
+
+        if (token.length() > maxTokenLength)
+            throw new IllegalArgumentException("Guest cart token too long");
+
+        int dot = token.indexOf('.');
+        if (dot < 0)
+            throw new IllegalArgumentException("Malformed guest cart token");
+
+        byte[] payload = Base64.getUrlDecoder().decode(token.substring(0, dot).getBytes(StandardCharsets.US_ASCII));
+        byte[] signature = Base64.getUrlDecoder().decode(token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII));
+
+        // Constant-time comparison, checked before anything in the payload is trusted
+        if (!MessageDigest.isEqual(sign(payload), signature))
+            throw new IllegalArgumentException("Invalid guest cart signature");
+
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try
+        {
+            if (in.get() != FORMAT)
+                throw new IllegalArgumentException("Unknown guest cart format");
+
+            long issued = readVarLong(in);
+            if (clock.instant().getEpochSecond() - issued > ttlSeconds)
+                throw new IllegalArgumentException("Guest cart token expired");
+
+            long count = readVarLong(in);
+            if (count > maxItems)
+                throw new IllegalArgumentException("Too many guest cart items");
+
+            for (int i = 0; i < count; i++)
+            {
+                long productId = readVarLong(in);
+                long quantity = readVarLong(in);
+                if (productId > Integer.MAX_VALUE || quantity < 1 || quantity > maxQuantity)
+                    throw new IllegalArgumentException("Invalid guest cart line");
+
+                items.put((int) productId, (int) quantity);
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new IllegalArgumentException("Truncated guest cart token", e);
+        }
+
+        return items;
+    }
+
+    private byte[] sign(byte[] payload)
+    {
+        try
+        {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new IllegalStateException("Unable to sign guest cart", e);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in)
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed varint in guest cart token");
+    }
+
+    private static int base64Length(int bytes)
+    {
+        return (bytes * 4 + 2) / 3;
+    }
+}
@@ -0,0 +1,245 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stock counters for doorbuster products, listed in stock.hot.product-ids.
+ *
+ * Instead of updating the products row on every checkout, the node leases
+ * stock.hot.lease-size units at a time from the database and hands them out from
+ * an AtomicInteger with compare-and-set, so checkouts for a hot product don't touch
+ * the database at all until the lease runs dry. The products table always holds the
+ * unleased stock. Leases idle for stock.hot.idle-ms are returned to the table in
+ * one batch by a scheduled reconcile, and every lease is returned on shutdown.
+ *
+ * Leases are also recorded in stock_leases against the node id, and each order
+ * commit takes the units it sold off the record. What a node dies holding is put
+ * back into the table: by the node itself when it starts again with the same
+ * catalog.node-id, otherwise by any node once the lease has gone untouched for
+ * stock.hot.abandoned-after-ms.
+ *
+ * Once the table has nothing left to lease the product is treated as sold out for
+ * stock.sold-out-ttl-ms, or until the catalog version changes.
+ */
+@Component
+public class HotStockLeases
+{
+    private static final Logger logger = LoggerFactory.getLogger(HotStockLeases.class);
+
+    private final ProductDao productDao;
+    private final String nodeId;
+    private final int leaseSize;
+    private final long idleMs;
+    private final long soldOutTtlMs;
+    private final long abandonedAfterMs;
+    private final Map<Integer, Lease> leases = new HashMap<>();
+
+    private long lastSweep = 0;
+
+    public HotStockLeases(ProductDao productDao,
+                          CatalogVersion catalogVersion,
+                          @Value("${stock.hot.product-ids:}") Set<Integer> productIds,
+                          @Value("${stock.hot.lease-size:50}") int leaseSize,
+                          @Value("${stock.hot.idle-ms:30000}") long idleMs,
+                          @Value("${stock.sold-out-ttl-ms:1000}") long soldOutTtlMs,
+                          @Value("${stock.hot.abandoned-after-ms:600000}") long abandonedAfterMs)
+    {
+        this.productDao = productDao;
+        this.nodeId = catalogVersion.getNodeId();
+        this.leaseSize = leaseSize;
+        this.idleMs = idleMs;
+        this.soldOutTtlMs = soldOutTtlMs;
+        this.abandonedAfterMs = abandonedAfterMs;
+
+        // The set of hot products is fixed at startup, so the map is never written after this
+        for (int productId : productIds)
+        {
+            leases.put(productId, new Lease());
+        }
+
+        catalogVersion.addListener(() -> leases.values().forEach(lease -> lease.soldOutAt = 0));
+    }
+
+    /**
+     * Puts back whatever this node id was holding when it last stopped without returning it.
+     */
+    @PostConstruct
+    public void recover()
+    {
+        try
+        {
+            int units = productDao.reclaimLeases(nodeId);
+            if (units > 0)
+                logger.info("Put back {} unit(s) of hot stock leased before a restart.", units);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Reclaiming this node's hot stock leases failed; they are reclaimed once abandoned.", e);
+        }
+    }
+
+    public boolean isHot(int productId)
+    {
+        return leases.containsKey(productId);
+    }
+
+    /**
+     * Takes units from the in-memory counters, topping them up from the database as needed.
+     * Either every product gets its units or none do.
+     *
+     * @param quantities hot product id to quantity wanted
+     * @return the ids that could not be satisfied; empty on success
+     */
+    public List<Integer> take(Map<Integer, Integer> quantities)
+    {
+        Map<Integer, Integer> taken = new HashMap<>();
+
+        for (Map.Entry<Integer, Integer> entry : new TreeMap<>(quantities).entrySet())
+        {
+            if (!tryTake(leases.get(entry.getKey()), entry.getKey(), entry.getValue()))
+            {
+                giveBack(taken);
+                return List.of(entry.getKey());
+            }
+            taken.put(entry.getKey(), entry.getValue());
+        }
+
+        return List.of();
+    }
+
+    /**
+     * Returns units to the in-memory counters, e.g. when the rest of the order failed.
+     *
+     * @param quantities hot product id to quantity
+     */
+    public void giveBack(Map<Integer, Integer> quantities)
+    {
+        quantities.forEach((productId, quantity) -> leases.get(productId).remaining.addAndGet(quantity));
+    }
+
+    /**
+     * Hands unused units of idle leases back to the products table in one batch.
+     */
+    @Scheduled(fixedDelayString = "${stock.hot.reconcile-interval-ms:5000}")
+    public void reconcile()
+    {
+        returnLeases(System.currentTimeMillis() - idleMs);
+        sweepAbandoned();
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        returnLeases(Long.MAX_VALUE);
+    }
+
+    private boolean tryTake(Lease lease, int productId, int quantity)
+    {
+        while (true)
+        {
+            int remaining = lease.remaining.get();
+            if (remaining >= quantity)
+            {
+                if (lease.remaining.compareAndSet(remaining, remaining - quantity))
+                {
+                    lease.lastUsed = System.currentTimeMillis();
+                    return true;
+                }
+                continue;
+            }
+
+            // Slow path: one thread per product refills from the database while the others wait
+            synchronized (lease)
+            {
+                if (lease.remaining.get() >= quantity)
+                    continue;
+                if (System.currentTimeMillis() - lease.soldOutAt < soldOutTtlMs)
+                    return false;
+
+                int leased = productDao.leaseStock(nodeId, productId, Math.max(leaseSize, quantity));
+                if (leased == 0)
+                {
+                    lease.soldOutAt = System.currentTimeMillis();
+                    return false;
+                }
+
+                lease.remaining.addAndGet(leased);
+            }
+        }
+    }
+
+    private void returnLeases(long idleBefore)
+    {
+        Map<Integer, Integer> returned = new HashMap<>();
+
+        leases.forEach((productId, lease) -> {
+            synchronized (lease)
+            {
+                if (lease.lastUsed < idleBefore)
+                {
+                    int units = lease.remaining.getAndSet(0);
+                    if (units > 0)
+                        returned.put(productId, units);
+                }
+            }
+        });
+
+        if (returned.isEmpty())
+            return;
+
+        try
+        {
+            productDao.returnLeasedStock(nodeId, returned);
+        }
+        catch (RuntimeException e)
+        {
+            // Keep the units in memory rather than lose them; the next reconcile tries again
+            giveBack(returned);
+            logger.warn("Returning hot stock leases failed.", e);
+        }
+    }
+
+    /**
+     * Puts back the leases of nodes that died holding them, at most once a minute.
+     */
+    private void sweepAbandoned()
+    {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep < 60_000)
+            return;
+
+        lastSweep = now;
+        try
+        {
+            int units = productDao.reclaimAbandonedLeases((int) (abandonedAfterMs / 1000));
+            if (units > 0)
+                logger.info("Put back {} unit(s) of hot stock from abandoned leases.", units);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Reclaiming abandoned hot stock leases failed.", e);
+        }
+    }
+
+    private static class Lease
+    {
+        private final AtomicInteger remaining = new AtomicInteger();
+        private volatile long lastUsed = 0;
+        // When the table was last found empty; 0 when it wasn't
+        private volatile long soldOutAt = 0;
+    }
+}
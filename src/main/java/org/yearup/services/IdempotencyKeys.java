@@ -0,0 +1,288 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.IdempotencyKeyDao;
+import org.yearup.models.OrderDTO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Makes checkout safe to retry. A client sends the same Idempotency-Key header on
+ * every attempt of one checkout; the first attempt runs and its OrderDTO is kept,
+ * later attempts get that response back with an Idempotent-Replayed header instead
+ * of placing a second order.
+ *
+ * Recent keys live in a bounded in-memory map of futures, so a duplicate arriving
+ * while the first attempt is still running on this node waits for it rather than
+ * racing it. The idempotency_keys table covers other nodes and restarts: the key is
+ * claimed with an insert before the checkout runs, and a duplicate that finds the
+ * key claimed but not yet completed gets 409. While a checkout runs, its claim is
+ * refreshed every idempotency.heartbeat-interval-ms, so only a claim whose node has
+ * stopped goes stale and can be taken over.
+ *
+ * Only successful checkouts are kept; a failed or rejected attempt frees the key so
+ * the client can try again, and duplicates that were waiting on it run themselves
+ * rather than getting the rejection replayed.
+ */
+@Component
+public class IdempotencyKeys
+{
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeys.class);
+
+    private final IdempotencyKeyDao idempotencyKeyDao;
+    private final ObjectMapper objectMapper;
+    private final int staleSeconds;
+    private final int retentionHours;
+
+    // Access-ordered; the eldest entry is evicted once over capacity, unless its request is still running
+    private final Map<String, CompletableFuture<ResponseEntity<?>>> recent;
+
+    // Keys claimed in idempotency_keys by checkouts running on this node
+    private final Set<Claim> running = ConcurrentHashMap.newKeySet();
+
+    public IdempotencyKeys(IdempotencyKeyDao idempotencyKeyDao,
+                           ObjectMapper objectMapper,
+                           @Value("${idempotency.cache-size:10000}") int cacheSize,
+                           @Value("${idempotency.pending-timeout-seconds:60}") int staleSeconds,
+                           @Value("${idempotency.retention-hours:24}") int retentionHours)
+    {
+        this.idempotencyKeyDao = idempotencyKeyDao;
+        this.objectMapper = objectMapper;
+        this.staleSeconds = staleSeconds;
+        this.retentionHours = retentionHours;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ResponseEntity<?>>> eldest)
+            {
+                return size() > cacheSize && eldest.getValue().isDone();
+            }
+        };
+    }
+
+    /**
+     * @return true if the header value can be used as a key
+     */
+    public static boolean isValid(String key)
+    {
+        return key != null && !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Runs the checkout once per user and key.
+     *
+     * @param userId the user checking out
+     * @param key the Idempotency-Key header value
+     * @param checkout the checkout itself
+     * @return the checkout's response, or the stored one if this key has already been used
+     */
+    public ResponseEntity<?> execute(int userId, String key, Supplier<ResponseEntity<?>> checkout)
+    {
+        String cacheKey = userId + ":" + key;
+
+        while (true)
+        {
+            CompletableFuture<ResponseEntity<?>> mine = new CompletableFuture<>();
+            CompletableFuture<ResponseEntity<?>> existing;
+            synchronized (recent)
+            {
+                existing = recent.putIfAbsent(cacheKey, mine);
+            }
+
+            if (existing == null)
+                return lead(userId, key, cacheKey, mine, checkout);
+
+            try
+            {
+                ResponseEntity<?> response = existing.join();
+                if (isStored(response))
+                    return replayed(response);
+            }
+            catch (CompletionException e)
+            {
+                // Failed attempts are re-run like rejected ones
+            }
+            // The first attempt gave the key up; try to take it over
+        }
+    }
+
+    @Scheduled(initialDelayString = "${idempotency.prune-interval-ms:3600000}",
+               fixedDelayString = "${idempotency.prune-interval-ms:3600000}")
+    public void prune()
+    {
+        try
+        {
+            int deleted = idempotencyKeyDao.deleteOlderThan(retentionHours);
+            logger.debug("Pruned {} idempotency key(s).", deleted);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Pruning idempotency keys failed.", e);
+        }
+    }
+
+    /**
+     * Keeps the claims of running checkouts fresh, so other nodes don't take them over.
+     */
+    @Scheduled(fixedDelayString = "${idempotency.heartbeat-interval-ms:20000}")
+    public void heartbeat()
+    {
+        for (Claim claim : running)
+        {
+            try
+            {
+                idempotencyKeyDao.refresh(claim.userId, claim.key);
+            }
+            catch (RuntimeException e)
+            {
+                logger.warn("Refreshing idempotency key {} failed.", claim.key, e);
+            }
+        }
+    }
+
+    private ResponseEntity<?> lead(int userId, String key, String cacheKey,
+                                   CompletableFuture<ResponseEntity<?>> mine,
+                                   Supplier<ResponseEntity<?>> checkout)
+    {
+        ResponseEntity<?> response;
+        try
+        {
+            response = claimAndRun(userId, key, checkout);
+        }
+        catch (RuntimeException e)
+        {
+            forget(cacheKey, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+
+        // Only a placed order is worth replaying; anything else is re-run on retry
+        if (!isStored(response))
+            forget(cacheKey, mine);
+        mine.complete(response);
+
+        return response;
+    }
+
+    private ResponseEntity<?> claimAndRun(int userId, String key, Supplier<ResponseEntity<?>> checkout)
+    {
+        if (!idempotencyKeyDao.claim(userId, key, staleSeconds))
+        {
+            String stored = idempotencyKeyDao.getResponse(userId, key);
+            if (stored == null)
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("A checkout with this " + HEADER + " is still in progress.");
+
+            return replayed(ResponseEntity.status(HttpStatus.CREATED).body(fromJson(stored)));
+        }
+
+        Claim claim = new Claim(userId, key);
+        running.add(claim);
+
+        ResponseEntity<?> response;
+        try
+        {
+            response = checkout.get();
+        }
+        catch (RuntimeException e)
+        {
+            idempotencyKeyDao.release(userId, key);
+            throw e;
+        }
+        finally
+        {
+            running.remove(claim);
+        }
+
+        if (!isStored(response))
+        {
+            idempotencyKeyDao.release(userId, key);
+            return response;
+        }
+
+        try
+        {
+            idempotencyKeyDao.complete(userId, key, toJson(response.getBody()));
+        }
+        catch (RuntimeException e)
+        {
+            // The order exists; this node still replays it from memory, others see a pending key until it goes stale
+            logger.error("Recording the response for idempotency key {} failed.", key, e);
+        }
+
+        return response;
+    }
+
+    private static boolean isStored(ResponseEntity<?> response)
+    {
+        return response.getStatusCode().is2xxSuccessful() && response.getBody() instanceof OrderDTO;
+    }
+
+    private void forget(String cacheKey, CompletableFuture<ResponseEntity<?>> future)
+    {
+        synchronized (recent)
+        {
+            recent.remove(cacheKey, future);
+        }
+    }
+
+    private static class Claim
+    {
+        private final int userId;
+        private final String key;
+
+        private Claim(int userId, String key)
+        {
+            this.userId = userId;
+            this.key = key;
+        }
+    }
+
+    private static ResponseEntity<?> replayed(ResponseEntity<?> response)
+    {
+        return ResponseEntity.status(response.getStatusCode())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private String toJson(Object body)
+    {
+        try
+        {
+            return objectMapper.writeValueAsString(body);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new RuntimeException("Error serializing checkout response", e);
+        }
+    }
+
+    private OrderDTO fromJson(String json)
+    {
+        try
+        {
+            return objectMapper.readValue(json, OrderDTO.class);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new RuntimeException("Error reading stored checkout response", e);
+        }
+    }
+}
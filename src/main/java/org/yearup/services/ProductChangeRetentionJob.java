@@ -0,0 +1,47 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+
+/**
+ * Keeps the product change feed from growing forever by deleting entries older
+ * than catalog.changes.retention-days. Clients further behind than that get
+ * resyncRequired from GET /products/changes and reload the catalog.
+ */
+@Component
+public class ProductChangeRetentionJob
+{
+    private static final Logger logger = LoggerFactory.getLogger(ProductChangeRetentionJob.class);
+
+    private final ProductDao productDao;
+    private final int retentionDays;
+
+    public ProductChangeRetentionJob(ProductDao productDao,
+                                     @Value("${catalog.changes.retention-days:30}") int retentionDays)
+    {
+        this.productDao = productDao;
+        this.retentionDays = retentionDays;
+    }
+
+    @Scheduled(initialDelayString = "${catalog.changes.prune-interval-ms:3600000}",
+               fixedDelayString = "${catalog.changes.prune-interval-ms:3600000}")
+    public void run()
+    {
+        try
+        {
+            int deleted = productDao.pruneChanges(retentionDays);
+            if (deleted > 0)
+            {
+                logger.info("Pruned {} product change feed entries.", deleted);
+            }
+        }
+        catch (Exception e)
+        {
+            logger.warn("Pruning the product change feed failed.", e);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads products one row at a time from an import body, without holding more than
+ * the current row in memory.
+ *
+ * CSV bodies start with a header row naming the columns (productId, name, price,
+ * categoryId, description, color, stock, featured, imageUrl; case, underscores and
+ * dashes are ignored) and follow RFC 4180 quoting, so quoted fields may contain
+ * commas, doubled quotes and line breaks. NDJSON bodies hold one product object per
+ * line, in the same shape as POST /products.
+ *
+ * A row that can't be parsed comes back with an error instead of a product and
+ * reading carries on with the next one. Rows longer than maxRowLength characters are
+ * skipped the same way, so a broken quote or a missing line break can't make the
+ * reader buffer the rest of the file.
+ */
+public abstract class ProductImportReader
+{
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+
+    protected final int maxRowLength;
+    protected long line = 1;
+
+    protected ProductImportReader(Reader reader, int maxRowLength)
+    {
+        this.reader = reader;
+        this.maxRowLength = maxRowLength;
+    }
+
+    /**
+     * @param mediaType CSV or NDJSON
+     * @throws IllegalArgumentException if the media type isn't supported or the CSV header is invalid
+     */
+    public static ProductImportReader open(String mediaType, Reader reader, ObjectMapper objectMapper, int maxRowLength) throws IOException
+    {
+        if (CSV.equalsIgnoreCase(mediaType))
+            return new Csv(reader, maxRowLength);
+        if (NDJSON.equalsIgnoreCase(mediaType))
+            return new Ndjson(reader, objectMapper, maxRowLength);
+
+        throw new IllegalArgumentException("Imports must be " + CSV + " or " + NDJSON + ".");
+    }
+
+    /**
+     * @return the next row, or null at the end of the input
+     */
+    public abstract Row next() throws IOException;
+
+    protected int read() throws IOException
+    {
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position++];
+    }
+
+    protected int peek() throws IOException
+    {
+        if (position == limit && !fill())
+            return -1;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException
+    {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0)
+            return false;
+
+        position = 0;
+        limit = count;
+        return true;
+    }
+
+    public static class Row
+    {
+        private final long line;
+        private final Product product;
+        private final String error;
+
+        private Row(long line, Product product, String error)
+        {
+            this.line = line;
+            this.product = product;
+            this.error = error;
+        }
+
+        public static Row of(long line, Product product)
+        {
+            return new Row(line, product, null);
+        }
+
+        public static Row failed(long line, String error)
+        {
+            return new Row(line, null, error);
+        }
+
+        /**
+         * @return the line the row starts on
+         */
+        public long getLine()
+        {
+            return line;
+        }
+
+        /**
+         * @return the parsed product, or null if the row failed to parse
+         */
+        public Product getProduct()
+        {
+            return product;
+        }
+
+        public String getError()
+        {
+            return error;
+        }
+    }
+
+    private static class Csv extends ProductImportReader
+    {
+        private enum Column { PRODUCT_ID, NAME, PRICE, CATEGORY_ID, DESCRIPTION, COLOR, STOCK, FEATURED, IMAGE_URL }
+
+        private final Column[] columns;
+
+        // State of the record being read
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private int recordLength;
+        private boolean tooLong;
+        private boolean unterminated;
+
+        private Csv(Reader reader, int maxRowLength) throws IOException
+        {
+            super(reader, maxRowLength);
+
+            if (!readRecord() || tooLong || unterminated)
+                throw new IllegalArgumentException("The CSV must start with a header row.");
+
+            columns = new Column[fields.size()];
+            boolean[] present = new boolean[Column.values().length];
+            for (int i = 0; i < columns.length; i++)
+            {
+                columns[i] = column(fields.get(i));
+                if (present[columns[i].ordinal()])
+                    throw new IllegalArgumentException("Column " + fields.get(i) + " appears twice.");
+                present[columns[i].ordinal()] = true;
+            }
+
+            for (Column required : new Column[] { Column.NAME, Column.PRICE, Column.CATEGORY_ID })
+            {
+                if (!present[required.ordinal()])
+                    throw new IllegalArgumentException("The CSV header has no " + required.name().toLowerCase(Locale.ROOT) + " column.");
+            }
+        }
+
+        @Override
+        public Row next() throws IOException
+        {
+            while (true)
+            {
+                long start = line;
+                if (!readRecord())
+                    return null;
+
+                // Blank lines between rows are allowed
+                if (fields.size() == 1 && fields.get(0).isEmpty() && !tooLong)
+                    continue;
+
+                if (tooLong)
+                    return Row.failed(start, "Row is longer than " + maxRowLength + " characters.");
+                if (unterminated)
+                    return Row.failed(start, "Quoted field is never closed.");
+                if (fields.size() != columns.length)
+                    return Row.failed(start, "Expected " + columns.length + " fields but found " + fields.size() + ".");
+
+                try
+                {
+                    return Row.of(start, toProduct());
+                }
+                catch (IllegalArgumentException e)
+                {
+                    return Row.failed(start, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Reads one record into fields.
+         *
+         * @return false at the end of the input
+         */
+        private boolean readRecord() throws IOException
+        {
+            fields.clear();
+            field.setLength(0);
+            recordLength = 0;
+            tooLong = false;
+            unterminated = false;
+
+            boolean quoted = false;
+            int c = read();
+            if (c == -1)
+                return false;
+
+            while (c != -1)
+            {
+                if (quoted)
+                {
+                    if (c == '"')
+                    {
+                        if (peek() == '"')
+                            append((char) read());
+                        else
+                            quoted = false;
+                    }
+                    else
+                    {
+                        if (c == '\n')
+                            line++;
+                        append((char) c);
+                    }
+                }
+                else if (c == ',')
+                {
+                    endField();
+                }
+                else if (c == '\n')
+                {
+                    line++;
+                    break;
+                }
+                else if (c == '"' && field.length() == 0)
+                {
+                    quoted = true;
+                }
+                else if (c != '\r')
+                {
+                    append((char) c);
+                }
+
+                c = read();
+            }
+
+            unterminated = quoted;
+            endField();
+            return true;
+        }
+
+        private void append(char c)
+        {
+            if (++recordLength > maxRowLength)
+                tooLong = true;
+            else
+                field.append(c);
+        }
+
+        private void endField()
+        {
+            fields.add(field.toString());
+            field.setLength(0);
+        }
+
+        private Product toProduct()
+        {
+            Product product = new Product();
+            for (int i = 0; i < columns.length; i++)
+            {
+                String value = fields.get(i);
+                switch (columns[i])
+                {
+                    case PRODUCT_ID: product.setProductId(value.isBlank() ? 0 : parseInt("productId", value)); break;
+                    case NAME: product.setName(value); break;
+                    case PRICE: product.setPrice(parseDecimal("price", value)); break;
+                    case CATEGORY_ID: product.setCategoryId(parseInt("categoryId", value)); break;
+                    case DESCRIPTION: product.setDescription(value); break;
+                    case COLOR: product.setColor(value); break;
+                    case STOCK: product.setStock(value.isBlank() ? 0 : parseInt("stock", value)); break;
+                    case FEATURED: product.setFeatured(parseBoolean(value)); break;
+                    case IMAGE_URL: product.setImageUrl(value); break;
+                }
+            }
+            return product;
+        }
+
+        private static Column column(String header)
+        {
+            String name = header.trim().replaceAll("[_\\- ]", "").toLowerCase(Locale.ROOT);
+            for (Column column : Column.values())
+            {
+                if (column.name().replace("_", "").toLowerCase(Locale.ROOT).equals(name))
+                    return column;
+            }
+            throw new IllegalArgumentException("Unknown column: " + header + ".");
+        }
+
+        private static int parseInt(String column, String value)
+        {
+            try
+            {
+                return Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException(column + " must be a whole number.");
+            }
+        }
+
+        private static BigDecimal parseDecimal(String column, String value)
+        {
+            try
+            {
+                return new BigDecimal(value.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException(column + " must be a number.");
+            }
+        }
+
+        private static boolean parseBoolean(String value)
+        {
+            switch (value.trim().toLowerCase(Locale.ROOT))
+            {
+                case "": case "false": case "0": case "no": return false;
+                case "true": case "1": case "yes": return true;
+                default: throw new IllegalArgumentException("featured must be true or false.");
+            }
+        }
+    }
+
+    private static class Ndjson extends ProductImportReader
+    {
+        private final ObjectMapper objectMapper;
+        private final StringBuilder text = new StringBuilder();
+
+        private Ndjson(Reader reader, ObjectMapper objectMapper, int maxRowLength)
+        {
+            super(reader, maxRowLength);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Row next() throws IOException
+        {
+            while (true)
+            {
+                long start = line;
+                text.setLength(0);
+                boolean tooLong = false;
+
+                int c = read();
+                if (c == -1)
+                    return null;
+
+                while (c != -1 && c != '\n')
+                {
+                    if (c != '\r')
+                    {
+                        if (text.length() < maxRowLength)
+                            text.append((char) c);
+                        else
+                            tooLong = true;
+                    }
+                    c = read();
+                }
+                line++;
+
+                if (tooLong)
+                    return Row.failed(start, "Row is longer than " + maxRowLength + " characters.");
+                if (text.toString().isBlank())
+                    continue;
+
+                try
+                {
+                    return Row.of(start, objectMapper.readValue(text.toString(), Product.class));
+                }
+                catch (JsonProcessingException e)
+                {
+                    return Row.failed(start, "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportError;
+import org.yearup.models.ProductImportReport;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bulk product import behind POST /products/import.
+ *
+ * Rows are streamed from the body by ProductImportReader, validated, and written in
+ * chunks of products.import.chunk-size through ProductDao.importBatch, one
+ * transaction per chunk. Memory is one chunk plus at most products.import.max-errors
+ * error entries, whatever the size of the file. A chunk the database rejects is
+ * retried row by row so the report can name the rows at fault; chunks already
+ * committed stay committed.
+ */
+@Component
+public class ProductImporter
+{
+    private static final Logger logger = LoggerFactory.getLogger(ProductImporter.class);
+
+    private static final BigDecimal MAX_PRICE = new BigDecimal("99999999.99");
+
+    private final ProductDao productDao;
+    private final CategoryDao categoryDao;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int maxRowLength;
+
+    public ProductImporter(ProductDao productDao,
+                           CategoryDao categoryDao,
+                           ObjectMapper objectMapper,
+                           @Value("${products.import.chunk-size:500}") int chunkSize,
+                           @Value("${products.import.max-errors:100}") int maxErrors,
+                           @Value("${products.import.max-row-length:65536}") int maxRowLength)
+    {
+        this.productDao = productDao;
+        this.categoryDao = categoryDao;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.maxRowLength = maxRowLength;
+    }
+
+    /**
+     * @param mediaType ProductImportReader.CSV or ProductImportReader.NDJSON
+     * @param body the request body
+     * @throws IllegalArgumentException if the media type isn't supported or the CSV header is invalid
+     */
+    public ProductImportReport importProducts(String mediaType, Reader body) throws IOException
+    {
+        long started = System.nanoTime();
+        ProductImportReport report = new ProductImportReport();
+
+        Set<Integer> categoryIds = new HashSet<>();
+        for (Category category : categoryDao.getAllCategories())
+        {
+            categoryIds.add(category.getCategoryId());
+        }
+
+        ProductImportReader reader = ProductImportReader.open(mediaType, body, objectMapper, maxRowLength);
+        List<Product> chunk = new ArrayList<>(chunkSize);
+        List<Long> lines = new ArrayList<>(chunkSize);
+
+        ProductImportReader.Row row;
+        while ((row = reader.next()) != null)
+        {
+            report.setRowsRead(report.getRowsRead() + 1);
+
+            String error = row.getError() != null ? row.getError() : validate(row.getProduct(), categoryIds);
+            if (error != null)
+            {
+                fail(report, row.getLine(), error);
+                continue;
+            }
+
+            chunk.add(row.getProduct());
+            lines.add(row.getLine());
+            if (chunk.size() == chunkSize)
+                write(report, chunk, lines);
+        }
+        write(report, chunk, lines);
+
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        report.setElapsedMillis(elapsedMillis);
+        report.setRowsPerSecond(report.getRowsRead() * 1000 / Math.max(1, elapsedMillis));
+
+        logger.info("Imported {} row(s) in {} ms: {} inserted, {} updated, {} failed.",
+                report.getRowsRead(), elapsedMillis, report.getInserted(), report.getUpdated(), report.getFailed());
+        return report;
+    }
+
+    private void write(ProductImportReport report, List<Product> chunk, List<Long> lines)
+    {
+        if (chunk.isEmpty())
+            return;
+
+        try
+        {
+            count(report, chunk.size(), productDao.importBatch(chunk));
+        }
+        catch (RuntimeException e)
+        {
+            // Find the rows the database refuses; the rest still go in, one at a time
+            for (int i = 0; i < chunk.size(); i++)
+            {
+                try
+                {
+                    count(report, 1, productDao.importBatch(List.of(chunk.get(i))));
+                }
+                catch (RuntimeException rowFailure)
+                {
+                    Throwable cause = rowFailure.getCause() != null ? rowFailure.getCause() : rowFailure;
+                    fail(report, lines.get(i), "Rejected by the database: " + cause.getMessage());
+                }
+            }
+        }
+
+        chunk.clear();
+        lines.clear();
+    }
+
+    private static void count(ProductImportReport report, int written, int inserted)
+    {
+        report.setInserted(report.getInserted() + inserted);
+        report.setUpdated(report.getUpdated() + written - inserted);
+    }
+
+    private void fail(ProductImportReport report, long line, String message)
+    {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < maxErrors)
+            report.getErrors().add(new ProductImportError(line, message));
+        else
+            report.setErrorsTruncated(true);
+    }
+
+    /**
+     * @return what is wrong with the product, or null if it can be imported
+     */
+    static String validate(Product product, Set<Integer> categoryIds)
+    {
+        if (product.getProductId() < 0)
+            return "productId must not be negative.";
+        if (product.getName() == null || product.getName().isBlank())
+            return "name is required.";
+        if (product.getName().length() > 100)
+            return "name must be at most 100 characters.";
+        if (product.getPrice() == null)
+            return "price is required.";
+        if (product.getPrice().signum() < 0 || product.getPrice().compareTo(MAX_PRICE) > 0 || product.getPrice().stripTrailingZeros().scale() > 2)
+            return "price must be between 0 and " + MAX_PRICE + " with at most 2 decimals.";
+        if (!categoryIds.contains(product.getCategoryId()))
+            return "categoryId " + product.getCategoryId() + " does not exist.";
+        if (product.getColor() != null && product.getColor().length() > 20)
+            return "color must be at most 20 characters.";
+        if (product.getImageUrl() != null && product.getImageUrl().length() > 200)
+            return "imageUrl must be at most 200 characters.";
+        if (product.getStock() < 0)
+            return "stock must not be negative.";
+
+        return null;
+    }
+}
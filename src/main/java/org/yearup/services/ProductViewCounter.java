@@ -0,0 +1,132 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductViewDao;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts product page views in memory and adds them to the product_views table
+ * every product-views.flush-interval-ms, so a page view never writes to the database.
+ *
+ * Each product has a LongAdder, which spreads concurrent increments over striped
+ * cells instead of making every request thread fight over one counter. A flush
+ * drains each adder with sumThenReset, so views counted while it runs go into the
+ * next flush, and writes all non-zero counts with one batched upsert. If that write
+ * fails the counts are added back and retried on the next flush. The last flush
+ * runs on shutdown, so a graceful stop loses nothing; a crash loses at most one
+ * interval's views.
+ *
+ * At most product-views.max-products products are tracked; views of any others
+ * (only possible for ids that aren't in the catalog) are counted as dropped. Only
+ * a product the caller has looked up gets a counter: views answered without a
+ * lookup (304s) are added to products already counted here and dropped otherwise,
+ * so requests for made-up ids can't fill the slots.
+ */
+@Component
+public class ProductViewCounter
+{
+    private static final Logger logger = LoggerFactory.getLogger(ProductViewCounter.class);
+
+    private final ProductViewDao productViewDao;
+    private final int maxProducts;
+
+    // Adders are never removed, so an increment can't land on one a flush has let go of
+    private final ConcurrentHashMap<Integer, LongAdder> views = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    public ProductViewCounter(ProductViewDao productViewDao,
+                              @Value("${product-views.max-products:100000}") int maxProducts)
+    {
+        this.productViewDao = productViewDao;
+        this.maxProducts = maxProducts;
+    }
+
+    /**
+     * Counts a view of a product the caller has found in the catalog.
+     */
+    public void record(int productId)
+    {
+        LongAdder adder = views.get(productId);
+        if (adder == null)
+        {
+            if (views.size() >= maxProducts)
+            {
+                dropped.increment();
+                return;
+            }
+            adder = views.computeIfAbsent(productId, id -> new LongAdder());
+        }
+        adder.increment();
+    }
+
+    /**
+     * Counts a view of a product that wasn't looked up, if this node already counts
+     * views of it; otherwise the view is dropped.
+     */
+    public void recordIfCounted(int productId)
+    {
+        LongAdder adder = views.get(productId);
+        if (adder == null)
+            dropped.increment();
+        else
+            adder.increment();
+    }
+
+    @Scheduled(initialDelayString = "${product-views.flush-interval-ms:5000}",
+               fixedDelayString = "${product-views.flush-interval-ms:5000}")
+    public synchronized void flush()
+    {
+        Map<Integer, Long> pending = new HashMap<>();
+        views.forEach((productId, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0)
+                pending.put(productId, count);
+        });
+
+        if (pending.isEmpty())
+            return;
+
+        try
+        {
+            productViewDao.addViews(pending);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Flushing views for {} product(s) failed; keeping them for the next flush.", pending.size(), e);
+            pending.forEach((productId, count) -> views.get(productId).add(count));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        flush();
+    }
+
+    /**
+     * @return views recorded on this node that have not been flushed yet
+     */
+    public long getPending()
+    {
+        long pending = 0;
+        for (LongAdder adder : views.values())
+        {
+            pending += adder.sum();
+        }
+        return pending;
+    }
+
+    public long getDropped()
+    {
+        return dropped.sum();
+    }
+}
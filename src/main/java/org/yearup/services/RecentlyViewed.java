@@ -0,0 +1,132 @@
+package org.yearup.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last few products each logged-in user looked at, kept only in memory.
+ *
+ * Each user gets a fixed-size ring buffer of recent.per-user product ids; viewing a
+ * product already in the buffer moves it to the front. Users are spread over
+ * recent.stripes independently locked LRU maps, so concurrent page views rarely
+ * contend, and each stripe holds at most its share of recent.max-users users,
+ * evicting whoever has been idle longest. Total memory is therefore bounded by
+ * max-users * per-user ids whatever the traffic. The list is lost on restart,
+ * which is fine for a "recently viewed" rail.
+ */
+@Component
+public class RecentlyViewed
+{
+    private final int perUser;
+    private final Map<String, Ring>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public RecentlyViewed(@Value("${recent.per-user:20}") int perUser,
+                          @Value("${recent.max-users:100000}") int maxUsers,
+                          @Value("${recent.stripes:16}") int stripeCount)
+    {
+        this.perUser = perUser;
+        this.stripes = new Map[stripeCount];
+
+        int usersPerStripe = Math.max(1, maxUsers / stripeCount);
+        for (int i = 0; i < stripeCount; i++)
+        {
+            stripes[i] = new LinkedHashMap<>(16, 0.75f, true)
+            {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest)
+                {
+                    return size() > usersPerStripe;
+                }
+            };
+        }
+    }
+
+    public void record(String username, int productId)
+    {
+        Map<String, Ring> stripe = stripeFor(username);
+        synchronized (stripe)
+        {
+            stripe.computeIfAbsent(username, u -> new Ring(perUser)).push(productId);
+        }
+    }
+
+    /**
+     * @return the user's recently viewed product ids, most recent first
+     */
+    public List<Integer> get(String username)
+    {
+        Map<String, Ring> stripe = stripeFor(username);
+        synchronized (stripe)
+        {
+            Ring ring = stripe.get(username);
+            return ring == null ? List.of() : ring.newestFirst();
+        }
+    }
+
+    private Map<String, Ring> stripeFor(String username)
+    {
+        return stripes[Math.floorMod(username.hashCode() * 0x9E3779B9, stripes.length)];
+    }
+
+    /**
+     * Fixed-size buffer of ids; the oldest is overwritten once it is full.
+     */
+    private static class Ring
+    {
+        private final int[] ids;
+        private int head = 0; // next slot to write
+        private int size = 0;
+
+        private Ring(int capacity)
+        {
+            this.ids = new int[capacity];
+        }
+
+        private void push(int productId)
+        {
+            remove(productId);
+
+            ids[head] = productId;
+            head = (head + 1) % ids.length;
+            if (size < ids.length)
+                size++;
+        }
+
+        private void remove(int productId)
+        {
+            // Walk from newest to oldest; close the gap by shifting the newer ids back one slot
+            for (int i = 0; i < size; i++)
+            {
+                int slot = Math.floorMod(head - 1 - i, ids.length);
+                if (ids[slot] != productId)
+                    continue;
+
+                for (int j = i; j > 0; j--)
+                {
+                    int to = Math.floorMod(head - 1 - j, ids.length);
+                    int from = Math.floorMod(head - j, ids.length);
+                    ids[to] = ids[from];
+                }
+                head = Math.floorMod(head - 1, ids.length);
+                size--;
+                return;
+            }
+        }
+
+        private List<Integer> newestFirst()
+        {
+            List<Integer> newest = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                newest.add(ids[Math.floorMod(head - 1 - i, ids.length)]);
+            }
+            return newest;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.OrderDao;
+import org.yearup.util.IntIntHashMap;
+import org.yearup.util.IntObjectHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Frequently bought together": for each product, the products that most often
+ * appear in the same order.
+ *
+ * Co-occurrence counts are a sparse matrix held as an int-keyed map of int-to-int
+ * maps, updated from every committed order. Each product keeps counts for at most
+ * related.max-candidates neighbors; when it goes over, the weaker half is dropped,
+ * so memory is bounded per product and a product with a long tail of one-off
+ * pairings doesn't grow without limit. After each update the product's best
+ * related.max-neighbors neighbors are written to a ready-made array, so a read is
+ * one map lookup.
+ *
+ * On startup the counts are rebuilt in the background from the newest
+ * related.warmup.max-orders orders, a chunk at a time.
+ */
+@Component
+public class RelatedProducts
+{
+    private static final Logger logger = LoggerFactory.getLogger(RelatedProducts.class);
+    private static final int[] NONE = new int[0];
+
+    private final OrderDao orderDao;
+    private final int maxNeighbors;
+    private final int maxCandidates;
+    private final int maxLinesPerOrder;
+    private final int warmupMaxOrders;
+    private final int warmupChunkSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final IntObjectHashMap<IntIntHashMap> counts = new IntObjectHashMap<>();
+    // Published arrays are never modified, so readers may keep them
+    private final IntObjectHashMap<int[]> related = new IntObjectHashMap<>();
+
+    private Thread warmup;
+
+    public RelatedProducts(OrderDao orderDao,
+                           @Value("${related.max-neighbors:10}") int maxNeighbors,
+                           @Value("${related.max-candidates:50}") int maxCandidates,
+                           @Value("${related.max-lines-per-order:50}") int maxLinesPerOrder,
+                           @Value("${related.warmup.max-orders:50000}") int warmupMaxOrders,
+                           @Value("${related.warmup.chunk-size:1000}") int warmupChunkSize)
+    {
+        this.orderDao = orderDao;
+        this.maxNeighbors = maxNeighbors;
+        this.maxCandidates = Math.max(maxCandidates, maxNeighbors * 2);
+        this.maxLinesPerOrder = maxLinesPerOrder;
+        this.warmupMaxOrders = warmupMaxOrders;
+        this.warmupChunkSize = warmupChunkSize;
+    }
+
+    @PostConstruct
+    public void start()
+    {
+        if (warmupMaxOrders <= 0)
+            return;
+
+        warmup = new Thread(this::warmUp, "related-products-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if (warmup != null)
+            warmup.interrupt();
+    }
+
+    /**
+     * Counts every pair of distinct products in a committed order.
+     *
+     * @param productIds the products on the order's lines
+     */
+    public void recordOrder(Collection<Integer> productIds)
+    {
+        int[] ids = productIds.stream().mapToInt(Integer::intValue).distinct().limit(maxLinesPerOrder).toArray();
+        if (ids.length < 2)
+            return;
+
+        lock.writeLock().lock();
+        try
+        {
+            for (int productId : ids)
+            {
+                IntIntHashMap neighbors = counts.computeIfAbsent(productId, id -> new IntIntHashMap());
+                for (int other : ids)
+                {
+                    if (other != productId)
+                        neighbors.addTo(other, 1);
+                }
+
+                if (neighbors.size() > maxCandidates)
+                    counts.put(productId, neighbors = keepStrongest(neighbors, maxCandidates / 2));
+
+                related.put(productId, strongest(neighbors, maxNeighbors));
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the ids of the products most often bought with this one, strongest first
+     */
+    public int[] getRelated(int productId)
+    {
+        lock.readLock().lock();
+        try
+        {
+            int[] neighbors = related.get(productId);
+            return neighbors == null ? NONE : neighbors;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void warmUp()
+    {
+        int before = Integer.MAX_VALUE;
+        int loaded = 0;
+
+        try
+        {
+            while (loaded < warmupMaxOrders && !Thread.currentThread().isInterrupted())
+            {
+                Map<Integer, List<Integer>> orders = orderDao.getProductIdsByOrder(before, Math.min(warmupChunkSize, warmupMaxOrders - loaded));
+                if (orders.isEmpty())
+                    break;
+
+                for (Map.Entry<Integer, List<Integer>> order : orders.entrySet())
+                {
+                    recordOrder(order.getValue());
+                    before = Math.min(before, order.getKey());
+                }
+                loaded += orders.size();
+            }
+
+            logger.info("Loaded product co-occurrence from {} order(s).", loaded);
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Loading product co-occurrence from order history failed after {} order(s).", loaded, e);
+        }
+    }
+
+    private static IntIntHashMap keepStrongest(IntIntHashMap neighbors, int keep)
+    {
+        int[] kept = strongest(neighbors, keep);
+        IntIntHashMap pruned = new IntIntHashMap(kept.length * 2);
+        for (int productId : kept)
+        {
+            pruned.put(productId, neighbors.get(productId));
+        }
+        return pruned;
+    }
+
+    /**
+     * @return up to limit keys with the highest counts, highest first
+     */
+    private static int[] strongest(IntIntHashMap neighbors, int limit)
+    {
+        // Count in the high half, id in the low half: one primitive sort orders by count
+        long[] packed = new long[neighbors.size()];
+        int[] index = {0};
+        neighbors.forEach((productId, count) -> packed[index[0]++] = ((long) count << 32) | (productId & 0xFFFFFFFFL));
+        Arrays.sort(packed);
+
+        int[] top = new int[Math.min(limit, packed.length)];
+        for (int i = 0; i < top.length; i++)
+        {
+            top[i] = (int) packed[packed.length - 1 - i];
+        }
+        return top;
+    }
+}
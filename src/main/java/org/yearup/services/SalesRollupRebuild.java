@@ -0,0 +1,154 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.SalesReportDao;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Back-fills the sales rollups from order history, e.g. after the rollup tables
+ * were added or a bug was fixed.
+ *
+ * Runs in the background one day at a time, each day its own transaction, with
+ * reports.rebuild.pause-ms between days so it never holds locks for long. Today is
+ * never rebuilt: checkouts are still adding to it, and rebuilding it would race them.
+ * Only one rebuild runs at a time.
+ */
+@Component
+public class SalesRollupRebuild
+{
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupRebuild.class);
+
+    private final SalesReportDao salesReportDao;
+    private final Clock clock;
+    private final long pauseMs;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "sales-rollup-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean running = false;
+    private LocalDate from;
+    private LocalDate to;
+    private LocalDate current;
+    private int daysDone;
+    private String lastError;
+
+    public SalesRollupRebuild(SalesReportDao salesReportDao,
+                              @Value("${reports.rebuild.pause-ms:100}") long pauseMs)
+    {
+        this(salesReportDao, Clock.systemDefaultZone(), pauseMs);
+    }
+
+    SalesRollupRebuild(SalesReportDao salesReportDao, Clock clock, long pauseMs)
+    {
+        this.salesReportDao = salesReportDao;
+        this.clock = clock;
+        this.pauseMs = pauseMs;
+    }
+
+    /**
+     * Starts rebuilding the rollups for a range of days.
+     *
+     * @param from the first day, or null to start at the oldest order
+     * @param to the last day, or null for yesterday; clamped to yesterday
+     * @return false if a rebuild is already running
+     */
+    public synchronized boolean start(LocalDate from, LocalDate to)
+    {
+        if (running)
+            return false;
+
+        LocalDate yesterday = LocalDate.now(clock).minusDays(1);
+        LocalDate end = to == null || to.isAfter(yesterday) ? yesterday : to;
+        LocalDate start = from != null ? from : salesReportDao.getFirstOrderDate();
+        if (start == null)
+            start = end.plusDays(1);
+
+        this.running = true;
+        this.from = start;
+        this.to = end;
+        this.current = null;
+        this.daysDone = 0;
+        this.lastError = null;
+
+        LocalDate first = start;
+        runner.execute(() -> rebuild(first, end));
+        return true;
+    }
+
+    public synchronized Map<String, Object> getStatus()
+    {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("from", from);
+        status.put("to", to);
+        status.put("current", current);
+        status.put("daysDone", daysDone);
+        status.put("lastError", lastError);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        runner.shutdownNow();
+    }
+
+    private void rebuild(LocalDate first, LocalDate last)
+    {
+        try
+        {
+            for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1))
+            {
+                synchronized (this)
+                {
+                    current = day;
+                }
+
+                salesReportDao.rebuildDay(day);
+
+                synchronized (this)
+                {
+                    daysDone++;
+                }
+
+                if (pauseMs > 0)
+                    Thread.sleep(pauseMs);
+            }
+
+            logger.info("Rebuilt sales rollups from {} to {}.", first, last);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Sales rollup rebuild failed.", e);
+            synchronized (this)
+            {
+                lastError = e.getMessage();
+            }
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                running = false;
+                current = null;
+            }
+        }
+    }
+}
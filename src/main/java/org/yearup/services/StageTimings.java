@@ -0,0 +1,59 @@
+package org.yearup.services;
+
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Wall-clock time spent in each stage of one request, reported to the client in a
+ * Server-Timing header (visible in the browser's network panel). Stages may run on
+ * different threads; comparing their durations with the total shows which one is
+ * on the critical path.
+ */
+public class StageTimings
+{
+    public static final String HEADER = "Server-Timing";
+
+    private final long startNanos = System.nanoTime();
+    private final Queue<String> entries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Runs a stage on the calling thread and records how long it took.
+     */
+    public <T> T time(String stage, Supplier<T> work)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return work.get();
+        }
+        finally
+        {
+            record(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void record(String stage, long nanos)
+    {
+        entries.add(format(stage, nanos));
+    }
+
+    /**
+     * @return the header value, stages in the order they finished followed by the total so far
+     */
+    public String toHeader()
+    {
+        StringBuilder header = new StringBuilder();
+        for (String entry : entries)
+        {
+            header.append(entry).append(", ");
+        }
+        return header.append(format("total", System.nanoTime() - startNanos)).toString();
+    }
+
+    private static String format(String stage, long nanos)
+    {
+        return String.format(Locale.ROOT, "%s;dur=%.1f", stage, nanos / 1_000_000.0);
+    }
+}
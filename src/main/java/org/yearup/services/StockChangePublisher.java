@@ -0,0 +1,44 @@
+package org.yearup.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+
+/**
+ * Makes stock changes visible to the catalog ETags and cached listings.
+ *
+ * Reserving, releasing and leasing stock only note which products changed; taking
+ * the catalog version on every checkout would serialize checkouts on the
+ * catalog_version row. Every stock.publish-interval-ms this job publishes the noted
+ * products as one catalog write through ProductDao.publishStockChanges, which
+ * advances the version and evicts the listings they appear in, here and (through the
+ * invalidation poll) on the other nodes.
+ */
+@Component
+public class StockChangePublisher
+{
+    private static final Logger logger = LoggerFactory.getLogger(StockChangePublisher.class);
+
+    private final ProductDao productDao;
+
+    public StockChangePublisher(ProductDao productDao)
+    {
+        this.productDao = productDao;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.publish-interval-ms:1000}")
+    public void run()
+    {
+        try
+        {
+            int published = productDao.publishStockChanges();
+            logger.debug("Published stock changes for {} product(s).", published);
+        }
+        catch (Exception e)
+        {
+            logger.warn("Publishing stock changes failed; they are retried on the next run.", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.yearup.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.data.ProductDao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission layer in front of ProductDao.reserveStock.
+ *
+ * Checkouts for the same product queue on an in-process lock stripe instead of
+ * on the products row, so the database only ever sees one conditional stock update
+ * per product at a time from this node. Products found to be sold out are
+ * remembered and rejected without a database round trip for stock.sold-out-ttl-ms,
+ * or until the catalog changes or this node releases some of their stock. The short
+ * expiry covers stock coming back in ways this node doesn't see, such as another
+ * node releasing a failed order's units.
+ * Products configured as hot are served from HotStockLeases instead.
+ */
+@Component
+public class StockReservationService
+{
+    private final ProductDao productDao;
+    private final HotStockLeases hotStockLeases;
+    private final ReentrantLock[] stripes;
+    private final long soldOutTtlMs;
+    // Product id to the time it was found sold out
+    private final Map<Integer, Long> soldOut = new ConcurrentHashMap<>();
+
+    public StockReservationService(ProductDao productDao,
+                                   HotStockLeases hotStockLeases,
+                                   CatalogVersion catalogVersion,
+                                   @Value("${stock.lock-stripes:64}") int stripeCount,
+                                   @Value("${stock.sold-out-ttl-ms:1000}") long soldOutTtlMs)
+    {
+        this.productDao = productDao;
+        this.hotStockLeases = hotStockLeases;
+        this.soldOutTtlMs = soldOutTtlMs;
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++)
+        {
+            stripes[i] = new ReentrantLock();
+        }
+
+        catalogVersion.addListener(soldOut::clear);
+    }
+
+    /**
+     * Takes stock for every product in the order, or none of them.
+     *
+     * @param quantities product id to quantity wanted
+     * @return the ids of products without enough stock; empty if the stock was taken
+     */
+    public List<Integer> reserve(Map<Integer, Integer> quantities)
+    {
+        Map<Integer, Integer> hot = new HashMap<>();
+        Map<Integer, Integer> cold = new HashMap<>();
+        split(quantities, hot, cold);
+
+        if (!hot.isEmpty())
+        {
+            List<Integer> rejected = hotStockLeases.take(hot);
+            if (!rejected.isEmpty())
+                return rejected;
+        }
+
+        List<Integer> rejected = cold.isEmpty() ? List.of() : reserveFromDatabase(cold);
+        if (!rejected.isEmpty())
+            hotStockLeases.giveBack(hot);
+
+        return rejected;
+    }
+
+    /**
+     * Returns stock taken by reserve.
+     *
+     * @param quantities product id to quantity to return
+     */
+    public void release(Map<Integer, Integer> quantities)
+    {
+        Map<Integer, Integer> hot = new HashMap<>();
+        Map<Integer, Integer> cold = new HashMap<>();
+        split(quantities, hot, cold);
+
+        hotStockLeases.giveBack(hot);
+        if (!cold.isEmpty())
+        {
+            productDao.releaseStock(cold);
+            soldOut.keySet().removeAll(cold.keySet());
+        }
+    }
+
+    private void split(Map<Integer, Integer> quantities, Map<Integer, Integer> hot, Map<Integer, Integer> cold)
+    {
+        quantities.forEach((productId, quantity) -> {
+            if (hotStockLeases.isHot(productId))
+                hot.put(productId, quantity);
+            else
+                cold.put(productId, quantity);
+        });
+    }
+
+    private List<Integer> reserveFromDatabase(Map<Integer, Integer> quantities)
+    {
+        List<Integer> rejected = knownSoldOut(quantities);
+        if (!rejected.isEmpty())
+            return rejected;
+
+        // Take each stripe once, always in index order, so two orders can't deadlock
+        Set<Integer> stripeIndexes = new TreeSet<>();
+        for (int productId : quantities.keySet())
+        {
+            stripeIndexes.add(stripeFor(productId));
+        }
+
+        List<ReentrantLock> held = new ArrayList<>(stripeIndexes.size());
+        try
+        {
+            for (int index : stripeIndexes)
+            {
+                stripes[index].lock();
+                held.add(stripes[index]);
+            }
+
+            // Another checkout may have sold the last one while we waited
+            rejected = knownSoldOut(quantities);
+            if (!rejected.isEmpty())
+                return rejected;
+
+            List<Integer> unavailable = productDao.reserveStock(quantities);
+            for (int productId : unavailable)
+            {
+                // Failing to take a single unit means there is nothing left
+                if (quantities.get(productId) == 1)
+                    soldOut.put(productId, System.currentTimeMillis());
+            }
+            return unavailable;
+        }
+        finally
+        {
+            for (int i = held.size() - 1; i >= 0; i--)
+            {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    private List<Integer> knownSoldOut(Map<Integer, Integer> quantities)
+    {
+        long now = System.currentTimeMillis();
+        List<Integer> rejected = new ArrayList<>();
+        for (int productId : quantities.keySet())
+        {
+            Long since = soldOut.get(productId);
+            if (since == null)
+                continue;
+
+            if (now - since < soldOutTtlMs)
+                rejected.add(productId);
+            else
+                soldOut.remove(productId, since); // expired: ask the database again
+        }
+        return rejected;
+    }
+
+    private int stripeFor(int productId)
+    {
+        return Math.floorMod(Integer.hashCode(productId) * 0x9E3779B9, stripes.length);
+    }
+}
@@ -0,0 +1,93 @@
+package org.yearup.util;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch over int keys: approximate per-key counts in fixed memory
+ * (depth * width ints) however many distinct keys are added.
+ *
+ * Estimates never undercount. They overcount by at most about 2 * total / width
+ * with high probability; conservative update (only raising the counters that hold
+ * the current minimum) keeps the overcount well below that in practice.
+ * Not thread-safe.
+ */
+public class CountMinSketch
+{
+    private static final int[] SEEDS = {
+            0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F,
+            0x165667B1, 0xD3A2646C, 0xFD7046C5, 0xB55A4F09
+    };
+
+    private final int depth;
+    private final int mask;
+    private final int[] counts;
+
+    /**
+     * @param depth number of hash rows, 1 to 8; more rows make a large overcount less likely
+     * @param width counters per row, rounded up to a power of two; wider rows make overcounts smaller
+     */
+    public CountMinSketch(int depth, int width)
+    {
+        if (depth < 1 || depth > SEEDS.length)
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+        if (width < 1)
+            throw new IllegalArgumentException("width must be positive");
+
+        int size = Integer.highestOneBit(width);
+        if (size < width)
+            size <<= 1;
+
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counts = new int[depth * size];
+    }
+
+    /**
+     * Adds to a key's count.
+     *
+     * @return the key's new estimated count
+     */
+    public int add(int key, int count)
+    {
+        int updated = estimate(key) + count;
+
+        for (int row = 0; row < depth; row++)
+        {
+            int index = index(row, key);
+            if (counts[index] < updated)
+                counts[index] = updated;
+        }
+
+        return updated;
+    }
+
+    /**
+     * @return an estimate of the key's count, never lower than the true count
+     */
+    public int estimate(int key)
+    {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+        {
+            min = Math.min(min, counts[index(row, key)]);
+        }
+        return min;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(counts, 0);
+    }
+
+    private int index(int row, int key)
+    {
+        // murmur3 finalizer over the seeded key spreads sequential ids across the row
+        int h = key ^ SEEDS[row];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+}
@@ -0,0 +1,26 @@
+package org.yearup.util;
+
+/**
+ * Hash spreading shared by the primitive maps. Ids are often sequential, and
+ * masking a sequential key straight into a power-of-two table clusters the probes.
+ */
+final class IntHashing
+{
+    private IntHashing()
+    {
+    }
+
+    /**
+     * murmur3 32-bit finalizer
+     */
+    static int mix(int key)
+    {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
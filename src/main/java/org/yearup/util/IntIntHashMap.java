@@ -0,0 +1,212 @@
+package org.yearup.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int to int, for counters keyed by id.
+ *
+ * Keys and values live in two parallel int arrays with linear probing, so an entry
+ * costs 8 bytes plus slack instead of two boxed Integers and a node in a HashMap.
+ * Absent keys read as 0. Key 0 is kept outside the table, since 0 marks a free slot.
+ * Not thread-safe.
+ */
+public class IntIntHashMap
+{
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public interface EntryConsumer
+    {
+        void accept(int key, int value);
+    }
+
+    public IntIntHashMap()
+    {
+        this(8);
+    }
+
+    public IntIntHashMap(int expectedSize)
+    {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int get(int key)
+    {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : 0;
+
+        int slot = find(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    public boolean containsKey(int key)
+    {
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    public void put(int key, int value)
+    {
+        if (key == 0)
+        {
+            if (!hasZeroKey)
+                size++;
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+
+        int slot = slotFor(key);
+        while (keys[slot] != 0)
+        {
+            if (keys[slot] == key)
+            {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt)
+            rehash(keys.length << 1);
+    }
+
+    /**
+     * Adds delta to the key's value, inserting it as delta if absent.
+     *
+     * @return the new value
+     */
+    public int addTo(int key, int delta)
+    {
+        int updated = get(key) + delta;
+        put(key, updated);
+        return updated;
+    }
+
+    public void remove(int key)
+    {
+        if (key == 0)
+        {
+            if (hasZeroKey)
+                size--;
+            hasZeroKey = false;
+            zeroValue = 0;
+            return;
+        }
+
+        int slot = find(key);
+        if (slot < 0)
+            return;
+
+        // Backward-shift deletion: pull later entries of the probe run into the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0)
+        {
+            int home = slotFor(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask))
+            {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void forEach(EntryConsumer consumer)
+    {
+        if (hasZeroKey)
+            consumer.accept(0, zeroValue);
+
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (keys[slot] != 0)
+                consumer.accept(keys[slot], values[slot]);
+        }
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    private int find(int key)
+    {
+        int slot = slotFor(key);
+        while (keys[slot] != 0)
+        {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotFor(int key)
+    {
+        return IntHashing.mix(key) & mask;
+    }
+
+    private void rehash(int capacity)
+    {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        for (int slot = 0; slot < oldKeys.length; slot++)
+        {
+            int key = oldKeys[slot];
+            if (key == 0)
+                continue;
+
+            int target = slotFor(key);
+            while (keys[target] != 0)
+            {
+                target = (target + 1) & mask;
+            }
+            keys[target] = key;
+            values[target] = oldValues[slot];
+        }
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    static int capacityFor(int expectedSize)
+    {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 4) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+}
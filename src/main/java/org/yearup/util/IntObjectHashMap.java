@@ -0,0 +1,203 @@
+package org.yearup.util;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Open-addressing hash map from int to an object, the int-keyed counterpart of
+ * HashMap&lt;Integer, V&gt; without boxing the key or allocating a node per entry.
+ * Key 0 is kept outside the table, since 0 marks a free slot. Null values are not
+ * allowed. Not thread-safe.
+ */
+public class IntObjectHashMap<V>
+{
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private V zeroValue;
+
+    public interface EntryConsumer<V>
+    {
+        void accept(int key, V value);
+    }
+
+    public IntObjectHashMap()
+    {
+        this(8);
+    }
+
+    public IntObjectHashMap(int expectedSize)
+    {
+        allocate(IntIntHashMap.capacityFor(expectedSize));
+    }
+
+    /**
+     * @return the value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key)
+    {
+        if (key == 0)
+            return zeroValue;
+
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public void put(int key, V value)
+    {
+        if (value == null)
+            throw new IllegalArgumentException("null values are not supported");
+
+        if (key == 0)
+        {
+            if (zeroValue == null)
+                size++;
+            zeroValue = value;
+            return;
+        }
+
+        int slot = slotFor(key);
+        while (keys[slot] != 0)
+        {
+            if (keys[slot] == key)
+            {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt)
+            rehash(keys.length << 1);
+    }
+
+    public V computeIfAbsent(int key, IntFunction<V> create)
+    {
+        V value = get(key);
+        if (value == null)
+        {
+            value = create.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void remove(int key)
+    {
+        if (key == 0)
+        {
+            if (zeroValue != null)
+                size--;
+            zeroValue = null;
+            return;
+        }
+
+        int slot = find(key);
+        if (slot < 0)
+            return;
+
+        // Backward-shift deletion: pull later entries of the probe run into the gap
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0)
+        {
+            int home = slotFor(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask))
+            {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        size--;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<V> consumer)
+    {
+        if (zeroValue != null)
+            consumer.accept(0, zeroValue);
+
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (keys[slot] != 0)
+                consumer.accept(keys[slot], (V) values[slot]);
+        }
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        zeroValue = null;
+        size = 0;
+    }
+
+    private int find(int key)
+    {
+        int slot = slotFor(key);
+        while (keys[slot] != 0)
+        {
+            if (keys[slot] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slotFor(int key)
+    {
+        return IntHashing.mix(key) & mask;
+    }
+
+    private void rehash(int capacity)
+    {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        for (int slot = 0; slot < oldKeys.length; slot++)
+        {
+            int key = oldKeys[slot];
+            if (key == 0)
+                continue;
+
+            int target = slotFor(key);
+            while (keys[target] != 0)
+            {
+                target = (target + 1) & mask;
+            }
+            keys[target] = key;
+            values[target] = oldValues[slot];
+        }
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,179 @@
+package org.yearup.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.data.OrderDao;
+import org.yearup.models.Order;
+import org.yearup.models.OrderCursor;
+import org.yearup.models.OrderLineItem;
+import org.yearup.services.CheckoutPipeline;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Orders per second with and without the group-commit CheckoutPipeline, at 1, 16
+ * and 128 concurrent clients.
+ *
+ * The stub OrderDao models a database whose commits are serialized on the log
+ * flush: each createOrders call holds a lock for commitLatencyMicros plus a few
+ * microseconds per order. "direct" is one transaction per checkout, as
+ * OrderController did before; "pipeline" goes through CheckoutPipeline.
+ *
+ * Run from the project root after `mvn test-compile`:
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *     org.yearup.benchmarks.CheckoutPipelineBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckoutPipelineBenchmark
+{
+    @Param({"1000"})
+    public long commitLatencyMicros;
+
+    private OrderDao orderDao;
+    private CheckoutPipeline pipeline;
+
+    @Setup
+    public void setup()
+    {
+        orderDao = new SlowCommitOrderDao(commitLatencyMicros);
+        pipeline = new CheckoutPipeline(orderDao, 64, 2, 10000);
+        pipeline.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException
+    {
+        pipeline.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Order direct_1()
+    {
+        return direct();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Order direct_16()
+    {
+        return direct();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public Order direct_128()
+    {
+        return direct();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Order pipeline_1()
+    {
+        return pipeline.submit(newOrder()).join();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Order pipeline_16()
+    {
+        return pipeline.submit(newOrder()).join();
+    }
+
+    @Benchmark
+    @Threads(128)
+    public Order pipeline_128()
+    {
+        return pipeline.submit(newOrder()).join();
+    }
+
+    private Order direct()
+    {
+        Order order = newOrder();
+        orderDao.createOrders(List.of(order));
+        return order;
+    }
+
+    private static Order newOrder()
+    {
+        OrderLineItem line = new OrderLineItem(0, 0, 7, 1, new BigDecimal("19.99"), BigDecimal.ZERO);
+
+        Order order = new Order(0, 3, LocalDateTime.now(), "1 Main St", "Dallas", "TX", "75001",
+                new BigDecimal("5.99"), new BigDecimal("19.99"));
+        order.setLineItems(List.of(line));
+        return order;
+    }
+
+    private static class SlowCommitOrderDao implements OrderDao
+    {
+        private final long commitLatencyNanos;
+        private int nextId = 1;
+
+        private SlowCommitOrderDao(long commitLatencyMicros)
+        {
+            this.commitLatencyNanos = TimeUnit.MICROSECONDS.toNanos(commitLatencyMicros);
+        }
+
+        @Override
+        public void createOrder(Order order)
+        {
+            createOrders(List.of(order));
+        }
+
+        @Override
+        public void addLineItem(OrderLineItem item)
+        {
+        }
+
+        @Override
+        public synchronized void createOrders(List<Order> orders)
+        {
+            LockSupport.parkNanos(commitLatencyNanos + orders.size() * 5_000L);
+            for (Order order : orders)
+            {
+                order.setId(nextId++);
+            }
+        }
+
+        @Override
+        public List<Order> getByUserId(int userId, OrderCursor after, int limit)
+        {
+            return List.of();
+        }
+
+        @Override
+        public Order getById(int orderId)
+        {
+            return null;
+        }
+
+        @Override
+        public Map<Integer, List<Integer>> getProductIdsByOrder(int beforeOrderId, int limit)
+        {
+            return Map.of();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(CheckoutPipelineBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,88 @@
+package org.yearup.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartItem;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old BigDecimal cart total (stream over the items, several
+ * BigDecimals per line) with the running total in cents.
+ *
+ * Run from the project root after `mvn test-compile`:
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *     org.yearup.benchmarks.ShoppingCartTotalBenchmark
+ *
+ * The GC profiler's gc.alloc.rate.norm column is the allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShoppingCartTotalBenchmark
+{
+    @Param({"3", "20"})
+    public int lines;
+
+    private ShoppingCart cart;
+
+    @Setup
+    public void setup()
+    {
+        cart = new ShoppingCart();
+        for (int i = 1; i <= lines; i++)
+        {
+            ShoppingCartItem item = new ShoppingCartItem();
+            item.setProduct(new Product(i, "Product " + i, new BigDecimal(i + ".99"), 1, "", "Black", 10, false, ""));
+            item.setQuantity(i % 4 + 1);
+            item.setDiscountPercent(new BigDecimal("0.10"));
+            cart.add(item);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTotal()
+    {
+        // The previous implementation of ShoppingCart.getTotal / ShoppingCartItem.getLineTotal
+        return cart.getItems().values()
+                .stream()
+                .map(i -> {
+                    BigDecimal subTotal = i.getProduct().getPrice().multiply(new BigDecimal(i.getQuantity()));
+                    return subTotal.subtract(subTotal.multiply(i.getDiscountPercent()));
+                })
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public long centsTotal()
+    {
+        return cart.getTotalCents();
+    }
+
+    @Benchmark
+    public BigDecimal centsTotalAtJsonBoundary()
+    {
+        // What a cart render pays: a single BigDecimal for the serialized total
+        return cart.getTotal();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(ShoppingCartTotalBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,240 @@
+package org.yearup.data.memory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InMemoryShoppingCartDaoTest
+{
+    @TempDir
+    Path tempDir;
+
+    private ProductDao productDao;
+
+    @BeforeEach
+    public void setup()
+    {
+        // Every product exists except 999
+        productDao = mock(ProductDao.class);
+        when(productDao.getById(anyInt())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        when(productDao.getByIds(anyList())).thenAnswer(invocation -> {
+            List<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(InMemoryShoppingCartDaoTest::product).filter(Objects::nonNull).toList();
+        });
+    }
+
+    private static Product product(int id)
+    {
+        return id == 999 ? null : new Product(id, "Product " + id, new BigDecimal("10.00"), 1, "", "", 5, false, "");
+    }
+
+    private InMemoryShoppingCartDao start() throws IOException
+    {
+        InMemoryShoppingCartDao dao = new InMemoryShoppingCartDao(productDao, 4, tempDir.toString(), false);
+        dao.recover();
+        return dao;
+    }
+
+    @Test
+    public void recover_shouldReplay_theChangeLogAfterACrash() throws IOException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        dao.addProductToCart(1, 10);
+        dao.addProductToCart(1, 10);
+        dao.addProductToCart(1, 11);
+        dao.updateQuantity(1, 11, 5);
+        dao.addProductToCart(2, 10);
+        dao.clearCart(2);
+
+        // act: no shutdown, so only the change log is on disk
+        ShoppingCart cart = start().getByUserId(1);
+
+        // assert
+        assertEquals(2, cart.get(10).getQuantity());
+        assertEquals(5, cart.get(11).getQuantity());
+        assertTrue(start().getByUserId(2).getItems().isEmpty());
+    }
+
+    @Test
+    public void recover_shouldCombine_theSnapshotAndLaterChanges() throws IOException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        dao.addProductToCart(3, 20);
+        dao.snapshot();
+        dao.addProductToCart(3, 20);
+        dao.addProductToCart(3, 21);
+
+        // act
+        ShoppingCart cart = start().getByUserId(3);
+
+        // assert
+        assertEquals(2, cart.get(20).getQuantity());
+        assertEquals(1, cart.get(21).getQuantity());
+        assertEquals(new BigDecimal("30.00"), cart.getTotal());
+    }
+
+    @Test
+    public void applyChanges_shouldSetAndRemove_andSurviveRecovery() throws IOException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        dao.addProductToCart(4, 30);
+        dao.addProductToCart(4, 31);
+
+        // act
+        dao.applyChanges(4, List.of(new ShoppingCartChange(30, 0),
+                                    new ShoppingCartChange(31, 3),
+                                    new ShoppingCartChange(32, 2)));
+        ShoppingCart cart = start().getByUserId(4);
+
+        // assert
+        assertFalse(cart.contains(30));
+        assertEquals(3, cart.get(31).getQuantity());
+        assertEquals(2, cart.get(32).getQuantity());
+        assertEquals(new BigDecimal("50.00"), cart.getTotal());
+    }
+
+    @Test
+    public void deleteAbandonedCarts_shouldDelete_inBoundedBatches() throws IOException, InterruptedException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        for (int userId = 1; userId <= 5; userId++)
+        {
+            dao.addProductToCart(userId, 10);
+        }
+        Thread.sleep(5);
+
+        // act: with 0 days retention every cart touched before now is abandoned
+        int recent = dao.deleteAbandonedCarts(1, 3);
+        int first = dao.deleteAbandonedCarts(0, 3);
+        int second = dao.deleteAbandonedCarts(0, 3);
+
+        // assert
+        assertEquals(0, recent);
+        assertEquals(3, first);
+        assertEquals(2, second);
+        assertTrue(start().getByUserId(1).getItems().isEmpty());
+    }
+
+    @Test
+    public void recover_shouldDropAPartialLastRecord_andKeepAppending() throws IOException
+    {
+        // arrange: the process died halfway through writing a record
+        start().addProductToCart(6, 50);
+        Files.write(tempDir.resolve("carts.log"), new byte[] { 1, 0, 0 }, StandardOpenOption.APPEND);
+
+        // act
+        start().addProductToCart(6, 51);
+        ShoppingCart cart = start().getByUserId(6);
+
+        // assert
+        assertEquals(1, cart.get(50).getQuantity());
+        assertEquals(1, cart.get(51).getQuantity());
+    }
+
+    @Test
+    public void snapshot_shouldKeepTheRotatedLog_whenTheLastSnapshotFailed() throws IOException
+    {
+        // arrange: a directory in the snapshot's place makes writing it fail
+        InMemoryShoppingCartDao dao = start();
+        Path blocker = Files.createDirectories(tempDir.resolve("carts.snapshot").resolve("blocker"));
+        dao.addProductToCart(7, 60);
+        dao.snapshot();
+        dao.addProductToCart(7, 61);
+
+        // act
+        dao.snapshot();
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        ShoppingCart cart = start().getByUserId(7);
+
+        // assert
+        assertEquals(1, cart.get(60).getQuantity());
+        assertEquals(1, cart.get(61).getQuantity());
+    }
+
+    @Test
+    public void getDelta_shouldAdvanceTheVersionByOne_perChangeToThatCart() throws IOException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        dao.addProductToCart(8, 70);
+        long version = dao.getDelta(8, 70).getVersion();
+
+        // act: another user's changes in between must not move this cart's version
+        dao.addProductToCart(9, 70);
+        dao.addProductToCart(8, 70);
+        long afterAdd = dao.getDelta(8, 70).getVersion();
+        dao.updateQuantity(8, 70, 4);
+        long afterUpdate = dao.getDelta(8, 70).getVersion();
+        dao.applyChanges(8, List.of(new ShoppingCartChange(70, 1), new ShoppingCartChange(71, 2)));
+        long afterApply = dao.getDelta(8, 71).getVersion();
+        dao.clearCart(8);
+        long afterClear = dao.getDelta(8, 70).getVersion();
+
+        // assert
+        assertEquals(version + 1, afterAdd);
+        assertEquals(version + 2, afterUpdate);
+        assertEquals(version + 3, afterApply);
+        assertEquals(version + 4, afterClear);
+    }
+
+    @Test
+    public void addProductToCart_shouldRejectUnknownProducts_withoutStoringThem() throws IOException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        dao.addProductToCart(10, 1);
+        long logSize = Files.size(tempDir.resolve("carts.log"));
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> dao.addProductToCart(10, 999));
+        assertThrows(IllegalArgumentException.class, () -> dao.applyChanges(10, List.of(new ShoppingCartChange(999, 2))));
+        assertFalse(dao.existsInCart(10, 999));
+        assertEquals(logSize, Files.size(tempDir.resolve("carts.log")));
+    }
+
+    @Test
+    public void getByUserId_shouldLookUpTheCartsProducts_inOneCall() throws IOException
+    {
+        // arrange
+        InMemoryShoppingCartDao dao = start();
+        dao.applyChanges(11, List.of(new ShoppingCartChange(1, 1), new ShoppingCartChange(2, 3), new ShoppingCartChange(3, 2)));
+        clearInvocations(productDao);
+
+        // act
+        ShoppingCart cart = dao.getByUserId(11);
+
+        // assert
+        assertEquals(3, cart.getItems().size());
+        verify(productDao).getByIds(anyList());
+        verify(productDao, never()).getById(anyInt());
+    }
+}
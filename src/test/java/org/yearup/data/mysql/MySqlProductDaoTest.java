@@ -3,21 +3,29 @@ package org.yearup.data.mysql;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.yearup.models.CacheInvalidation;
 import org.yearup.models.Product;
+import org.yearup.services.CatalogVersion;
 
 import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 class MySqlProductDaoTest extends BaseDaoTestClass
 {
     private MySqlProductDao dao;
+    private CatalogVersion catalogVersion;
 
     @BeforeEach
     public void setup()
     {
-        dao = new MySqlProductDao(dataSource);
+        catalogVersion = new CatalogVersion();
+        dao = new MySqlProductDao(dataSource, catalogVersion);
     }
 
     @Test
@@ -45,4 +53,23 @@ class MySqlProductDaoTest extends BaseDaoTestClass
         assertEquals(expected.getPrice(), actual.getPrice(), "Because I tried to get product 1 from the database.");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void publishStockChanges_shouldInvalidateTheListing_afterStockIsReserved()
+    {
+        // arrange
+        List<CacheInvalidation> applied = new ArrayList<>();
+        catalogVersion.addInvalidationListener(applied::addAll);
+        String etag = catalogVersion.etag();
+        dao.reserveStock(Map.of(1, 2));
+
+        // act
+        int published = dao.publishStockChanges();
+
+        // assert
+        assertEquals(1, published);
+        assertNotEquals(etag, catalogVersion.etag());
+        assertEquals(CacheInvalidation.CATEGORY_PRODUCTS, applied.get(0).getEntity());
+        assertEquals(1, applied.get(0).getEntityId());
+        assertEquals(0, dao.publishStockChanges());
+    }
+}
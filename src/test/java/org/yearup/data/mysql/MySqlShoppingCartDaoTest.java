@@ -0,0 +1,41 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.ShoppingCartChange;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MySqlShoppingCartDaoTest extends BaseDaoTestClass
+{
+    private MySqlShoppingCartDao dao;
+
+    @BeforeEach
+    public void setup()
+    {
+        dao = new MySqlShoppingCartDao(dataSource);
+    }
+
+    @Test
+    public void getDelta_shouldAdvanceTheVersionByOne_perChange()
+    {
+        // arrange
+        dao.clearCart(1);
+        long version = dao.getDelta(1, 1).getVersion();
+
+        // act
+        dao.addProductToCart(1, 1);
+        long afterAdd = dao.getDelta(1, 1).getVersion();
+        dao.updateQuantity(1, 1, 3);
+        long afterUpdate = dao.getDelta(1, 1).getVersion();
+        dao.applyChanges(1, List.of(new ShoppingCartChange(1, 0), new ShoppingCartChange(2, 2)));
+        long afterApply = dao.getDelta(1, 2).getVersion();
+
+        // assert
+        assertEquals(version + 1, afterAdd);
+        assertEquals(version + 2, afterUpdate);
+        assertEquals(version + 3, afterApply);
+    }
+}
@@ -0,0 +1,147 @@
+package org.yearup.data.mysql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Product;
+import org.yearup.models.ShoppingCart;
+import org.yearup.models.ShoppingCartChange;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MySqlWriteBehindShoppingCartDaoTest
+{
+    private MySqlWriteBehindShoppingCartDao dao;
+
+    @BeforeEach
+    public void setup()
+    {
+        // The stored cart is empty at version 5; nothing is flushed during the test
+        MySqlShoppingCartDao delegate = mock(MySqlShoppingCartDao.class);
+        when(delegate.getByUserId(anyInt())).thenAnswer(invocation -> {
+            ShoppingCart cart = new ShoppingCart();
+            cart.setVersion(5);
+            return cart;
+        });
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.getById(anyInt())).thenAnswer(invocation -> {
+            int id = invocation.getArgument(0);
+            return new Product(id, "Product " + id, new BigDecimal("10.00"), 1, "", "", 5, false, "");
+        });
+
+        dao = new MySqlWriteBehindShoppingCartDao(mock(DataSource.class), delegate, productDao, 60_000, 1000);
+    }
+
+    @Test
+    public void getDelta_shouldAdvanceTheVersionByOne_perBufferedChange()
+    {
+        // act
+        dao.addProductToCart(1, 10);
+        long afterAdd = dao.getDelta(1, 10).getVersion();
+        dao.addProductToCart(1, 10);
+        long afterSecondAdd = dao.getDelta(1, 10).getVersion();
+        dao.updateQuantity(1, 10, 4);
+        long afterUpdate = dao.getDelta(1, 10).getVersion();
+        dao.applyChanges(1, List.of(new ShoppingCartChange(10, 1), new ShoppingCartChange(11, 2)));
+        long afterApply = dao.getDelta(1, 11).getVersion();
+        dao.clearCart(1);
+        long afterClear = dao.getDelta(1, 10).getVersion();
+
+        // assert
+        assertEquals(6, afterAdd);
+        assertEquals(7, afterSecondAdd);
+        assertEquals(8, afterUpdate);
+        assertEquals(9, afterApply);
+        assertEquals(10, afterClear);
+        assertEquals(5, dao.getDelta(2, 10).getVersion());
+    }
+
+    @Test
+    public void flush_shouldWriteEveryoneElsesChanges_whenOneUsersProductIsGone() throws Exception
+    {
+        // arrange: product 999 doesn't exist, so its row fails the foreign key
+        Set<Integer> products = Set.of(10, 11);
+        List<String> committed = new ArrayList<>();
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.getByIds(anyList())).thenAnswer(invocation -> {
+            List<Integer> ids = invocation.getArgument(0);
+            return ids.stream()
+                    .filter(products::contains)
+                    .map(id -> new Product(id, "Product " + id, new BigDecimal("10.00"), 1, "", "", 5, false, ""))
+                    .toList();
+        });
+        MySqlWriteBehindShoppingCartDao writeBehind = new MySqlWriteBehindShoppingCartDao(
+                database(products, committed), mock(MySqlShoppingCartDao.class), productDao, 60_000, 1000);
+
+        writeBehind.addProductToCart(1, 10);
+        writeBehind.addProductToCart(2, 999);
+        writeBehind.addProductToCart(2, 11);
+        writeBehind.addProductToCart(3, 11);
+
+        // act
+        writeBehind.flush();
+        writeBehind.addProductToCart(1, 11);
+        writeBehind.flushPendingChanges(1);
+
+        // assert: the bad line was dropped, nothing is left to retry
+        assertEquals(Set.of("1:10", "2:11", "3:11", "1:11"), new HashSet<>(committed));
+        assertEquals(0, writeBehind.getStats().get("pendingMutations"));
+    }
+
+    /**
+     * A database that only records the cart lines it commits and rejects lines for
+     * products it doesn't have.
+     */
+    private static DataSource database(Set<Integer> products, List<String> committed) throws SQLException
+    {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            List<String> staged = new ArrayList<>();
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString())).thenAnswer(prepare -> statement(prepare.getArgument(0), products, staged));
+            doAnswer(commit -> committed.addAll(staged)).when(connection).commit();
+            return connection;
+        });
+        return dataSource;
+    }
+
+    private static PreparedStatement statement(String sql, Set<Integer> products, List<String> staged) throws SQLException
+    {
+        boolean cartLine = sql.startsWith("INSERT INTO shopping_cart ");
+        int[] parameters = new int[3];
+        List<int[]> batch = new ArrayList<>();
+
+        PreparedStatement statement = mock(PreparedStatement.class);
+        doAnswer(invocation -> parameters[(int) invocation.getArgument(0) - 1] = invocation.getArgument(1))
+                .when(statement).setInt(anyInt(), anyInt());
+        doAnswer(invocation -> batch.add(parameters.clone())).when(statement).addBatch();
+        when(statement.executeBatch()).thenAnswer(invocation -> {
+            for (int[] row : batch)
+            {
+                if (cartLine && !products.contains(row[1]))
+                    throw new BatchUpdateException("Cannot add or update a child row: a foreign key constraint fails", "23000", 1452, new int[0]);
+                if (cartLine)
+                    staged.add(row[0] + ":" + row[1]);
+            }
+            return new int[batch.size()];
+        });
+        return statement;
+    }
+}
@@ -0,0 +1,33 @@
+package org.yearup.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OrderCursorTest
+{
+    @Test
+    public void decode_shouldReturnTheEncodedPosition()
+    {
+        // arrange
+        OrderCursor cursor = new OrderCursor(LocalDateTime.of(2024, 3, 9, 14, 5, 0), 1207);
+
+        // act
+        OrderCursor decoded = OrderCursor.decode(cursor.encode());
+
+        // assert
+        assertEquals(cursor.getDate(), decoded.getDate());
+        assertEquals(1207, decoded.getOrderId());
+    }
+
+    @Test
+    public void decode_shouldRejectTamperedCursors()
+    {
+        assertThrows(IllegalArgumentException.class, () -> OrderCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> OrderCursor.decode("MjAyNC0wMy0wOQ"));
+        assertThrows(IllegalArgumentException.class, () -> OrderCursor.decode("eWVzdGVyZGF5fDEy"));
+    }
+}
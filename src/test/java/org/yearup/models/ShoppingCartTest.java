@@ -0,0 +1,48 @@
+package org.yearup.models;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShoppingCartTest
+{
+    private static ShoppingCartItem item(int productId, String price, int quantity)
+    {
+        ShoppingCartItem item = new ShoppingCartItem();
+        item.setProduct(new Product(productId, "Product", new BigDecimal(price), 1, "", "", 10, false, ""));
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    @Test
+    public void getTotal_shouldTrack_addsReplacementsAndQuantityChanges()
+    {
+        // arrange
+        ShoppingCart cart = new ShoppingCart();
+
+        // act
+        cart.add(item(1, "499.99", 2));
+        cart.add(item(2, "19.95", 1));
+        cart.add(item(2, "19.95", 3)); // replaces the previous line for product 2
+        cart.setQuantity(1, 1);
+
+        // assert
+        assertEquals(49999 + 3 * 1995, cart.getTotalCents());
+        assertEquals(new BigDecimal("559.84"), cart.getTotal());
+    }
+
+    @Test
+    public void getLineTotal_shouldRound_theDiscountToTheCent()
+    {
+        // arrange
+        ShoppingCartItem item = item(1, "0.99", 3);
+
+        // act
+        item.setDiscountPercent(new BigDecimal("0.15"));
+
+        // assert: 2.97 less 0.4455 discount, rounded to 0.45
+        assertEquals(new BigDecimal("2.52"), item.getLineTotal());
+    }
+}
@@ -0,0 +1,67 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncDataLoaderTest
+{
+    @Test
+    public void load_shouldRunIndependentLoadsConcurrently_andTimeEachStage()
+    {
+        // arrange
+        AsyncDataLoader loader = new AsyncDataLoader(4, 16);
+        StageTimings timings = new StageTimings();
+
+        // act
+        long start = System.nanoTime();
+        CompletableFuture<String> profile = loader.load("profile", timings, () -> slow("profile"));
+        CompletableFuture<String> cart = loader.load("cart", timings, () -> slow("cart"));
+        String results = AsyncDataLoader.join(profile) + AsyncDataLoader.join(cart);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // assert: two 200ms loads side by side take well under 400ms
+        assertEquals("profilecart", results);
+        assertTrue(elapsedMs < 350, "loads took " + elapsedMs + "ms");
+
+        String header = timings.toHeader();
+        assertTrue(header.contains("profile;dur="), header);
+        assertTrue(header.contains("cart;dur="), header);
+        assertTrue(header.contains("total;dur="), header);
+        loader.shutdown();
+    }
+
+    @Test
+    public void join_shouldRethrowTheLoadersException()
+    {
+        // arrange
+        AsyncDataLoader loader = new AsyncDataLoader(1, 1);
+
+        // act
+        CompletableFuture<Object> load = loader.load("user", new StageTimings(), () -> {
+            throw new IllegalStateException("database down");
+        });
+
+        // assert
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> AsyncDataLoader.join(load));
+        assertEquals("database down", e.getMessage());
+        loader.shutdown();
+    }
+
+    private static String slow(String value)
+    {
+        try
+        {
+            Thread.sleep(200);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,130 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.SalesReportDao;
+import org.yearup.models.CategorySales;
+import org.yearup.models.ProductSales;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BestSellersTest
+{
+    @Test
+    public void top_shouldFindHeavyHitters_amongManyProducts()
+    {
+        // arrange: 5000 products sell one unit each at random, products 1-5 sell far more
+        BestSellers bestSellers = new BestSellers(mock(SalesReportDao.class), fixedClock(Instant.parse("2024-03-10T12:00:00Z")), 20, 4, 1024);
+        Random random = new Random(42);
+
+        // act
+        for (int i = 0; i < 20_000; i++)
+        {
+            int productId = 100 + random.nextInt(5000);
+            bestSellers.record(productId, productId % 10 + 1, 1);
+        }
+        for (int productId = 1; productId <= 5; productId++)
+        {
+            bestSellers.record(productId, 3, 200 - productId * 10);
+        }
+
+        // assert
+        assertEquals(List.of(1, 2, 3, 4, 5), bestSellers.top(BestSellers.ALL_CATEGORIES, BestSellers.Window.WEEK, 5));
+        assertEquals(List.of(1, 2, 3, 4, 5), bestSellers.top(3, BestSellers.Window.DAY, 5));
+    }
+
+    @Test
+    public void top_shouldDropDaysOutsideTheWindow()
+    {
+        // arrange
+        MutableClock clock = new MutableClock(Instant.parse("2024-03-10T12:00:00Z"));
+        BestSellers bestSellers = new BestSellers(mock(SalesReportDao.class), clock, 20, 4, 1024);
+        bestSellers.record(7, 1, 5);
+
+        // act / assert: gone from the day rail tomorrow, from the week rail after seven days
+        clock.advance(Duration.ofDays(1));
+        assertTrue(bestSellers.top(1, BestSellers.Window.DAY, 10).isEmpty());
+        assertEquals(List.of(7), bestSellers.top(1, BestSellers.Window.WEEK, 10));
+
+        clock.advance(Duration.ofDays(6));
+        assertTrue(bestSellers.top(1, BestSellers.Window.WEEK, 10).isEmpty());
+    }
+
+    @Test
+    public void warmUp_shouldSeedEachCategory_whenItsProductsMissTheCatalogWideTop()
+    {
+        // arrange: category 2's seller is far behind category 1's on the catalog-wide list
+        LocalDate today = LocalDate.of(2024, 3, 10);
+        SalesReportDao salesReportDao = mock(SalesReportDao.class);
+        when(salesReportDao.getTopProducts(eq(today), eq(today), anyInt()))
+                .thenReturn(List.of(new ProductSales(1, "Big", 1, 500, new BigDecimal("5000.00"))));
+        when(salesReportDao.getByCategory(today, today)).thenReturn(List.of(
+                new CategorySales(1, "One", 500, new BigDecimal("5000.00")),
+                new CategorySales(2, "Two", 3, new BigDecimal("30.00"))));
+        when(salesReportDao.getTopProducts(eq(today), eq(today), eq(1), anyInt()))
+                .thenReturn(List.of(new ProductSales(1, "Big", 1, 500, new BigDecimal("5000.00"))));
+        when(salesReportDao.getTopProducts(eq(today), eq(today), eq(2), anyInt()))
+                .thenReturn(List.of(new ProductSales(9, "Small", 2, 3, new BigDecimal("30.00"))));
+
+        BestSellers bestSellers = new BestSellers(salesReportDao, fixedClock(Instant.parse("2024-03-10T12:00:00Z")), 20, 4, 1024);
+
+        // act
+        bestSellers.warmUp();
+
+        // assert
+        assertEquals(List.of(9), bestSellers.top(2, BestSellers.Window.DAY, 10));
+        assertEquals(List.of(1, 9), bestSellers.top(BestSellers.ALL_CATEGORIES, BestSellers.Window.WEEK, 10));
+    }
+
+    private static Clock fixedClock(Instant instant)
+    {
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+
+    private static class MutableClock extends Clock
+    {
+        private Instant now;
+
+        private MutableClock(Instant now)
+        {
+            this.now = now;
+        }
+
+        private void advance(Duration duration)
+        {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone()
+        {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone)
+        {
+            return this;
+        }
+
+        @Override
+        public Instant instant()
+        {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CacheInvalidationDao;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.models.CacheInvalidation;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationPollerTest
+{
+    // Two app instances sharing one invalidation log
+    private SharedLog log;
+    private CatalogVersion writerVersion;
+    private CatalogVersion readerVersion;
+    private CatalogResponseCache readerCache;
+    private CacheInvalidationPoller readerPoller;
+
+    @BeforeEach
+    public void setup()
+    {
+        log = new SharedLog();
+        log.version = 1;
+
+        writerVersion = new CatalogVersion("writer");
+        readerVersion = new CatalogVersion("reader");
+
+        CategoryDao categoryDao = mock(CategoryDao.class);
+        when(categoryDao.getAllCategories()).thenReturn(List.of(new Category(1, "One", ""), new Category(2, "Two", "")));
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.listByCategoryId(anyInt())).thenAnswer(invocation -> List.of(
+                new Product(1, "Item", new BigDecimal("1.00"), invocation.getArgument(0), "", "", 1, false, "")));
+
+        // Seed before the cache listens, so no background rebuild races the test
+        readerPoller = new CacheInvalidationPoller(log, readerVersion, 60);
+        readerPoller.seed();
+        new CacheInvalidationPoller(log, writerVersion, 60).seed();
+
+        readerCache = new CatalogResponseCache(categoryDao, productDao, readerVersion, new ObjectMapper(), 10);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        readerCache.shutdown();
+    }
+
+    @Test
+    public void poll_shouldEvictOnlyTheAffectedCategory_whenAnotherNodeWritesAProduct()
+    {
+        // arrange
+        CatalogResponseCache.Entry categories = readerCache.getCategories();
+        CatalogResponseCache.Entry untouched = readerCache.getProductsByCategory(1);
+        readerCache.getProductsByCategory(2);
+
+        // act: the writer changes a product in category 2 and the reader polls
+        write(new CacheInvalidation(1, 2, CacheInvalidation.CATEGORY_PRODUCTS, 2, "writer"));
+        readerPoller.poll();
+
+        // assert
+        assertEquals(writerVersion.etag(), readerVersion.etag());
+        assertSame(categories, readerCache.getCategories());
+        assertSame(untouched, readerCache.getProductsByCategory(1));
+        assertEquals(2, readerCache.getProductsByCategory(2).getVersion());
+    }
+
+    @Test
+    public void poll_shouldEvictEverything_whenEntriesWereMissed()
+    {
+        // arrange
+        readerCache.getCategories();
+        readerCache.getProductsByCategory(1);
+
+        // act: the entry was pruned before the reader saw it
+        write(new CacheInvalidation(1, 2, CacheInvalidation.CATEGORY_PRODUCTS, 2, "writer"));
+        log.entries.clear();
+        readerPoller.poll();
+
+        // assert
+        assertEquals(writerVersion.etag(), readerVersion.etag());
+        assertEquals(2, readerCache.getCategories().getVersion());
+        assertEquals(2, readerCache.getProductsByCategory(1).getVersion());
+    }
+
+    private void write(CacheInvalidation invalidation)
+    {
+        log.version = invalidation.getVersion();
+        log.entries.add(invalidation);
+        writerVersion.advanceTo(invalidation.getVersion(), List.of(invalidation));
+    }
+
+    private static class SharedLog implements CacheInvalidationDao
+    {
+        private long version;
+        private final List<CacheInvalidation> entries = new ArrayList<>();
+
+        @Override
+        public List<CacheInvalidation> getSince(long version, int limit)
+        {
+            return entries.stream()
+                    .filter(entry -> entry.getVersion() > version)
+                    .limit(limit)
+                    .toList();
+        }
+
+        @Override
+        public long getCatalogVersion()
+        {
+            return version;
+        }
+
+        @Override
+        public int deleteOlderThan(int retentionMinutes)
+        {
+            return 0;
+        }
+    }
+}
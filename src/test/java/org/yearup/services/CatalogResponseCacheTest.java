@@ -0,0 +1,65 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Category;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogResponseCacheTest
+{
+    @Test
+    public void getCategories_shouldRebuild_whenEntryWasReadBeforeACatalogChange()
+    {
+        // arrange: the catalog changes while the first build is reading categories
+        CatalogVersion catalogVersion = new CatalogVersion();
+        catalogVersion.advanceTo(1);
+        CategoryDao categoryDao = mock(CategoryDao.class);
+        when(categoryDao.getAllCategories())
+                .thenAnswer(invocation -> {
+                    catalogVersion.advanceTo(2);
+                    return List.of(new Category(1, "Old", ""));
+                })
+                .thenReturn(List.of(new Category(1, "New", "")));
+        CatalogResponseCache cache = new CatalogResponseCache(categoryDao, mock(ProductDao.class), catalogVersion, new ObjectMapper(), 10);
+
+        // act
+        CatalogResponseCache.Entry first = cache.getCategories();
+        CatalogResponseCache.Entry second = cache.getCategories();
+
+        // assert
+        assertEquals(1, first.getVersion());
+        assertEquals(2, second.getVersion());
+        cache.shutdown();
+    }
+
+    @Test
+    public void prime_shouldKeepAtMostMaxCategoriesListings()
+    {
+        // arrange
+        CatalogVersion catalogVersion = new CatalogVersion();
+        ProductDao productDao = mock(ProductDao.class);
+        CatalogResponseCache cache = new CatalogResponseCache(mock(CategoryDao.class), productDao, catalogVersion, new ObjectMapper(), 2);
+        Map<Integer, CatalogResponseCache.Entry> entries = Map.of(
+                1, cache.createEntry(0, List.of("one")),
+                2, cache.createEntry(0, List.of("two")),
+                3, cache.createEntry(0, List.of("three")));
+
+        // act
+        cache.prime(cache.createEntry(0, List.of()), entries);
+
+        // assert: listings past the cap are built from the database instead
+        long served = entries.entrySet().stream()
+                .filter(entry -> cache.getProductsByCategory(entry.getKey()) == entry.getValue())
+                .count();
+        assertEquals(2, served);
+        cache.shutdown();
+    }
+}
@@ -0,0 +1,62 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatalogSnapshotFileTest
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void read_shouldReturn_whatWasWritten() throws IOException
+    {
+        // arrange
+        Path path = tempDir.resolve("catalog.snapshot");
+        List<Category> categories = List.of(new Category(1, "Electronics", null));
+        List<Product> products = List.of(new Product(7, "Smartphone", new BigDecimal("499.99"), 1,
+                "A phone – with unicode", "Black", 50, true, "smartphone.jpg"));
+
+        // act
+        new CatalogSnapshotFile(42, categories, products).write(path);
+        CatalogSnapshotFile actual = CatalogSnapshotFile.read(path);
+
+        // assert
+        assertEquals(42, actual.getCatalogVersion());
+        assertEquals("Electronics", actual.getCategories().get(0).getName());
+        assertNull(actual.getCategories().get(0).getDescription());
+
+        Product product = actual.getProducts().get(0);
+        assertEquals(7, product.getProductId());
+        assertEquals(new BigDecimal("499.99"), product.getPrice());
+        assertEquals("A phone – with unicode", product.getDescription());
+        assertEquals(50, product.getStock());
+        assertEquals(true, product.isFeatured());
+    }
+
+    @Test
+    public void read_shouldReject_aTruncatedFile() throws IOException
+    {
+        // arrange
+        Path path = tempDir.resolve("catalog.snapshot");
+        new CatalogSnapshotFile(1, List.of(new Category(1, "Electronics", "Gadgets")), List.of()).write(path);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+
+        // act / assert
+        assertThrows(IOException.class, () -> CatalogSnapshotFile.read(path));
+    }
+}
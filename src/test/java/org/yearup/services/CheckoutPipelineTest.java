@@ -0,0 +1,162 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.OrderDao;
+import org.yearup.models.Order;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CheckoutPipelineTest
+{
+    @Test
+    public void submit_shouldBatchConcurrentOrders_andIsolateABadOne() throws Exception
+    {
+        // arrange: a slow commit, and user 13's order is always rejected
+        AtomicInteger largestBatch = new AtomicInteger();
+        AtomicInteger nextId = new AtomicInteger(100);
+
+        OrderDao orderDao = mock(OrderDao.class);
+        doAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            largestBatch.accumulateAndGet(orders.size(), Math::max);
+            Thread.sleep(20);
+            if (orders.stream().anyMatch(order -> order.getUserId() == 13))
+                throw new RuntimeException("constraint violation");
+            orders.forEach(order -> order.setId(nextId.incrementAndGet()));
+            return null;
+        }).when(orderDao).createOrders(anyList());
+
+        CheckoutPipeline pipeline = new CheckoutPipeline(orderDao, 64, 5, 1000);
+        pipeline.start();
+
+        // act
+        List<CompletableFuture<Order>> results = new ArrayList<>();
+        for (int userId = 1; userId <= 40; userId++)
+        {
+            Order order = new Order();
+            order.setUserId(userId);
+            order.setOrderDate(LocalDateTime.now());
+            results.add(pipeline.submit(order));
+        }
+
+        // assert
+        for (int i = 0; i < results.size(); i++)
+        {
+            CompletableFuture<Order> result = results.get(i);
+            if (i + 1 == 13)
+                assertThrows(CompletionException.class, result::join);
+            else
+                assertTrue(result.join().getId() > 100);
+        }
+        assertTrue(largestBatch.get() > 1, "concurrent orders should share a transaction");
+
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void shutdown_shouldWriteQueuedOrders_andRejectNewOnes() throws Exception
+    {
+        // arrange
+        OrderDao orderDao = mock(OrderDao.class);
+        CheckoutPipeline pipeline = new CheckoutPipeline(orderDao, 64, 50, 1000);
+        pipeline.start();
+        CompletableFuture<Order> queued = pipeline.submit(new Order());
+
+        // act
+        pipeline.shutdown();
+
+        // assert
+        assertEquals(0, queued.join().getId());
+        assertThrows(CompletionException.class, () -> pipeline.submit(new Order()).join());
+    }
+
+    @Test
+    public void submit_shouldReportTheOrdersPlaced_whenACommitFailsAfterWriting() throws Exception
+    {
+        // arrange: the batch commits, but the connection drops before the commit is acknowledged
+        Map<Integer, Order> table = new ConcurrentHashMap<>();
+        AtomicInteger nextId = new AtomicInteger(200);
+
+        OrderDao orderDao = mock(OrderDao.class);
+        doAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            for (Order order : orders)
+            {
+                if (order.getId() == 0)
+                    order.setId(nextId.incrementAndGet());
+                if (table.containsKey(order.getId()))
+                    throw new RuntimeException("duplicate key " + order.getId());
+            }
+            orders.forEach(order -> table.put(order.getId(), order));
+            throw new RuntimeException("communications link failure");
+        }).when(orderDao).createOrders(anyList());
+        when(orderDao.getById(anyInt())).thenAnswer(invocation -> table.get((Integer) invocation.getArgument(0)));
+
+        CheckoutPipeline pipeline = new CheckoutPipeline(orderDao, 64, 20, 1000);
+        pipeline.start();
+
+        // act
+        List<CompletableFuture<Order>> results = new ArrayList<>();
+        for (int userId = 1; userId <= 5; userId++)
+        {
+            Order order = new Order();
+            order.setUserId(userId);
+            order.setOrderDate(LocalDateTime.now());
+            results.add(pipeline.submit(order));
+        }
+
+        // assert
+        for (CompletableFuture<Order> result : results)
+        {
+            assertTrue(table.containsKey(result.join().getId()));
+        }
+        assertEquals(5, table.size());
+
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void submit_shouldReportTheOutcomeAsUnknown_whenTheLookupFailsToo() throws Exception
+    {
+        // arrange: the commit's connection drops and the database is still unreachable
+        OrderDao orderDao = mock(OrderDao.class);
+        doAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            orders.forEach(order -> order.setId(300));
+            throw new RuntimeException("communications link failure");
+        }).when(orderDao).createOrders(anyList());
+        when(orderDao.getById(anyInt())).thenThrow(new RuntimeException("communications link failure"));
+
+        CheckoutPipeline pipeline = new CheckoutPipeline(orderDao, 64, 20, 1000);
+        pipeline.start();
+
+        // act
+        Order order = new Order();
+        order.setUserId(1);
+        order.setOrderDate(LocalDateTime.now());
+        CompletionException failure = assertThrows(CompletionException.class, () -> pipeline.submit(order).join());
+
+        // assert
+        assertInstanceOf(CheckoutPipeline.OutcomeUnknownException.class, failure.getCause());
+        assertEquals(300, ((CheckoutPipeline.OutcomeUnknownException) failure.getCause()).getOrderId());
+
+        pipeline.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GuestCartTokensTest
+{
+    private static final Key KEY = new SecretKeySpec(new byte[32], "HmacSHA256");
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private GuestCartTokens tokens(Instant now)
+    {
+        return new GuestCartTokens(KEY, Clock.fixed(now, ZoneOffset.UTC), 3, 99, 30);
+    }
+
+    @Test
+    public void decode_shouldReturn_whatWasEncoded()
+    {
+        // arrange
+        Map<Integer, Integer> items = new LinkedHashMap<>();
+        items.put(7, 2);
+        items.put(300000, 99);
+
+        // act
+        String token = tokens(NOW).encode(items);
+
+        // assert
+        assertEquals(items, tokens(NOW).decode(token));
+        assertTrue(token.length() < 80, "token should stay compact: " + token);
+    }
+
+    @Test
+    public void decode_shouldReject_aTamperedToken()
+    {
+        // arrange
+        String token = tokens(NOW).encode(Map.of(7, 1));
+        String payload = token.substring(0, token.indexOf('.'));
+        String forged = tokens(NOW).encode(Map.of(7, 50));
+        String tampered = forged.substring(0, forged.indexOf('.')) + token.substring(payload.length());
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> tokens(NOW).decode(tampered));
+        assertThrows(IllegalArgumentException.class, () -> tokens(NOW).decode("garbage"));
+    }
+
+    @Test
+    public void decode_shouldReject_anExpiredToken()
+    {
+        // arrange
+        String token = tokens(NOW).encode(Map.of(7, 1));
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> tokens(NOW.plus(Duration.ofDays(31))).decode(token));
+    }
+
+    @Test
+    public void encode_shouldReject_tooManyItems()
+    {
+        // arrange
+        Map<Integer, Integer> items = Map.of(1, 1, 2, 1, 3, 1, 4, 1);
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, () -> tokens(NOW).encode(items));
+    }
+}
@@ -0,0 +1,115 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductDao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotStockLeasesTest
+{
+    @Test
+    public void take_shouldSellExactlyTheStock_andReturnTheRestOnShutdown() throws Exception
+    {
+        // arrange: 1000 units in the "table", leased out 50 at a time
+        AtomicInteger tableStock = new AtomicInteger(1000);
+        AtomicInteger leaseCalls = new AtomicInteger();
+
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.leaseStock(anyString(), eq(1), anyInt())).thenAnswer(invocation -> {
+            leaseCalls.incrementAndGet();
+            int max = invocation.getArgument(2);
+            synchronized (tableStock)
+            {
+                int taken = Math.min(tableStock.get(), max);
+                tableStock.addAndGet(-taken);
+                return taken;
+            }
+        });
+        doAnswer(invocation -> {
+            Map<Integer, Integer> returned = invocation.getArgument(1);
+            tableStock.addAndGet(returned.getOrDefault(1, 0));
+            return null;
+        }).when(productDao).returnLeasedStock(anyString(), anyMap());
+
+        CatalogVersion catalogVersion = new CatalogVersion();
+        HotStockLeases leases = new HotStockLeases(productDao, catalogVersion, Set.of(1), 50, 30000, 60000, 600000);
+        AtomicInteger sold = new AtomicInteger();
+
+        // act: 1200 single-unit checkouts from 32 threads
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        for (int i = 0; i < 1200; i++)
+        {
+            pool.execute(() -> {
+                if (leases.take(Map.of(1, 1)).isEmpty())
+                    sold.incrementAndGet();
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        // assert
+        assertEquals(1000, sold.get());
+        assertTrue(leaseCalls.get() <= 21, "stock should be leased in blocks, not per checkout");
+        assertEquals(List.of(1), leases.take(Map.of(1, 1)));
+
+        // a restock bumps the catalog version; a partially used lease goes back to the table on shutdown
+        tableStock.set(10);
+        catalogVersion.advanceTo(1);
+        assertEquals(List.of(), leases.take(Map.of(1, 3)));
+        leases.shutdown();
+        assertEquals(7, tableStock.get());
+    }
+
+    @Test
+    public void take_shouldLeaseAgain_onceTheSoldOutFlagExpires() throws Exception
+    {
+        // arrange: the table is empty, then another node returns its lease
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.leaseStock(anyString(), eq(1), anyInt())).thenReturn(0).thenReturn(5);
+        HotStockLeases leases = new HotStockLeases(productDao, new CatalogVersion(), Set.of(1), 50, 30000, 50, 600000);
+
+        // act
+        List<Integer> first = leases.take(Map.of(1, 1));
+        List<Integer> cached = leases.take(Map.of(1, 1));
+        Thread.sleep(60);
+        List<Integer> afterExpiry = leases.take(Map.of(1, 1));
+
+        // assert
+        assertEquals(List.of(1), first);
+        assertEquals(List.of(1), cached);
+        assertEquals(List.of(), afterExpiry);
+        verify(productDao, times(2)).leaseStock(anyString(), eq(1), anyInt());
+    }
+
+    @Test
+    public void recover_shouldPutBackTheLeasesRecordedForThisNode()
+    {
+        // arrange
+        ProductDao productDao = mock(ProductDao.class);
+        HotStockLeases leases = new HotStockLeases(productDao, new CatalogVersion("node-a"), Set.of(1), 50, 30000, 1000, 600000);
+
+        // act
+        leases.recover();
+
+        // assert
+        verify(productDao).reclaimLeases("node-a");
+    }
+}
@@ -0,0 +1,234 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.yearup.data.IdempotencyKeyDao;
+import org.yearup.models.OrderDTO;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotencyKeysTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void execute_shouldRunConcurrentDuplicatesOnce() throws Exception
+    {
+        // arrange
+        IdempotencyKeyDao dao = mock(IdempotencyKeyDao.class);
+        when(dao.claim(eq(1), eq("abc"), anyInt())).thenReturn(true);
+        IdempotencyKeys keys = new IdempotencyKeys(dao, objectMapper, 100, 60, 24);
+
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ResponseEntity<?>>> results = new ArrayList<>();
+
+        // act: the first call blocks inside the checkout while seven duplicates arrive
+        results.add(executor.submit(() -> keys.execute(1, "abc", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+            return ResponseEntity.status(HttpStatus.CREATED).body(order(42));
+        })));
+        started.await(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 7; i++)
+        {
+            results.add(executor.submit(() -> keys.execute(1, "abc", () -> {
+                runs.incrementAndGet();
+                return ResponseEntity.status(HttpStatus.CREATED).body(order(99));
+            })));
+        }
+        Thread.sleep(50);
+        release.countDown();
+
+        // assert
+        for (Future<ResponseEntity<?>> result : results)
+        {
+            ResponseEntity<?> response = result.get(5, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.CREATED, response.getStatusCode());
+            assertEquals(42, ((OrderDTO) response.getBody()).getOrderId());
+        }
+        assertEquals(1, runs.get());
+        verify(dao, times(1)).claim(eq(1), eq("abc"), anyInt());
+        verify(dao).complete(eq(1), eq("abc"), anyString());
+        executor.shutdown();
+    }
+
+    @Test
+    public void execute_shouldReplayStoredResponse_whenKeyWasUsedOnAnotherNode() throws Exception
+    {
+        // arrange
+        IdempotencyKeyDao dao = mock(IdempotencyKeyDao.class);
+        when(dao.claim(eq(1), eq("abc"), anyInt())).thenReturn(false);
+        when(dao.getResponse(1, "abc")).thenReturn(objectMapper.writeValueAsString(order(42)));
+        IdempotencyKeys keys = new IdempotencyKeys(dao, objectMapper, 100, 60, 24);
+
+        // act
+        ResponseEntity<?> response = keys.execute(1, "abc", () -> {
+            throw new AssertionError("checkout should not run");
+        });
+
+        // assert
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("true", response.getHeaders().getFirst(IdempotencyKeys.REPLAYED_HEADER));
+        assertEquals(42, ((OrderDTO) response.getBody()).getOrderId());
+        assertEquals(0, new BigDecimal("12.50").compareTo(((OrderDTO) response.getBody()).getTotalAmount()));
+    }
+
+    @Test
+    public void execute_shouldReturnConflict_whenKeyIsPendingOnAnotherNode()
+    {
+        // arrange
+        IdempotencyKeyDao dao = mock(IdempotencyKeyDao.class);
+        when(dao.claim(eq(1), eq("abc"), anyInt())).thenReturn(false);
+        IdempotencyKeys keys = new IdempotencyKeys(dao, objectMapper, 100, 60, 24);
+
+        // act
+        ResponseEntity<?> response = keys.execute(1, "abc", () -> {
+            throw new AssertionError("checkout should not run");
+        });
+
+        // assert
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        verify(dao, never()).release(anyInt(), anyString());
+    }
+
+    @Test
+    public void execute_shouldFreeKey_whenCheckoutIsRejected()
+    {
+        // arrange
+        IdempotencyKeyDao dao = mock(IdempotencyKeyDao.class);
+        when(dao.claim(eq(1), eq("abc"), anyInt())).thenReturn(true);
+        IdempotencyKeys keys = new IdempotencyKeys(dao, objectMapper, 100, 60, 24);
+
+        // act: an empty cart, then a retry once the cart has items
+        ResponseEntity<?> first = keys.execute(1, "abc", () -> ResponseEntity.badRequest().body("Shopping cart is empty."));
+        ResponseEntity<?> second = keys.execute(1, "abc", () -> ResponseEntity.status(HttpStatus.CREATED).body(order(7)));
+
+        // assert
+        assertEquals(HttpStatus.BAD_REQUEST, first.getStatusCode());
+        assertEquals(HttpStatus.CREATED, second.getStatusCode());
+        assertNull(second.getHeaders().getFirst(IdempotencyKeys.REPLAYED_HEADER));
+        verify(dao).release(1, "abc");
+        verify(dao).complete(eq(1), eq("abc"), anyString());
+    }
+
+    @Test
+    public void execute_shouldRunWaitingDuplicates_whenFirstAttemptIsRejected() throws Exception
+    {
+        // arrange
+        IdempotencyKeyDao dao = mock(IdempotencyKeyDao.class);
+        when(dao.claim(eq(1), eq("abc"), anyInt())).thenReturn(true);
+        IdempotencyKeys keys = new IdempotencyKeys(dao, objectMapper, 100, 60, 24);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // act: the first attempt is rejected while a duplicate waits on it
+        Future<ResponseEntity<?>> first = executor.submit(() -> keys.execute(1, "abc", () -> {
+            started.countDown();
+            await(release);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Not enough stock.");
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        Future<ResponseEntity<?>> second = executor.submit(() -> keys.execute(1, "abc",
+                () -> ResponseEntity.status(HttpStatus.CREATED).body(order(7))));
+        Thread.sleep(50);
+        release.countDown();
+
+        // assert
+        assertEquals(HttpStatus.CONFLICT, first.get(5, TimeUnit.SECONDS).getStatusCode());
+        ResponseEntity<?> response = second.get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertNull(response.getHeaders().getFirst(IdempotencyKeys.REPLAYED_HEADER));
+        executor.shutdown();
+    }
+
+    @Test
+    public void heartbeat_shouldRefreshClaimsOfRunningCheckouts() throws Exception
+    {
+        // arrange
+        IdempotencyKeyDao dao = mock(IdempotencyKeyDao.class);
+        when(dao.claim(eq(1), eq("abc"), anyInt())).thenReturn(true);
+        IdempotencyKeys keys = new IdempotencyKeys(dao, objectMapper, 100, 60, 24);
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        Future<ResponseEntity<?>> result = executor.submit(() -> keys.execute(1, "abc", () -> {
+            started.countDown();
+            await(release);
+            return ResponseEntity.status(HttpStatus.CREATED).body(order(7));
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        // act
+        keys.heartbeat();
+        release.countDown();
+        result.get(5, TimeUnit.SECONDS);
+        keys.heartbeat();
+
+        // assert: refreshed while running, not after
+        verify(dao, times(1)).refresh(1, "abc");
+        executor.shutdown();
+    }
+
+    @Test
+    public void isValid_shouldRejectBlankAndOverlongKeys()
+    {
+        assertTrue(IdempotencyKeys.isValid("9f1c2d"));
+        assertFalse(IdempotencyKeys.isValid(" "));
+        assertFalse(IdempotencyKeys.isValid("x".repeat(IdempotencyKeys.MAX_KEY_LENGTH + 1)));
+    }
+
+    private static OrderDTO order(int orderId)
+    {
+        OrderDTO dto = new OrderDTO();
+        dto.setOrderId(orderId);
+        dto.setTotalAmount(new BigDecimal("12.50"));
+        dto.setLineItems(List.of());
+        return dto;
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try
+        {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductImportReaderTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Test
+    public void csv_shouldHandleQuotedFields_andCarryOnAfterBadRows() throws IOException
+    {
+        // arrange
+        String csv = "Name,price,category_id,Description,featured\r\n" +
+                "Mug,9.99,1,\"Holds coffee, tea\",true\r\n" +
+                "\n" +
+                "Poster,abc,2,,\n" +
+                "\"The \"\"Big\"\" Lamp\",45,3,\"Two\nlines\",0\n" +
+                "Short,1,1\n" +
+                "Hat,12.50,2,Warm,no";
+        ProductImportReader reader = ProductImportReader.open(ProductImportReader.CSV, new StringReader(csv), objectMapper, 1000);
+
+        // act
+        ProductImportReader.Row mug = reader.next();
+        ProductImportReader.Row poster = reader.next();
+        ProductImportReader.Row lamp = reader.next();
+        ProductImportReader.Row shortRow = reader.next();
+        ProductImportReader.Row hat = reader.next();
+
+        // assert
+        assertEquals(2, mug.getLine());
+        assertEquals("Mug", mug.getProduct().getName());
+        assertEquals(new BigDecimal("9.99"), mug.getProduct().getPrice());
+        assertEquals("Holds coffee, tea", mug.getProduct().getDescription());
+        assertTrue(mug.getProduct().isFeatured());
+
+        assertEquals(4, poster.getLine());
+        assertNull(poster.getProduct());
+        assertEquals("price must be a number.", poster.getError());
+
+        assertEquals(5, lamp.getLine());
+        assertEquals("The \"Big\" Lamp", lamp.getProduct().getName());
+        assertEquals("Two\nlines", lamp.getProduct().getDescription());
+        assertEquals(3, lamp.getProduct().getCategoryId());
+
+        assertEquals(7, shortRow.getLine());
+        assertEquals("Expected 5 fields but found 3.", shortRow.getError());
+
+        assertEquals(8, hat.getLine());
+        assertFalse(hat.getProduct().isFeatured());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void csv_shouldSkipRowsOverTheLengthLimit() throws IOException
+    {
+        // arrange: the unclosed quote would otherwise swallow the rest of the file
+        String csv = "name,price,categoryId\n" +
+                "\"Broken,1,1\n" + "x".repeat(500) + "\n";
+        ProductImportReader reader = ProductImportReader.open(ProductImportReader.CSV, new StringReader(csv), objectMapper, 100);
+
+        // act
+        ProductImportReader.Row row = reader.next();
+
+        // assert
+        assertEquals("Row is longer than 100 characters.", row.getError());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void csv_shouldRejectBadHeaders()
+    {
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductImportReader.open(ProductImportReader.CSV, new StringReader("name,price\n"), objectMapper, 100));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductImportReader.open(ProductImportReader.CSV, new StringReader("name,price,categoryId,weight\n"), objectMapper, 100));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductImportReader.open("text/plain", new StringReader(""), objectMapper, 100));
+    }
+
+    @Test
+    public void ndjson_shouldReadOneProductPerLine() throws IOException
+    {
+        // arrange
+        String ndjson = "{\"productId\":7,\"name\":\"Mug\",\"price\":9.99,\"categoryId\":1,\"featured\":true}\n" +
+                "\n" +
+                "{\"name\":\"Broken\"\n" +
+                "{\"name\":\"Hat\",\"price\":12.5,\"categoryId\":2,\"stock\":4}";
+        ProductImportReader reader = ProductImportReader.open(ProductImportReader.NDJSON, new StringReader(ndjson), objectMapper, 1000);
+
+        // act
+        Product mug = reader.next().getProduct();
+        ProductImportReader.Row broken = reader.next();
+        ProductImportReader.Row hat = reader.next();
+
+        // assert
+        assertEquals(7, mug.getProductId());
+        assertTrue(mug.isFeatured());
+        assertEquals(3, broken.getLine());
+        assertTrue(broken.getError().startsWith("Invalid JSON"));
+        assertEquals(4, hat.getLine());
+        assertEquals(4, hat.getProduct().getStock());
+        assertNull(reader.next());
+    }
+}
@@ -0,0 +1,60 @@
+package org.yearup.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.CategoryDao;
+import org.yearup.data.ProductDao;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+import org.yearup.models.ProductImportReport;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ProductImporterTest
+{
+    @Test
+    public void importProducts_shouldWriteInChunks_andReportEachBadRow() throws Exception
+    {
+        // arrange: 5 rows, one with an unknown category; the database rejects "Dup" on its own
+        List<String> batches = new ArrayList<>();
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.importBatch(anyList())).thenAnswer(invocation -> {
+            List<Product> products = invocation.getArgument(0);
+            batches.add(products.stream().map(Product::getName).collect(Collectors.joining(",")));
+            if (products.stream().anyMatch(p -> p.getName().equals("Dup")))
+                throw new RuntimeException("Error importing products", new RuntimeException("Duplicate entry"));
+            return (int) products.stream().filter(p -> p.getProductId() == 0).count();
+        });
+        CategoryDao categoryDao = mock(CategoryDao.class);
+        when(categoryDao.getAllCategories()).thenReturn(List.of(new Category(1, "Electronics", "")));
+
+        ProductImporter importer = new ProductImporter(productDao, categoryDao, new ObjectMapper(), 2, 1, 1000);
+        String csv = "productId,name,price,categoryId\n" +
+                ",A,1,1\n" +
+                "5,B,1,1\n" +
+                ",C,1,9\n" +
+                ",Dup,1,1\n" +
+                ",D,1,1\n";
+
+        // act
+        ProductImportReport report = importer.importProducts(ProductImportReader.CSV, new StringReader(csv));
+
+        // assert
+        assertEquals(5, report.getRowsRead());
+        assertEquals(2, report.getInserted());
+        assertEquals(1, report.getUpdated());
+        assertEquals(2, report.getFailed());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(4, report.getErrors().get(0).getLine());
+        assertTrue(report.isErrorsTruncated());
+
+        assertEquals(List.of("A,B", "Dup,D", "Dup", "D"), batches);
+    }
+}
@@ -0,0 +1,109 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductViewDao;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class ProductViewCounterTest
+{
+    @Test
+    public void flush_shouldWriteEveryConcurrentView_inOneBatch() throws Exception
+    {
+        // arrange
+        Map<Integer, Long> written = new HashMap<>();
+        ProductViewDao dao = mock(ProductViewDao.class);
+        doAnswer(invocation -> {
+            Map<Integer, Long> views = invocation.getArgument(0);
+            views.forEach((id, count) -> written.merge(id, count, Long::sum));
+            return null;
+        }).when(dao).addViews(anyMap());
+
+        ProductViewCounter counter = new ProductViewCounter(dao, 1000);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        // act: flush while views are still coming in, then once more after
+        for (int thread = 0; thread < 8; thread++)
+        {
+            pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++)
+                    counter.record(i % 5 + 1);
+            });
+        }
+        counter.flush();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        counter.shutdown();
+
+        // assert
+        assertEquals(5, written.size());
+        assertEquals(80_000L, written.values().stream().mapToLong(Long::longValue).sum());
+        written.values().forEach(views -> assertEquals(16_000L, views));
+        assertEquals(0, counter.getPending());
+    }
+
+    @Test
+    public void flush_shouldKeepViews_whenWriteFails()
+    {
+        // arrange
+        ProductViewDao dao = mock(ProductViewDao.class);
+        doThrow(new RuntimeException("database down")).doNothing().when(dao).addViews(anyMap());
+        ProductViewCounter counter = new ProductViewCounter(dao, 1000);
+        counter.record(7);
+        counter.record(7);
+
+        // act
+        counter.flush();
+        counter.record(7);
+        counter.flush();
+
+        // assert
+        verify(dao, times(2)).addViews(anyMap());
+        verify(dao).addViews(Map.of(7, 3L));
+        assertEquals(0, counter.getPending());
+    }
+
+    @Test
+    public void record_shouldDropNewProducts_overTheLimit()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(mock(ProductViewDao.class), 2);
+
+        // act
+        counter.record(1);
+        counter.record(2);
+        counter.record(3);
+        counter.record(1);
+
+        // assert
+        assertEquals(3, counter.getPending());
+        assertEquals(1, counter.getDropped());
+    }
+
+    @Test
+    public void recordIfCounted_shouldOnlyCountProductsAlreadyCounted()
+    {
+        // arrange
+        ProductViewCounter counter = new ProductViewCounter(mock(ProductViewDao.class), 2);
+        counter.record(1);
+
+        // act: 304s for a counted product and for ids never looked up
+        counter.recordIfCounted(1);
+        for (int id = 1000; id < 1010; id++)
+            counter.recordIfCounted(id);
+        counter.record(2);
+
+        // assert: the unknown ids took no slot, so product 2 is still counted
+        assertEquals(3, counter.getPending());
+        assertEquals(10, counter.getDropped());
+    }
+}
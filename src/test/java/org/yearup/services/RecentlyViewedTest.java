@@ -0,0 +1,46 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentlyViewedTest
+{
+    @Test
+    public void get_shouldReturnNewestFirst_withoutDuplicates_andDropTheOldest()
+    {
+        // arrange
+        RecentlyViewed recentlyViewed = new RecentlyViewed(4, 100, 4);
+
+        // act: 7 is viewed again after 8, and 1 falls out of the 4-slot ring
+        for (int productId : new int[] { 1, 7, 8, 9, 7, 10 })
+        {
+            recentlyViewed.record("george", productId);
+        }
+
+        // assert
+        assertEquals(List.of(10, 7, 9, 8), recentlyViewed.get("george"));
+        assertTrue(recentlyViewed.get("ringo").isEmpty());
+    }
+
+    @Test
+    public void record_shouldEvictTheLeastRecentlyActiveUsers()
+    {
+        // arrange: one stripe holding two users
+        RecentlyViewed recentlyViewed = new RecentlyViewed(4, 2, 1);
+
+        // act
+        recentlyViewed.record("john", 1);
+        recentlyViewed.record("paul", 2);
+        recentlyViewed.record("john", 3);
+        recentlyViewed.record("george", 4);
+
+        // assert
+        assertEquals(List.of(3, 1), recentlyViewed.get("john"));
+        assertTrue(recentlyViewed.get("paul").isEmpty());
+        assertEquals(List.of(4), recentlyViewed.get("george"));
+    }
+}
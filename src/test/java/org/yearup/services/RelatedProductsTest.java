@@ -0,0 +1,50 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.OrderDao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class RelatedProductsTest
+{
+    @Test
+    public void getRelated_shouldRankByCoOccurrence_andStayBounded()
+    {
+        // arrange: 3 is bought with 1 most often, then 2; 1 is also paired once with 500 other products
+        RelatedProducts relatedProducts = new RelatedProducts(mock(OrderDao.class), 3, 20, 50, 0, 100);
+
+        // act
+        for (int i = 0; i < 10; i++)
+            relatedProducts.recordOrder(List.of(1, 3));
+        for (int i = 0; i < 6; i++)
+            relatedProducts.recordOrder(List.of(1, 2, 2));
+        for (int i = 0; i < 4; i++)
+            relatedProducts.recordOrder(List.of(1, 4));
+        for (int other = 1000; other < 1500; other++)
+            relatedProducts.recordOrder(List.of(1, other));
+
+        // assert
+        assertArrayEquals(new int[] { 3, 2, 4 }, relatedProducts.getRelated(1));
+        assertArrayEquals(new int[] { 1 }, relatedProducts.getRelated(3));
+        assertEquals(0, relatedProducts.getRelated(77).length);
+    }
+
+    @Test
+    public void recordOrder_shouldIgnoreSingleProductOrders()
+    {
+        // arrange
+        RelatedProducts relatedProducts = new RelatedProducts(mock(OrderDao.class), 3, 20, 50, 0, 100);
+        List<Integer> sameProduct = new ArrayList<>(List.of(5, 5, 5));
+
+        // act
+        relatedProducts.recordOrder(sameProduct);
+
+        // assert
+        assertEquals(0, relatedProducts.getRelated(5).length);
+    }
+}
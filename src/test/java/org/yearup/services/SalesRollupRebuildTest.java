@@ -0,0 +1,65 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.SalesReportDao;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SalesRollupRebuildTest
+{
+    private final Clock clock = Clock.fixed(Instant.parse("2024-03-10T12:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    public void start_shouldRebuildEachPastDayOnce_andNeverToday() throws Exception
+    {
+        // arrange
+        List<LocalDate> rebuilt = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        SalesReportDao dao = mock(SalesReportDao.class);
+        when(dao.getFirstOrderDate()).thenReturn(LocalDate.of(2024, 3, 7));
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            rebuilt.add(invocation.getArgument(0));
+            return null;
+        }).when(dao).rebuildDay(any());
+
+        SalesRollupRebuild rebuild = new SalesRollupRebuild(dao, clock, 0);
+
+        // act
+        boolean started = rebuild.start(null, LocalDate.of(2024, 3, 31));
+        boolean startedTwice = rebuild.start(null, null);
+        release.countDown();
+        waitUntilDone(rebuild);
+
+        // assert
+        assertTrue(started);
+        assertFalse(startedTwice);
+        assertEquals(List.of(LocalDate.of(2024, 3, 7), LocalDate.of(2024, 3, 8), LocalDate.of(2024, 3, 9)), rebuilt);
+        assertEquals(3, rebuild.getStatus().get("daysDone"));
+    }
+
+    private static void waitUntilDone(SalesRollupRebuild rebuild) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Boolean) rebuild.getStatus().get("running") && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.yearup.services;
+
+import org.junit.jupiter.api.Test;
+import org.yearup.data.ProductDao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockReservationServiceTest
+{
+    private static final int CHECKOUTS = 500;
+
+    @Test
+    public void reserve_shouldNeverOversell_under500ParallelCheckouts() throws Exception
+    {
+        // arrange: a deliberately non-atomic stock table, so only the service's locking prevents oversell
+        Map<Integer, Integer> stock = new ConcurrentHashMap<>(Map.of(1, 100, 2, 150));
+        AtomicInteger databaseCalls = new AtomicInteger();
+
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.reserveStock(anyMap())).thenAnswer(invocation -> {
+            Map<Integer, Integer> wanted = invocation.getArgument(0);
+            databaseCalls.incrementAndGet();
+
+            List<Integer> unavailable = new ArrayList<>();
+            wanted.forEach((productId, quantity) -> {
+                if (stock.get(productId) < quantity)
+                    unavailable.add(productId);
+            });
+            if (!unavailable.isEmpty())
+                return unavailable;
+
+            Thread.yield(); // widen the check-then-act window
+            wanted.forEach((productId, quantity) -> stock.put(productId, stock.get(productId) - quantity));
+            return unavailable;
+        });
+
+        StockReservationService service = new StockReservationService(productDao, new HotStockLeases(productDao, new CatalogVersion(), Set.of(), 50, 30000, 1000, 600000), new CatalogVersion(), 8, 1000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Integer, Integer>>> results = new ArrayList<>();
+
+        for (int i = 0; i < CHECKOUTS; i++)
+        {
+            // a mix of single-product orders and two-product orders in both key orders
+            Map<Integer, Integer> order = i % 3 == 0 ? Map.of(1, 1)
+                                        : i % 3 == 1 ? Map.of(2, 1, 1, 1)
+                                        : Map.of(2, 1);
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.reserve(order).isEmpty() ? order : Map.of();
+            }));
+        }
+
+        // act
+        start.countDown();
+        int[] sold = new int[3];
+        for (Future<Map<Integer, Integer>> result : results)
+        {
+            result.get(30, TimeUnit.SECONDS).forEach((productId, quantity) -> sold[productId] += quantity);
+        }
+        pool.shutdown();
+
+        // assert
+        assertEquals(100, sold[1] + stock.get(1));
+        assertEquals(150, sold[2] + stock.get(2));
+        assertTrue(stock.get(1) >= 0 && stock.get(2) >= 0);
+        assertEquals(0, (int) stock.get(1), "product 1 is oversubscribed, so it should sell out");
+        assertTrue(databaseCalls.get() < CHECKOUTS, "sold-out products should be rejected without a DB call");
+    }
+
+    @Test
+    public void reserve_shouldAskTheDatabaseAgain_onceTheSoldOutFlagExpires() throws Exception
+    {
+        // arrange: product 1 is sold out, then another node gives a unit back
+        ProductDao productDao = mock(ProductDao.class);
+        when(productDao.reserveStock(anyMap())).thenReturn(List.of(1)).thenReturn(List.of());
+        StockReservationService service = new StockReservationService(productDao, new HotStockLeases(productDao, new CatalogVersion(), Set.of(), 50, 30000, 1000, 600000), new CatalogVersion(), 8, 50);
+
+        // act
+        List<Integer> first = service.reserve(Map.of(1, 1));
+        List<Integer> cached = service.reserve(Map.of(1, 1));
+        Thread.sleep(60);
+        List<Integer> afterExpiry = service.reserve(Map.of(1, 1));
+
+        // assert
+        assertEquals(List.of(1), first);
+        assertEquals(List.of(1), cached);
+        assertTrue(afterExpiry.isEmpty());
+        verify(productDao, times(2)).reserveStock(anyMap());
+    }
+}
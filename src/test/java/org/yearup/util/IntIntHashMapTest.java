@@ -0,0 +1,88 @@
+package org.yearup.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IntIntHashMapTest
+{
+    @Test
+    public void operations_shouldMatchHashMap_underRandomPutsAndRemoves()
+    {
+        // arrange: a small key range so probe runs collide and removals shift entries
+        IntIntHashMap map = new IntIntHashMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        // act
+        for (int i = 0; i < 100_000; i++)
+        {
+            int key = random.nextInt(2000) - 100;
+            switch (random.nextInt(3))
+            {
+                case 0 -> {
+                    map.put(key, i);
+                    expected.put(key, i);
+                }
+                case 1 -> {
+                    map.addTo(key, 3);
+                    expected.merge(key, 3, Integer::sum);
+                }
+                default -> {
+                    map.remove(key);
+                    expected.remove(key);
+                }
+            }
+        }
+
+        // assert
+        assertEquals(expected.size(), map.size());
+        for (int key = -100; key < 1900; key++)
+        {
+            assertEquals(expected.getOrDefault(key, 0), map.get(key), "key " + key);
+            assertEquals(expected.containsKey(key), map.containsKey(key), "key " + key);
+        }
+
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void intObjectHashMap_shouldMatchHashMap_underRandomPutsAndRemoves()
+    {
+        // arrange
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(11);
+
+        // act
+        for (int i = 0; i < 50_000; i++)
+        {
+            int key = random.nextInt(1000);
+            if (random.nextBoolean())
+            {
+                map.put(key, "v" + i);
+                expected.put(key, "v" + i);
+            }
+            else
+            {
+                map.remove(key);
+                expected.remove(key);
+            }
+        }
+
+        // assert
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 1000; key++)
+        {
+            assertEquals(expected.get(key), map.get(key), "key " + key);
+        }
+        assertNull(map.get(5000));
+    }
+}
@@ -51,7 +51,10 @@ CREATE TABLE orders (
                         state VARCHAR(50) NOT NULL,
                         zip VARCHAR(20) NOT NULL,
                         shipping_amount DECIMAL(10, 2) NOT NULL DEFAULT 0,
+                        total_amount DECIMAL(10, 2) NOT NULL DEFAULT 0,
                         PRIMARY KEY (order_id),
+                        INDEX idx_orders_user_date (user_id, date, order_id),
+                        INDEX idx_orders_date (date),
                         FOREIGN KEY (user_id) REFERENCES users(user_id)
 );
 
@@ -77,6 +80,106 @@ CREATE TABLE shopping_cart (
                                FOREIGN KEY (product_id) REFERENCES products(product_id)
 );
 
+CREATE TABLE shopping_cart_headers (
+    user_id INT NOT NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    last_touched DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id),
+    INDEX ix_shopping_cart_headers_last_touched (last_touched),
+    FOREIGN KEY (user_id) REFERENCES users(user_id)
+);
+
+CREATE TABLE order_id_sequence (
+    name VARCHAR(50) NOT NULL,
+    next_value BIGINT NOT NULL,
+    PRIMARY KEY (name)
+);
+
+CREATE TABLE idempotency_keys (
+    user_id INT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL,
+    status VARCHAR(10) NOT NULL,
+    response TEXT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, idempotency_key),
+    INDEX idx_idempotency_keys_created_at (created_at),
+    FOREIGN KEY (user_id) REFERENCES users(user_id)
+);
+
+CREATE TABLE sales_daily (
+    sale_date DATE NOT NULL,
+    order_count INT NOT NULL DEFAULT 0,
+    units INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    shipping DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date)
+);
+
+CREATE TABLE sales_daily_category (
+    sale_date DATE NOT NULL,
+    category_id INT NOT NULL,
+    units INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, category_id)
+);
+
+CREATE TABLE sales_daily_product (
+    sale_date DATE NOT NULL,
+    product_id INT NOT NULL,
+    category_id INT NOT NULL,
+    units INT NOT NULL DEFAULT 0,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_date, product_id)
+);
+
+CREATE TABLE product_views (
+    product_id INT NOT NULL,
+    views BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (product_id),
+    INDEX idx_product_views_views (views)
+);
+
+CREATE TABLE catalog_version (
+                                 id TINYINT NOT NULL,
+                                 version BIGINT NOT NULL,
+                                 changes_pruned_through BIGINT NOT NULL DEFAULT 0,
+                                 PRIMARY KEY (id)
+);
+
+INSERT INTO catalog_version (id, version) VALUES (1, 0);
+
+CREATE TABLE product_changes (
+                                 change_version BIGINT NOT NULL,
+                                 product_id INT NOT NULL,
+                                 deleted BOOL NOT NULL DEFAULT 0,
+                                 changed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                 PRIMARY KEY (change_version),
+                                 INDEX ix_product_changes_product (product_id),
+                                 INDEX ix_product_changes_changed (changed_at)
+);
+
+CREATE TABLE cache_invalidations (
+                                     invalidation_id BIGINT NOT NULL AUTO_INCREMENT,
+                                     entity VARCHAR(20) NOT NULL,
+                                     catalog_version BIGINT NOT NULL,
+                                     entity_id INT NOT NULL,
+                                     node_id VARCHAR(64) NOT NULL,
+                                     created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                     PRIMARY KEY (invalidation_id),
+                                     INDEX ix_cache_invalidations_version (catalog_version),
+                                     INDEX ix_cache_invalidations_created (created_at)
+);
+
+CREATE TABLE stock_leases (
+                              node_id VARCHAR(64) NOT NULL,
+                              product_id INT NOT NULL,
+                              units INT NOT NULL,
+                              updated_at DATETIME NOT NULL,
+                              PRIMARY KEY (node_id, product_id),
+                              INDEX ix_stock_leases_updated (updated_at)
+);
+
 
 /*  INSERT Users  */
 INSERT INTO users (username, hashed_password, role)
@@ -109,3 +212,6 @@ VALUES  ('Smartphone', 499.99, 1, 'A powerful and feature-rich smartphone for al
         ('Cookware Set', 149.99, 3, 'A comprehensive set of high-quality cookware for all your culinary needs.', 'cookware-set.jpg', 50, 1, 'Red'),
         ('Coffee Maker', 79.99, 3, 'Brew your favorite coffee with this efficient and stylish coffee maker.', 'coffee-maker.jpg', 30, 0, 'Black'),
         ('Kitchen Knife Set', 59.99, 3, 'A set of sharp and durable knives for effortless food preparation.', 'knife-set.jpg', 40, 1, 'Silver');
+
+INSERT INTO order_id_sequence (name, next_value)
+SELECT 'orders', COALESCE(MAX(order_id), 0) + 1 FROM orders;